@@ -21,21 +21,29 @@ import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.dsl.request.AnnotationRequest;
+import com.graphaware.nlp.dsl.request.BatchAnnotationRequest;
 import com.graphaware.nlp.dsl.request.FilterRequest;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
+import com.graphaware.nlp.dsl.result.BatchAnnotationResult;
 import com.graphaware.nlp.dsl.result.ProcessorsList;
 import com.graphaware.nlp.enrich.Enricher;
 import com.graphaware.nlp.enrich.EnrichmentRegistry;
 import com.graphaware.nlp.enrich.conceptnet5.ConceptNet5Enricher;
 import com.graphaware.nlp.enrich.microsoft.MicrosoftConceptEnricher;
+import com.graphaware.nlp.event.DatabaseTransactionEvent;
 import com.graphaware.nlp.event.EventDispatcher;
 import com.graphaware.nlp.event.TextAnnotationEvent;
 import com.graphaware.nlp.extension.NLPExtension;
 import com.graphaware.nlp.language.LanguageManager;
+import com.graphaware.nlp.ml.queue.SimilarityQueueProcessor;
 import com.graphaware.nlp.module.NLPConfiguration;
+import com.graphaware.nlp.persistence.CorpusStatistics;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
+import com.graphaware.nlp.persistence.SchemaManager;
+import com.graphaware.nlp.persistence.TagNodeCache;
 import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.persisters.Persister;
+import com.graphaware.nlp.processor.BatchAnnotator;
 import com.graphaware.nlp.processor.PipelineInfo;
 import com.graphaware.nlp.processor.TextProcessor;
 import com.graphaware.nlp.processor.TextProcessorsManager;
@@ -63,8 +71,12 @@ public final class NLPManager {
 
     private PersistenceRegistry persistenceRegistry;
 
+    private SchemaManager schemaManager;
+
     private EnrichmentRegistry enrichmentRegistry;
 
+    private SimilarityQueueProcessor similarityQueueProcessor;
+
     private final Map<Class, NLPExtension> extensions = new HashMap<>();
 
     private EventDispatcher eventDispatcher;
@@ -96,6 +108,10 @@ public final class NLPManager {
         this.textProcessorsManager = new TextProcessorsManager();
         this.database = database;
         this.persistenceRegistry = new PersistenceRegistry(database, configuration);
+        persistenceRegistry.getCorpusStatistics().initialize();
+        this.schemaManager = new SchemaManager(database, configuration);
+        schemaManager.createMissingIndexes();
+        this.similarityQueueProcessor = new SimilarityQueueProcessor(database, configuration);
         this.enrichmentRegistry = buildAndRegisterEnrichers();
         this.eventDispatcher = new EventDispatcher();
         loadExtensions();
@@ -104,6 +120,22 @@ public final class NLPManager {
         registerPipelinesFromConfig();
     }
 
+    /**
+     * Starts the background workers, called when the NLP module starts.
+     */
+    public void start() {
+        similarityQueueProcessor.start();
+    }
+
+    /**
+     * Stops the background workers, waiting for the pending writes.
+     */
+    public void shutdown() {
+        if (similarityQueueProcessor != null) {
+            similarityQueueProcessor.shutdown();
+        }
+    }
+
     public TextProcessorsManager getTextProcessorsManager() {
         return textProcessorsManager;
     }
@@ -116,18 +148,31 @@ public final class NLPManager {
         return database;
     }
 
+    public SchemaManager getSchemaManager() {
+        return schemaManager;
+    }
+
+    public TagNodeCache getTagNodeCache() {
+        return persistenceRegistry.getTagNodeCache();
+    }
+
+    public CorpusStatistics getCorpusStatistics() {
+        return persistenceRegistry.getCorpusStatistics();
+    }
+
+    public SimilarityQueueProcessor getSimilarityQueueProcessor() {
+        return similarityQueueProcessor;
+    }
+
     public Node annotateTextAndPersist(AnnotationRequest annotationRequest) {
         return annotateTextAndPersist(annotationRequest.getText(), annotationRequest.getId(), annotationRequest.getTextProcessor(),
                 annotationRequest.getPipeline(), annotationRequest.isForce(), annotationRequest.shouldCheckLanguage());
     }
 
     public Node annotateTextAndPersist(String text, String id, String textProcessor, String pipelineName, boolean force, boolean checkForLanguage) {
-        String lang = checkTextLanguage(text, checkForLanguage);
         String pipeline = getPipeline(pipelineName);
         TextProcessor processor = textProcessorsManager.retrieveTextProcessor(textProcessor, pipeline);
-        AnnotatedText annotatedText = processor.annotateText(
-                text, pipeline, lang, null
-        );
+        AnnotatedText annotatedText = annotateText(text, processor, pipeline, checkForLanguage);
 
         String txId = String.valueOf(System.currentTimeMillis());
         Node annotatedNode = persistAnnotatedText(annotatedText, id, txId);
@@ -138,6 +183,20 @@ public final class NLPManager {
         return annotatedNode;
     }
 
+    public BatchAnnotationResult annotateTextsAndPersist(BatchAnnotationRequest batchAnnotationRequest) {
+        String pipeline = getPipeline(batchAnnotationRequest.getPipeline());
+        TextProcessor processor = textProcessorsManager.retrieveTextProcessor(batchAnnotationRequest.getTextProcessor(), pipeline);
+        BatchAnnotator annotator = new BatchAnnotator(this, processor, pipeline,
+                batchAnnotationRequest.getBatchSize(), batchAnnotationRequest.getConcurrency());
+
+        return annotator.annotateAndPersist(batchAnnotationRequest.getDocuments(), batchAnnotationRequest.isCheckLanguage());
+    }
+
+    public AnnotatedText annotateText(String text, TextProcessor processor, String pipeline, boolean checkForLanguage) {
+        String lang = checkTextLanguage(text, checkForLanguage);
+        return processor.annotateText(text, pipeline, lang, null);
+    }
+
     public Node persistAnnotatedText(AnnotatedText annotatedText, String id, String txId) {
         return getPersister(annotatedText.getClass()).persist(annotatedText, id, txId);
     }
@@ -260,6 +319,9 @@ public final class NLPManager {
     }
 
     private void registerEventListeners() {
+        eventDispatcher.registerListener(NLPEvents.TRANSACTION_BEFORE_COMMIT, event -> {
+            getCorpusStatistics().transactionCommitting(((DatabaseTransactionEvent) event).getTransactionData());
+        });
         extensions.values().forEach(e -> {
             e.registerEventListeners(eventDispatcher);
         });
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.configuration;
+
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of the label, relationship type and property key remappings
+ * of the user configuration, fully resolved when the configuration is loaded.
+ * Resolving a default label or relationship type is an array access, and no
+ * lookup allocates.
+ */
+public final class ConfigurationSnapshot {
+
+    private final Label[] labels;
+    private final RelationshipType[] relationships;
+    private final Map<String, Label> remappedLabels;
+    private final Map<String, RelationshipType> remappedRelationships;
+    private final Map<String, String> remappedPropertyKeys;
+
+    ConfigurationSnapshot(Map<String, Object> userConfiguration, String labelPrefix, String relationshipPrefix, String propertyPrefix) {
+        Map<String, Label> labelMap = new HashMap<>();
+        Map<String, RelationshipType> relationshipMap = new HashMap<>();
+        Map<String, String> propertyKeyMap = new HashMap<>();
+        userConfiguration.forEach((key, value) -> {
+            if (key.startsWith(labelPrefix)) {
+                labelMap.put(key.substring(labelPrefix.length()), Label.label(value.toString()));
+            } else if (key.startsWith(relationshipPrefix)) {
+                relationshipMap.put(key.substring(relationshipPrefix.length()), RelationshipType.withName(value.toString()));
+            } else if (key.startsWith(propertyPrefix)) {
+                propertyKeyMap.put(key.substring(propertyPrefix.length()), value.toString());
+            }
+        });
+        this.remappedLabels = Collections.unmodifiableMap(labelMap);
+        this.remappedRelationships = Collections.unmodifiableMap(relationshipMap);
+        this.remappedPropertyKeys = Collections.unmodifiableMap(propertyKeyMap);
+
+        this.labels = new Label[Labels.values().length];
+        for (Labels label : Labels.values()) {
+            labels[label.ordinal()] = remappedLabels.getOrDefault(label.name(), label);
+        }
+        this.relationships = new RelationshipType[Relationships.values().length];
+        for (Relationships relationship : Relationships.values()) {
+            relationships[relationship.ordinal()] = remappedRelationships.getOrDefault(relationship.name(), relationship);
+        }
+    }
+
+    public Label getLabelFor(Label label) {
+        if (label instanceof Labels) {
+            return labels[((Labels) label).ordinal()];
+        }
+        return remappedLabels.getOrDefault(label.name(), label);
+    }
+
+    public RelationshipType getRelationshipFor(RelationshipType relationship) {
+        if (relationship instanceof Relationships) {
+            return relationships[((Relationships) relationship).ordinal()];
+        }
+        return remappedRelationships.getOrDefault(relationship.name(), relationship);
+    }
+
+    public String getPropertyKeyFor(String key) {
+        return remappedPropertyKeys.getOrDefault(key, key);
+    }
+}
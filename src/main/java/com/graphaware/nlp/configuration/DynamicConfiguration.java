@@ -24,6 +24,7 @@ import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,7 +40,8 @@ public class DynamicConfiguration {
     
     private final GraphDatabaseService database;
     private final GraphKeyValueStore keyValueStore;
-    private Map<String, Object> userProvidedConfiguration;
+    private volatile Map<String, Object> userProvidedConfiguration;
+    private volatile ConfigurationSnapshot snapshot;
     private final ObjectMapper mapper = new ObjectMapper();
 
     public DynamicConfiguration(GraphDatabaseService database) {
@@ -48,28 +50,25 @@ public class DynamicConfiguration {
         loadUserConfiguration();
     }
 
-    public Label getLabelFor(Label label) {
-        if (!userProvidedConfiguration.containsKey(LABEL_KEY_PREFIX + label.toString())) {
-            return label;
-        }
+    /**
+     * @return the current resolved labels, relationship types and property
+     * keys; the returned snapshot never changes, a configuration update
+     * publishes a new one
+     */
+    public ConfigurationSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        return Label.label(userProvidedConfiguration.get(LABEL_KEY_PREFIX + label.toString()).toString());
+    public Label getLabelFor(Label label) {
+        return snapshot.getLabelFor(label);
     }
 
     public RelationshipType getRelationshipFor(RelationshipType relationship) {
-        if (!userProvidedConfiguration.containsKey(RELATIONSHIP_TYPE_KEY_PREFIX + relationship.name())) {
-            return relationship;
-        }
-
-        return RelationshipType.withName(userProvidedConfiguration.get(RELATIONSHIP_TYPE_KEY_PREFIX + relationship.name()).toString());
+        return snapshot.getRelationshipFor(relationship);
     }
 
     public String getPropertyKeyFor(String key) {
-        if (!userProvidedConfiguration.containsKey(PROPERTY_KEY_PREFIX + key)) {
-            return key;
-        }
-
-        return userProvidedConfiguration.get(PROPERTY_KEY_PREFIX + key).toString();
+        return snapshot.getPropertyKeyFor(key);
     }
 
     public Object getSettingValueFor(String key) {
@@ -88,7 +87,7 @@ public class DynamicConfiguration {
         String k = SETTING_KEY_PREFIX + key;
         if (userProvidedConfiguration.containsKey(k)) {
             removeKey( STORE_KEY + k);
-            userProvidedConfiguration.remove(k);
+            loadUserConfiguration();
         }
     }
 
@@ -152,7 +151,9 @@ public class DynamicConfiguration {
     }
 
     private void loadUserConfiguration() {
-        userProvidedConfiguration = getAllConfigValuesFromStore();
+        Map<String, Object> configuration = Collections.unmodifiableMap(getAllConfigValuesFromStore());
+        snapshot = new ConfigurationSnapshot(configuration, LABEL_KEY_PREFIX, RELATIONSHIP_TYPE_KEY_PREFIX, PROPERTY_KEY_PREFIX);
+        userProvidedConfiguration = configuration;
     }
 
     private void removeKey(String key) {
@@ -5,4 +5,10 @@ public final class SettingsConstants {
     public static final String FALLBACK_LANGUAGE = "fallbackLanguage";
     public static final String DEFAULT_TEXT_PROCESSOR = "defaultProcessor";
     public static final String DEFAULT_PIPELINE = "defaultPipeline";
+    public static final String SIMILARITY_QUEUE_CAPACITY = "similarityQueueCapacity";
+    public static final String SIMILARITY_WRITE_BATCH_SIZE = "similarityWriteBatchSize";
+    public static final String SIMILARITY_WRITE_TIMEOUT = "similarityWriteTimeout";
+    public static final String SIMILARITY_INCREMENTAL = "similarityIncremental";
+    public static final String TFIDF_DRIFT_TOLERANCE = "tfidfDriftTolerance";
+    public static final String WORD2VEC_STORE_ENCODING = "word2vecStoreEncoding";
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.function;
+
+import com.graphaware.nlp.ml.similarity.DenseVectors;
+import com.graphaware.nlp.ml.similarity.QuantizedVectors;
+import org.neo4j.graphdb.Node;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.UserFunction;
+
+public class VectorFunctions {
+
+    @UserFunction("ga.nlp.vector.cosine")
+    @Description("ga.nlp.vector.cosine(node1, node2, 'word2vec') - cosine similarity of the vector properties of the two nodes")
+    public Double cosine(@Name("node1") Node node1, @Name("node2") Node node2, @Name("property") String property) {
+        if (node1 == null || node2 == null) {
+            return null;
+        }
+        double cosine = QuantizedVectors.cosine(node1.getProperty(property, null), node2.getProperty(property, null));
+        return Double.isNaN(cosine) ? null : cosine;
+    }
+
+    @UserFunction("ga.nlp.vector.dot")
+    @Description("ga.nlp.vector.dot(node1, node2, 'word2vec') - dot product of the vector properties of the two nodes")
+    public Double dot(@Name("node1") Node node1, @Name("node2") Node node2, @Name("property") String property) {
+        double[] x = getVector(node1, property);
+        double[] y = getVector(node2, property);
+        return x != null && y != null ? DenseVectors.dot(x, y) : null;
+    }
+
+    @UserFunction("ga.nlp.vector.euclidean")
+    @Description("ga.nlp.vector.euclidean(node1, node2, 'word2vec') - euclidean distance between the vector properties of the two nodes")
+    public Double euclidean(@Name("node1") Node node1, @Name("node2") Node node2, @Name("property") String property) {
+        double[] x = getVector(node1, property);
+        double[] y = getVector(node2, property);
+        return x != null && y != null ? DenseVectors.euclidean(x, y) : null;
+    }
+
+    @UserFunction("ga.nlp.vector.norm")
+    @Description("ga.nlp.vector.norm(node, 'word2vec') - euclidean norm of the vector property of the node")
+    public Double norm(@Name("node") Node node, @Name("property") String property) {
+        double[] x = getVector(node, property);
+        return x != null ? DenseVectors.norm(x) : null;
+    }
+
+    private double[] getVector(Node node, String property) {
+        return node != null ? QuantizedVectors.read(node, property) : null;
+    }
+}
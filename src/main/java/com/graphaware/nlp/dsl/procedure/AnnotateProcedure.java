@@ -17,7 +17,9 @@ package com.graphaware.nlp.dsl.procedure;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.request.AnnotationRequest;
+import com.graphaware.nlp.dsl.request.BatchAnnotationRequest;
 import com.graphaware.nlp.dsl.request.FilterRequest;
+import com.graphaware.nlp.dsl.result.BatchAnnotationResult;
 import com.graphaware.nlp.dsl.result.NodeResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import org.neo4j.graphdb.Node;
@@ -44,6 +46,13 @@ public class AnnotateProcedure extends AbstractDSL {
         }
     }
     
+    @Procedure(name = "ga.nlp.annotate.batch", mode = Mode.WRITE)
+    @Description("Performs the text annotation of a list of {id, text} documents in parallel and store them into the graph in batches")
+    public Stream<BatchAnnotationResult> annotateBatch(@Name("batchAnnotationRequest") Map<String, Object> batchAnnotationRequest) {
+        BatchAnnotationRequest request = BatchAnnotationRequest.fromMap(batchAnnotationRequest);
+        return Stream.of(getNLPManager().annotateTextsAndPersist(request));
+    }
+
     @Procedure(name = "ga.nlp.filter", mode = Mode.WRITE)
     @Description("Boolean filter for text accordingly to complex filter definition")
     public Stream<SingleResult> filter(@Name("filterRequest") Map<String, Object> filterRequest) {
@@ -17,6 +17,7 @@ package com.graphaware.nlp.dsl.procedure;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.request.PageRankRequest;
+import com.graphaware.nlp.dsl.result.NodeScoreResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import com.graphaware.nlp.ml.pagerank.PageRankProcessor;
 import org.neo4j.procedure.Description;
@@ -32,8 +33,16 @@ public class PageRankProcedure extends AbstractDSL {
     @Procedure(name = "ga.nlp.ml.pageRank", mode = Mode.WRITE)
     @Description("PageRank procedure")
     public Stream<SingleResult> computePageRank(@Name("pageRankRequest") Map<String, Object> pageRankRequest) {
-        PageRankRequest request = mapper.convertValue(pageRankRequest, PageRankRequest.class);
+        PageRankRequest request = PageRankRequest.fromMap(pageRankRequest);
         PageRankProcessor processor = (PageRankProcessor) getNLPManager().getExtension(PageRankProcessor.class);
         return Stream.of(processor.process(request));
     }
+
+    @Procedure(name = "ga.nlp.ml.pageRank.stream", mode = Mode.READ)
+    @Description("PageRank procedure streaming (node, score) rows without writing them on the graph")
+    public Stream<NodeScoreResult> streamPageRank(@Name("pageRankRequest") Map<String, Object> pageRankRequest) {
+        PageRankRequest request = PageRankRequest.fromMap(pageRankRequest);
+        PageRankProcessor processor = (PageRankProcessor) getNLPManager().getExtension(PageRankProcessor.class);
+        return processor.stream(request);
+    }
 }
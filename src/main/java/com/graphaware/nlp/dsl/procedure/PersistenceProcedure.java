@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.procedure;
+
+import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.result.KeyValueResult;
+import com.graphaware.nlp.dsl.result.NodeScoreResult;
+import com.graphaware.nlp.dsl.result.SingleResult;
+import com.graphaware.nlp.persistence.CorpusStatistics;
+import org.neo4j.graphdb.Node;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class PersistenceProcedure extends AbstractDSL {
+
+    @Procedure(name = "ga.nlp.persistence.tagCache.stats", mode = Mode.READ)
+    @Description("Show the size and hit/miss statistics of the Tag node cache")
+    public Stream<KeyValueResult> tagCacheStats() {
+        Map<String, Object> stats = getNLPManager().getTagNodeCache().getStats();
+
+        return stats.keySet().stream().map(k -> new KeyValueResult(k, stats.get(k)));
+    }
+
+    @Procedure(name = "ga.nlp.persistence.corpus.stats", mode = Mode.READ)
+    @Description("Show the document count of the corpus and the number of cached tag document frequencies")
+    public Stream<KeyValueResult> corpusStats() {
+        Map<String, Object> stats = getNLPManager().getCorpusStatistics().getStats();
+
+        return stats.keySet().stream().map(k -> new KeyValueResult(k, stats.get(k)));
+    }
+
+    @Procedure(name = "ga.nlp.persistence.corpus.documentFrequency", mode = Mode.READ)
+    @Description("Return the number of annotated texts containing each of the given tags")
+    public Stream<NodeScoreResult> documentFrequency(@Name("tags") List<Node> tags) {
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+
+        return tags.stream().map(tag -> new NodeScoreResult(tag, (double) statistics.getDocumentFrequency(tag.getId())));
+    }
+
+    @Procedure(name = "ga.nlp.persistence.corpus.rebuild", mode = Mode.WRITE)
+    @Description("Recompute the document count and the tag document frequencies from the graph")
+    public Stream<SingleResult> rebuildCorpusStats() {
+        getNLPManager().getCorpusStatistics().rebuild();
+
+        return Stream.of(SingleResult.success());
+    }
+}
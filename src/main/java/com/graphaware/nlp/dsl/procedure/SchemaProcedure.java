@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.procedure;
+
+import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.result.IndexStatusResult;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Procedure;
+
+import java.util.stream.Stream;
+
+public class SchemaProcedure extends AbstractDSL {
+
+    @Procedure(name = "ga.nlp.schema.status", mode = Mode.READ)
+    @Description("Show the state (ONLINE, POPULATING, FAILED or MISSING) of the indexes required by the NLP persistence layer")
+    public Stream<IndexStatusResult> status() {
+        return getNLPManager().getSchemaManager().getStatus().stream()
+                .map(index -> new IndexStatusResult(index.getLabel(), index.getProperty(), index.getState()));
+    }
+}
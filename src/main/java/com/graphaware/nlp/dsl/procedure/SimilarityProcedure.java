@@ -16,6 +16,7 @@
 package com.graphaware.nlp.dsl.procedure;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.request.SimilarityRequest;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import com.graphaware.nlp.ml.similarity.SimilarityProcessor;
 import org.neo4j.graphdb.Node;
@@ -25,6 +26,7 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 public class SimilarityProcedure extends AbstractDSL {
@@ -34,9 +36,10 @@ public class SimilarityProcedure extends AbstractDSL {
     public Stream<SingleResult> similarity(@Name("input") List<Node> input, 
             @Name("depth") Long depth,
             @Name("query") String query,
-            @Name("relationshipType") String relationshipType) {
+            @Name("relationshipType") String relationshipType,
+            @Name(value = "params", defaultValue = "{}") Map<String, Object> params) {
         SimilarityProcessor similarityProcessor = (SimilarityProcessor) getNLPManager().getExtension(SimilarityProcessor.class);
-        int processed = similarityProcessor.compute(input, query, relationshipType, depth);
+        int processed = similarityProcessor.compute(input, query, relationshipType, depth, SimilarityRequest.fromMap(params));
         return Stream.of(new SingleResult(processed));
     }
 
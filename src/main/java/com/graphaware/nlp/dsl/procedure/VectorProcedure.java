@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.procedure;
+
+import com.graphaware.nlp.dsl.AbstractDSL;
+import com.graphaware.nlp.dsl.result.NodeScoreResult;
+import com.graphaware.nlp.ml.similarity.DenseVectorScanner;
+import com.graphaware.nlp.ml.similarity.QuantizedVectors;
+import com.graphaware.nlp.ml.similarity.TopKCollector;
+import org.neo4j.graphdb.Node;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class VectorProcedure extends AbstractDSL {
+
+    @Procedure(name = "ga.nlp.vector.topK", mode = Mode.READ)
+    @Description("ga.nlp.vector.topK(node, 'Tag', 'word2vec', 10) - the k nodes with the given label whose vector property is the most similar (cosine) to the one of the node")
+    public Stream<NodeScoreResult> topK(@Name("node") Node node,
+            @Name("label") String label,
+            @Name("property") String property,
+            @Name(value = "k", defaultValue = "10") Long k) {
+        double[] vector = QuantizedVectors.read(node, property);
+        if (vector == null) {
+            throw new RuntimeException("The node " + node.getId() + " has no vector property " + property);
+        }
+        if (k < 1) {
+            throw new RuntimeException("Invalid value for 'k', it should be greater than 0");
+        }
+        TopKCollector topK = new DenseVectorScanner(database).topK(vector, node.getId(), label, property, k.intValue());
+        List<NodeScoreResult> result = new ArrayList<>(topK.size());
+        for (int i = 0; i < topK.size(); i++) {
+            result.add(new NodeScoreResult(database.getNodeById(topK.id(i)), (double) topK.score(i)));
+        }
+        return result.stream();
+    }
+}
@@ -17,13 +17,20 @@ package com.graphaware.nlp.dsl.procedure;
 
 import com.graphaware.nlp.dsl.AbstractDSL;
 import com.graphaware.nlp.dsl.request.Word2VecRequest;
+import com.graphaware.nlp.dsl.result.KeyValueResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
+import com.graphaware.nlp.dsl.result.WordScoreResult;
+import com.graphaware.nlp.dsl.result.WordVectorResult;
+import com.graphaware.nlp.ml.similarity.DenseVectors;
+import com.graphaware.nlp.ml.word2vec.Word2VecModel;
 import com.graphaware.nlp.ml.word2vec.Word2VecProcessor;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -38,4 +45,57 @@ public class Word2VecProcedure extends AbstractDSL {
         return Stream.of(new SingleResult(processed));
     }
 
+    @Procedure(name = "ga.nlp.ml.word2vec.lookup", mode = Mode.READ)
+    @Description("ga.nlp.ml.word2vec.lookup(['car', 'truck'], 'numberbatch') - stream the vectors of the given words that are in the model (the default model if not specified)")
+    public Stream<WordVectorResult> lookup(@Name("words") List<String> words,
+            @Name(value = "model", defaultValue = "") String model) {
+        Map<String, double[]> vectors = getWord2VecModel().getWordToVec(words, getModelName(model));
+        return vectors.entrySet().stream().map(entry -> new WordVectorResult(entry.getKey(), toList(entry.getValue())));
+    }
+
+    @Procedure(name = "ga.nlp.ml.word2vec.nn", mode = Mode.READ)
+    @Description("ga.nlp.ml.word2vec.nn('car', 10, 'numberbatch') - the k words of the model (the default model if not specified) nearest (cosine) to the given word or vector")
+    public Stream<WordScoreResult> nearestNeighbours(@Name("input") Object input,
+            @Name(value = "k", defaultValue = "10") Long k,
+            @Name(value = "model", defaultValue = "") String model) {
+        if (k < 1) {
+            throw new RuntimeException("Invalid value for 'k', it should be greater than 0");
+        }
+        Map<String, Double> neighbours;
+        if (input instanceof String) {
+            neighbours = getWord2VecModel().getNearestNeighbours((String) input, k.intValue(), getModelName(model));
+        } else {
+            double[] vector = DenseVectors.toArray(input);
+            if (vector == null) {
+                throw new RuntimeException("Invalid value for 'input', it should be a word or a list of numbers");
+            }
+            neighbours = getWord2VecModel().getNearestNeighbours(vector, k.intValue(), getModelName(model));
+        }
+        return neighbours.entrySet().stream().map(entry -> new WordScoreResult(entry.getKey(), entry.getValue()));
+    }
+
+    @Procedure(name = "ga.nlp.ml.word2vec.cache.stats", mode = Mode.READ)
+    @Description("Show the size and hit/miss statistics of the vector cache of the given model (the default model if not specified)")
+    public Stream<KeyValueResult> cacheStats(@Name(value = "model", defaultValue = "") String model) {
+        Map<String, Object> stats = getWord2VecModel().getStats(getModelName(model));
+
+        return stats.keySet().stream().map(k -> new KeyValueResult(k, stats.get(k)));
+    }
+
+    private Word2VecModel getWord2VecModel() {
+        return ((Word2VecProcessor) getNLPManager().getExtension(Word2VecProcessor.class)).getWord2VecModel();
+    }
+
+    private static String getModelName(String model) {
+        return model == null || model.isEmpty() ? null : model;
+    }
+
+    private static List<Double> toList(double[] vector) {
+        List<Double> list = new ArrayList<>(vector.length);
+        for (double value : vector) {
+            list.add(value);
+        }
+        return list;
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.nlp.dsl.request.RequestConstants.*;
+
+public class BatchAnnotationRequest extends AbstractProcedureRequest {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private List<Map<String, Object>> documents = new ArrayList<>();
+
+    private String textProcessor;
+
+    private String pipeline;
+
+    private boolean checkLanguage = true;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+
+    public BatchAnnotationRequest() {
+
+    }
+
+    @Override
+    public List<String> validMapKeys() {
+        return Arrays.asList(
+                DOCUMENTS_KEY,
+                TEXT_PROCESSOR_KEY,
+                PIPELINE_KEY,
+                CHECK_LANGUAGE_KEY,
+                BATCH_SIZE_KEY,
+                CONCURRENCY_KEY
+        );
+    }
+
+    @Override
+    public List<String> mandatoryKeys() {
+        return Arrays.asList(
+                DOCUMENTS_KEY
+        );
+    }
+
+    public static BatchAnnotationRequest fromMap(Map<String, Object> map) {
+        BatchAnnotationRequest request = mapper.convertValue(map, BatchAnnotationRequest.class);
+        request.validateMap(map);
+        request.validateDocuments();
+
+        return request;
+    }
+
+    private void validateDocuments() {
+        documents.forEach(document -> validateRequestHasMandatoryKeys(Arrays.asList(ID_KEY, TEXT_KEY), document));
+        if (batchSize < 1) {
+            throw new RuntimeException(String.format("Invalid value for '%s', it should be greater than 0", BATCH_SIZE_KEY));
+        }
+        if (concurrency < 1) {
+            throw new RuntimeException(String.format("Invalid value for '%s', it should be greater than 0", CONCURRENCY_KEY));
+        }
+    }
+
+    public List<Map<String, Object>> getDocuments() {
+        return documents;
+    }
+
+    public String getTextProcessor() {
+        return textProcessor;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public boolean isCheckLanguage() {
+        return checkLanguage;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+}
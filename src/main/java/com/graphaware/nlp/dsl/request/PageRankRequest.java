@@ -15,8 +15,21 @@
  */
 package com.graphaware.nlp.dsl.request;
 
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.Node;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class PageRankRequest {
 
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final String SEEDS_KEY = "seeds";
+    private static final String SEED_NODE_KEY = "node";
+    private static final String SEED_WEIGHT_KEY = "weight";
+
     private static final long DEFAULT_ITERATIONS = 30;
     private static final double DEFAULT_DUMPING_FACTOR = 0.85;
     private static final double DEFAULT_THRESHOLD = 0.0001;
@@ -24,6 +37,10 @@ public class PageRankRequest {
     private static final String DEFAULT_NODE_TYPE = "Tag";
     private static final String DEFAULT_CO_OCCURRENCE_RELATIONTHIP = "CO_OCCURRENCE";
     private static final String DEFAULT_WEIGHT_PROPERTY = "weight";
+    private static final int DEFAULT_CONCURRENCY = 1;
+    private static final String DEFAULT_WRITE_PROPERTY = "pagerank";
+    private static final int DEFAULT_BATCH_SIZE = 10000;
+    private static final int DEFAULT_TOP_K = 0;
     
     private String nodeType = DEFAULT_NODE_TYPE;
     private String relationshipType = DEFAULT_CO_OCCURRENCE_RELATIONTHIP;
@@ -32,10 +49,53 @@ public class PageRankRequest {
     private Double damp = DEFAULT_DUMPING_FACTOR;
     private Double threshold = DEFAULT_THRESHOLD;
     private Boolean respectDirections = DEFAULT_RESPECT_DIRECTIONS;
+    private Integer concurrency = DEFAULT_CONCURRENCY;
+    private String writeProperty = DEFAULT_WRITE_PROPERTY;
+    private Integer batchSize = DEFAULT_BATCH_SIZE;
+    private Integer topK = DEFAULT_TOP_K;
+    private Map<Long, Double> seeds = new HashMap<>();
+    private String startProperty;
     
     public PageRankRequest() {
     }
 
+    /**
+     * Seeds are given as a list of nodes, node ids or
+     * <code>{node: ..., weight: ...}</code> maps (weight defaults to 1.0),
+     * they cannot go through the object mapper and are parsed here.
+     */
+    public static PageRankRequest fromMap(Map<String, Object> map) {
+        Map<String, Object> values = new HashMap<>(map);
+        Object seeds = values.remove(SEEDS_KEY);
+        PageRankRequest request = mapper.convertValue(values, PageRankRequest.class);
+        if (seeds instanceof List) {
+            ((List<?>) seeds).forEach(request::addSeed);
+        } else if (seeds != null) {
+            throw new RuntimeException("Parameter '" + SEEDS_KEY + "' should be a list");
+        }
+
+        return request;
+    }
+
+    private void addSeed(Object seed) {
+        Object node = seed;
+        double weight = 1.0d;
+        if (seed instanceof Map) {
+            node = ((Map<?, ?>) seed).get(SEED_NODE_KEY);
+            Object seedWeight = ((Map<?, ?>) seed).get(SEED_WEIGHT_KEY);
+            if (seedWeight instanceof Number) {
+                weight = ((Number) seedWeight).doubleValue();
+            }
+        }
+        if (node instanceof Node) {
+            seeds.merge(((Node) node).getId(), weight, Double::sum);
+        } else if (node instanceof Number) {
+            seeds.merge(((Number) node).longValue(), weight, Double::sum);
+        } else {
+            throw new RuntimeException("Invalid seed: " + seed);
+        }
+    }
+
     public String getNodeType() {
         return nodeType;
     }
@@ -91,4 +151,52 @@ public class PageRankRequest {
     public void setRespectDirections(Boolean dirs) {
         this.respectDirections = dirs;
     }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public String getWriteProperty() {
+        return writeProperty;
+    }
+
+    public void setWriteProperty(String writeProperty) {
+        this.writeProperty = writeProperty;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Integer getTopK() {
+        return topK;
+    }
+
+    public void setTopK(Integer topK) {
+        this.topK = topK;
+    }
+
+    public Map<Long, Double> getSeeds() {
+        return seeds;
+    }
+
+    public void setSeeds(Map<Long, Double> seeds) {
+        this.seeds = seeds;
+    }
+
+    public String getStartProperty() {
+        return startProperty;
+    }
+
+    public void setStartProperty(String startProperty) {
+        this.startProperty = startProperty;
+    }
 }
@@ -18,4 +18,15 @@ public final class RequestConstants {
     public static final String FORCE_KEY = "force";
     public static final String FILTER_KEY = "filter";
     public static final String ENRICHER_KEY = "enricher";
+    public static final String DOCUMENTS_KEY = "documents";
+    public static final String BATCH_SIZE_KEY = "batchSize";
+    public static final String CONCURRENCY_KEY = "concurrency";
+    public static final String APPROXIMATE_KEY = "approximate";
+    public static final String BANDS_KEY = "bands";
+    public static final String ROWS_KEY = "rows";
+    public static final String INCREMENTAL_KEY = "incremental";
+    public static final String K_KEY = "k";
+    public static final String MIN_SIMILARITY_KEY = "minSimilarity";
+    public static final String METRIC_KEY = "metric";
+    public static final String FEATURES_KEY = "features";
 }
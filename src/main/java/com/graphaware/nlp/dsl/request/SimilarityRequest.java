@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.dsl.request;
+
+import com.graphaware.nlp.domain.Constants;
+import com.graphaware.nlp.ml.similarity.CosineSimilarity;
+import com.graphaware.nlp.ml.similarity.LshIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphaware.nlp.dsl.request.RequestConstants.*;
+
+public class SimilarityRequest extends AbstractProcedureRequest {
+
+    private boolean approximate = false;
+
+    private boolean incremental = false;
+
+    private int bands = LshIndex.DEFAULT_BANDS;
+
+    private int rows = LshIndex.DEFAULT_ROWS;
+
+    private int k = Constants.KNN_SIZE;
+
+    private float minSimilarity = 0.0f;
+
+    private String metric = CosineSimilarity.NAME;
+
+    private String features;
+
+    public SimilarityRequest() {
+
+    }
+
+    @Override
+    public List<String> validMapKeys() {
+        return Arrays.asList(
+                APPROXIMATE_KEY,
+                INCREMENTAL_KEY,
+                BANDS_KEY,
+                ROWS_KEY,
+                K_KEY,
+                MIN_SIMILARITY_KEY,
+                METRIC_KEY,
+                FEATURES_KEY
+        );
+    }
+
+    public static SimilarityRequest fromMap(Map<String, Object> map) {
+        SimilarityRequest request = mapper.convertValue(map, SimilarityRequest.class);
+        request.validateMap(map);
+        request.validateValues();
+
+        return request;
+    }
+
+    private void validateValues() {
+        if (approximate && incremental) {
+            throw new RuntimeException(String.format("'%s' and '%s' cannot be used together", APPROXIMATE_KEY, INCREMENTAL_KEY));
+        }
+        if (incremental && (!CosineSimilarity.NAME.equals(metric) || features != null)) {
+            throw new RuntimeException(String.format("'%s' only supports the '%s' metric with the default features", INCREMENTAL_KEY, CosineSimilarity.NAME));
+        }
+        if (bands < 1) {
+            throw new RuntimeException(String.format("Invalid value for '%s', it should be greater than 0", BANDS_KEY));
+        }
+        if (rows < 1 || rows > LshIndex.MAX_ROWS) {
+            throw new RuntimeException(String.format("Invalid value for '%s', it should be between 1 and %d", ROWS_KEY, LshIndex.MAX_ROWS));
+        }
+        if (k < 1) {
+            throw new RuntimeException(String.format("Invalid value for '%s', it should be greater than 0", K_KEY));
+        }
+        if (minSimilarity < 0 || minSimilarity >= 1) {
+            throw new RuntimeException(String.format("Invalid value for '%s', it should be between 0 (inclusive) and 1 (exclusive)", MIN_SIMILARITY_KEY));
+        }
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public float getMinSimilarity() {
+        return minSimilarity;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * @return the requested feature source, or null for the default one of
+     * the metric
+     */
+    public String getFeatures() {
+        return features;
+    }
+}
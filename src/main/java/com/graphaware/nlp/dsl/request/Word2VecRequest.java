@@ -15,6 +15,7 @@
  */
 package com.graphaware.nlp.dsl.request;
 
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
 import org.neo4j.graphdb.Node;
 
 import java.util.Map;
@@ -30,11 +31,13 @@ public class Word2VecRequest {
     private static final String PARAMETER_PROPERTY_QUERY = "query";
     private static final String PARAMETER_NAME_TAG = "tag";
     private static final String PARAMETER_NAME_TEXT_PROCESSOR = "textProcessor";
+    private static final String PARAMETER_NAME_ENCODING = "encoding";
 
     private static final String DEFAULT_PROPERTY_NAME = "word2vec";
     private final static String DEFAULT_LANGUAGE = "en";
     private static final boolean DEFAULT_SPLIT_TAG = false;
     private static final boolean DEFAULT_FILTER_LANG = true;
+    private static final String DEFAULT_ENCODING = VectorEncoding.DOUBLE.getName();
 
     private Node annotatedNode;
     private Node tagNode;
@@ -45,6 +48,7 @@ public class Word2VecRequest {
     private String modelName;
     private String propertyName;
     private String processor;
+    private VectorEncoding encoding;
 
     public static Word2VecRequest fromMap(Map<String, Object> word2VecRankRequest) {
         Word2VecRequest result = new Word2VecRequest();
@@ -57,6 +61,7 @@ public class Word2VecRequest {
         result.setModelName((String) word2VecRankRequest.get(PARAMETER_MODEL_NAME));
         result.setPropertyName((String) word2VecRankRequest.getOrDefault(PARAMETER_PROPERTY_NAME, DEFAULT_PROPERTY_NAME));
         result.setProcessor((String) word2VecRankRequest.getOrDefault(PARAMETER_NAME_TEXT_PROCESSOR, ""));
+        result.setEncoding(VectorEncoding.fromName((String) word2VecRankRequest.getOrDefault(PARAMETER_NAME_ENCODING, DEFAULT_ENCODING)));
         return result;
     }
 
@@ -131,5 +136,13 @@ public class Word2VecRequest {
     public void setProcessor(String processor) {
         this.processor = processor;
     }
+
+    public VectorEncoding getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(VectorEncoding encoding) {
+        this.encoding = encoding;
+    }
     
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.pagerank;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Weighted PageRank over a {@link WeightedGraph}. Each iteration is a single
+ * pass over the incoming edges (O(E)), working on primitive score arrays.
+ * With a concurrency greater than one, the node range is split into
+ * partitions that are processed on a fork-join pool at every iteration; the
+ * per-partition maximum score changes are then combined for the convergence
+ * check. Every node is computed from the previous iteration only, so the
+ * result does not depend on the concurrency. Personalized PageRank is
+ * supported through a non-uniform teleport vector, and a previous score
+ * vector can be used as a warm start.
+ */
+public class PageRankEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PageRankEngine.class);
+
+    private static final int MIN_PARTITION_SIZE = 1024;
+
+    private final int concurrency;
+
+    public PageRankEngine() {
+        this(1);
+    }
+
+    public PageRankEngine(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public double[] run(WeightedGraph graph, int iterations, double dampFactor, double threshold) {
+        return run(graph, iterations, dampFactor, threshold, teleportVector(graph, dampFactor, null), null);
+    }
+
+    /**
+     * Runs PageRank with restart to the given teleport vector (see
+     * {@link #teleportVector(WeightedGraph, double, Map)}), starting from the
+     * <code>initial</code> scores when given. Missing (NaN) initial scores
+     * start from their teleport value.
+     */
+    public double[] run(WeightedGraph graph, int iterations, double dampFactor, double threshold, double[] teleport, double[] initial) {
+        int n = graph.size();
+        double[] pagerank = new double[n];
+        for (int node = 0; node < n; node++) {
+            pagerank[node] = initial == null || Double.isNaN(initial[node]) ? teleport[node] : initial[node];
+        }
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        ForkJoinPool pool = concurrency > 1 ? new ForkJoinPool(concurrency) : null;
+        try {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                final double[] current = pagerank;
+                final double[] target = next;
+                execute(pool, n, (from, to) -> computeContributions(graph, current, contribution, from, to));
+                double maxDiff = execute(pool, n, (from, to) -> rank(graph, contribution, current, target, teleport, dampFactor, from, to));
+                pagerank = target;
+                next = current;
+                if (maxDiff <= threshold) {
+                    LOG.warn("Threshold hit after " + (iteration + 1) + " iterations");
+                    break;
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return pagerank;
+    }
+
+    /**
+     * Builds the restart vector: <code>(1 - dampFactor) / n</code> for every
+     * node when no seeds are given, otherwise <code>(1 - dampFactor)</code>
+     * spread over the seed nodes proportionally to their weights. Seeds that
+     * are not part of the graph or have a non-positive weight are ignored.
+     */
+    public static double[] teleportVector(WeightedGraph graph, double dampFactor, Map<Long, Double> seeds) {
+        int n = graph.size();
+        double[] teleport = new double[n];
+        double seedWeightSum = 0.0d;
+        if (seeds != null) {
+            for (Map.Entry<Long, Double> seed : seeds.entrySet()) {
+                int node = graph.indexOf(seed.getKey());
+                if (node >= 0 && seed.getValue() > 0) {
+                    teleport[node] += seed.getValue();
+                    seedWeightSum += seed.getValue();
+                }
+            }
+        }
+        if (seedWeightSum == 0.0d) {
+            if (seeds != null && !seeds.isEmpty()) {
+                LOG.warn("None of the seeds is part of the graph, using uniform teleport");
+            }
+            Arrays.fill(teleport, (1.0d - dampFactor) / n);
+            return teleport;
+        }
+        for (int node = 0; node < n; node++) {
+            teleport[node] = (1.0d - dampFactor) * teleport[node] / seedWeightSum;
+        }
+        return teleport;
+    }
+
+    private double execute(ForkJoinPool pool, int n, RangeComputation computation) {
+        if (pool == null) {
+            return computation.compute(0, n);
+        }
+        int partitionSize = Math.max(MIN_PARTITION_SIZE, n / (concurrency * 4));
+        return pool.invoke(new RangeTask(computation, 0, n, partitionSize));
+    }
+
+    protected static double computeContributions(WeightedGraph graph, double[] pagerank, double[] contribution, int from, int to) {
+        for (int node = from; node < to; node++) {
+            double outWeightSum = graph.outWeightSum(node);
+            contribution[node] = outWeightSum > 0 ? pagerank[node] / outWeightSum : 0.0d;
+        }
+        return 0.0d;
+    }
+
+    /**
+     * Computes the new scores of the nodes in <code>[from, to)</code> and
+     * returns the maximum absolute change among them.
+     */
+    protected static double rank(WeightedGraph graph, double[] contribution, double[] pagerank, double[] next,
+                                 double[] teleport, double dampFactor, int from, int to) {
+        double maxDiff = 0.0d;
+        for (int node = from; node < to; node++) {
+            next[node] = teleport[node] + dampFactor * sumIncoming(graph, contribution, node);
+            maxDiff = Math.max(maxDiff, Math.abs(next[node] - pagerank[node]));
+        }
+        return maxDiff;
+    }
+
+    protected static double sumIncoming(WeightedGraph graph, double[] contribution, int node) {
+        double sum = 0.0d;
+        for (int edge = graph.inDegreeStart(node), end = graph.inDegreeEnd(node); edge < end; edge++) {
+            sum += graph.inWeight(edge) * contribution[graph.inSource(edge)];
+        }
+        return sum;
+    }
+
+    private interface RangeComputation {
+
+        double compute(int from, int to);
+    }
+
+    private static class RangeTask extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeComputation computation;
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+
+        RangeTask(RangeComputation computation, int from, int to, int partitionSize) {
+            this.computation = computation;
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= partitionSize) {
+                return computation.compute(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(computation, from, middle, partitionSize);
+            left.fork();
+            double right = new RangeTask(computation, middle, to, partitionSize).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+}
@@ -17,16 +17,17 @@ package com.graphaware.nlp.ml.pagerank;
 
 import com.graphaware.nlp.annotation.NLPModuleExtension;
 import com.graphaware.nlp.dsl.request.PageRankRequest;
+import com.graphaware.nlp.dsl.result.NodeScoreResult;
 import com.graphaware.nlp.dsl.result.SingleResult;
 import com.graphaware.nlp.extension.AbstractExtension;
 import com.graphaware.nlp.extension.NLPExtension;
-import com.graphaware.nlp.ml.textrank.CoOccurrenceItem;
 import com.graphaware.nlp.ml.textrank.PageRank;
 import com.graphaware.nlp.processor.TextProcessorsManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
+import java.util.stream.Stream;
 
 @NLPModuleExtension(name = "PageRankProcessor")
 public class PageRankProcessor extends AbstractExtension implements NLPExtension {
@@ -34,28 +35,40 @@ public class PageRankProcessor extends AbstractExtension implements NLPExtension
     private static final Logger LOG = LoggerFactory.getLogger(TextProcessorsManager.class);
 
     public SingleResult process(PageRankRequest request) {
-        String nodeType = request.getNodeType();
-        String relType = request.getRelationshipType();
-        String relWeight = request.getRelationshipWeight();
-        int iter = request.getIteration().intValue();
-        double damp = request.getDamp();
-        double threshold = request.getThreshold();
-        boolean respectDirections = request.getRespectDirections();
-
-        PageRank pagerank = new PageRank(getDatabase());
-        pagerank.respectDirections(respectDirections);
-        Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences = pagerank.processGraph(nodeType, relType, relWeight);
-        if (coOccurrences.isEmpty()) {
-            return SingleResult.fail();
-        }
-        Map<Long, Double> pageranks = pagerank.run(coOccurrences, iter, damp, threshold);
+        PageRank pagerank = createPageRank(request);
+        Map<Long, Double> pageranks = compute(pagerank, request);
         if (pageranks.isEmpty()) {
             return SingleResult.fail();
         }
-        pageranks.entrySet().stream().forEach(en -> LOG.info("PR(" + en.getKey() + ") = " + en.getValue()));
-        LOG.info("Sum of PageRanks: " + pageranks.values().stream().mapToDouble(Number::doubleValue).sum());
-        pagerank.storeOnGraph(pageranks, nodeType);
+        pagerank.storeOnGraph(pageranks, request.getNodeType(), request.getWriteProperty(), request.getBatchSize());
 
         return SingleResult.success();
     }
+
+    public Stream<NodeScoreResult> stream(PageRankRequest request) {
+        Map<Long, Double> pageranks = compute(createPageRank(request), request);
+        Stream<Map.Entry<Long, Double>> ranked = pageranks.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed());
+        if (request.getTopK() > 0) {
+            ranked = ranked.limit(request.getTopK());
+        }
+        return ranked.map(entry -> new NodeScoreResult(getDatabase().getNodeById(entry.getKey()), entry.getValue()));
+    }
+
+    private PageRank createPageRank(PageRankRequest request) {
+        PageRank pagerank = new PageRank(getDatabase());
+        pagerank.respectDirections(request.getRespectDirections());
+        pagerank.setConcurrency(request.getConcurrency());
+        pagerank.setSeeds(request.getSeeds());
+        pagerank.setStartProperty(request.getStartProperty());
+        return pagerank;
+    }
+
+    private Map<Long, Double> compute(PageRank pagerank, PageRankRequest request) {
+        WeightedGraph graph = new WeightedGraphLoader(getDatabase(), request.getConcurrency())
+                .load(request.getNodeType(), request.getRelationshipType(), request.getRelationshipWeight(), request.getRespectDirections());
+        Map<Long, Double> pageranks = pagerank.run(graph, request.getIteration().intValue(), request.getDamp(), request.getThreshold());
+        LOG.info("Sum of PageRanks: " + pageranks.values().stream().mapToDouble(Number::doubleValue).sum());
+        return pageranks;
+    }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.pagerank;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable weighted directed graph stored in compressed-sparse-row format
+ * over its incoming edges. Node ids are compacted to the <code>[0, n)</code>
+ * range, ordered by their original (graph) id.
+ */
+public class WeightedGraph {
+
+    private final long[] nodeIds;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final double[] inWeights;
+    private final double[] outWeightSums;
+
+    private WeightedGraph(long[] nodeIds, int[] inOffsets, int[] inSources, double[] inWeights, double[] outWeightSums) {
+        this.nodeIds = nodeIds;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        this.outWeightSums = outWeightSums;
+    }
+
+    public int size() {
+        return nodeIds.length;
+    }
+
+    public int edgeCount() {
+        return inSources.length;
+    }
+
+    public long nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * @return the compacted index of the given node id, or a negative value
+     * if the node is not part of the graph
+     */
+    public int indexOf(long nodeId) {
+        return Arrays.binarySearch(nodeIds, nodeId);
+    }
+
+    public int inDegreeStart(int index) {
+        return inOffsets[index];
+    }
+
+    public int inDegreeEnd(int index) {
+        return inOffsets[index + 1];
+    }
+
+    public int inSource(int edge) {
+        return inSources[edge];
+    }
+
+    public double inWeight(int edge) {
+        return inWeights[edge];
+    }
+
+    public double outWeightSum(int index) {
+        return outWeightSums[index];
+    }
+
+    public Map<Long, Double> toMap(double[] values) {
+        Map<Long, Double> result = new HashMap<>(nodeIds.length * 2);
+        for (int i = 0; i < nodeIds.length; i++) {
+            result.put(nodeIds[i], values[i]);
+        }
+        return result;
+    }
+
+    public static class Builder {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] nodes = new long[INITIAL_CAPACITY];
+        private int nodeCount = 0;
+        private long[] sources = new long[INITIAL_CAPACITY];
+        private long[] destinations = new long[INITIAL_CAPACITY];
+        private double[] weights = new double[INITIAL_CAPACITY];
+        private int edgeCount = 0;
+        private long[] outWeightSources = new long[INITIAL_CAPACITY];
+        private double[] outWeights = new double[INITIAL_CAPACITY];
+        private int outWeightCount = 0;
+
+        public Builder addNode(long nodeId) {
+            if (nodeCount == nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            nodes[nodeCount++] = nodeId;
+            return this;
+        }
+
+        public Builder addEdge(long source, long destination, double weight) {
+            if (edgeCount == sources.length) {
+                int capacity = sources.length * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                destinations = Arrays.copyOf(destinations, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            sources[edgeCount] = source;
+            destinations[edgeCount] = destination;
+            weights[edgeCount] = weight;
+            edgeCount++;
+            return this;
+        }
+
+        /**
+         * Adds to the out-weight sum of the source without adding an edge,
+         * for edges leading to nodes left out of the graph: the share of the
+         * score of the source sent along them is lost. Ignored when the
+         * source is not part of the graph.
+         */
+        public Builder addOutWeight(long source, double weight) {
+            if (outWeightCount == outWeightSources.length) {
+                int capacity = outWeightSources.length * 2;
+                outWeightSources = Arrays.copyOf(outWeightSources, capacity);
+                outWeights = Arrays.copyOf(outWeights, capacity);
+            }
+            outWeightSources[outWeightCount] = source;
+            outWeights[outWeightCount] = weight;
+            outWeightCount++;
+            return this;
+        }
+
+        public Builder addAll(Builder other) {
+            for (int i = 0; i < other.nodeCount; i++) {
+                addNode(other.nodes[i]);
+            }
+            for (int e = 0; e < other.edgeCount; e++) {
+                addEdge(other.sources[e], other.destinations[e], other.weights[e]);
+            }
+            for (int i = 0; i < other.outWeightCount; i++) {
+                addOutWeight(other.outWeightSources[i], other.outWeights[i]);
+            }
+            return this;
+        }
+
+        public WeightedGraph build() {
+            long[] nodeIds = compactNodeIds();
+            int n = nodeIds.length;
+            int[] inOffsets = new int[n + 1];
+            double[] outWeightSums = new double[n];
+            int[] sourceIndexes = new int[edgeCount];
+            int[] destinationIndexes = new int[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                sourceIndexes[e] = Arrays.binarySearch(nodeIds, sources[e]);
+                destinationIndexes[e] = Arrays.binarySearch(nodeIds, destinations[e]);
+                inOffsets[destinationIndexes[e] + 1]++;
+                outWeightSums[sourceIndexes[e]] += weights[e];
+            }
+            for (int i = 0; i < outWeightCount; i++) {
+                int source = Arrays.binarySearch(nodeIds, outWeightSources[i]);
+                if (source >= 0) {
+                    outWeightSums[source] += outWeights[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                inOffsets[i + 1] += inOffsets[i];
+            }
+            int[] inSources = new int[edgeCount];
+            double[] inWeights = new double[edgeCount];
+            int[] position = Arrays.copyOf(inOffsets, n);
+            for (int e = 0; e < edgeCount; e++) {
+                int slot = position[destinationIndexes[e]]++;
+                inSources[slot] = sourceIndexes[e];
+                inWeights[slot] = weights[e];
+            }
+            return new WeightedGraph(nodeIds, inOffsets, inSources, inWeights, outWeightSums);
+        }
+
+        private long[] compactNodeIds() {
+            long[] sorted = new long[nodeCount + 2 * edgeCount];
+            System.arraycopy(nodes, 0, sorted, 0, nodeCount);
+            System.arraycopy(sources, 0, sorted, nodeCount, edgeCount);
+            System.arraycopy(destinations, 0, sorted, nodeCount + edgeCount, edgeCount);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, unique);
+        }
+    }
+}
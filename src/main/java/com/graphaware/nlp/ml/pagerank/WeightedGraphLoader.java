@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.pagerank;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a {@link WeightedGraph} through the Core API: the nodes carrying the
+ * given label are scanned once, then their outgoing relationships of the given
+ * type are walked in parallel over ranges of the scanned node ids, each range
+ * in its own transaction and into its own primitive edge buffer. Only
+ * relationships between two nodes of the label are kept, and weights are read
+ * as doubles (1.0 when the property is missing or not numeric).
+ */
+public class WeightedGraphLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WeightedGraphLoader.class);
+
+    private static final double DEFAULT_WEIGHT = 1.0d;
+
+    private final GraphDatabaseService database;
+    private final int concurrency;
+
+    public WeightedGraphLoader(GraphDatabaseService database, int concurrency) {
+        this.database = database;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public WeightedGraph load(String nodeType, String relType, String weightProperty, boolean respectDirections) {
+        Label label = Label.label(nodeType);
+        RelationshipType type = RelationshipType.withName(relType);
+        long[] nodeIds = scanNodes(label);
+        int partitions = Math.min(concurrency, Math.max(1, nodeIds.length));
+        int partitionSize = (nodeIds.length + partitions - 1) / partitions;
+        WeightedGraph.Builder builder = new WeightedGraph.Builder();
+        if (partitions == 1) {
+            builder.addAll(loadRange(nodeIds, 0, nodeIds.length, label, type, weightProperty, respectDirections));
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(partitions);
+            try {
+                List<Future<WeightedGraph.Builder>> ranges = new ArrayList<>(partitions);
+                for (int from = 0; from < nodeIds.length; from += partitionSize) {
+                    int start = from;
+                    int end = Math.min(nodeIds.length, from + partitionSize);
+                    ranges.add(executor.submit(() -> loadRange(nodeIds, start, end, label, type, weightProperty, respectDirections)));
+                }
+                for (Future<WeightedGraph.Builder> range : ranges) {
+                    builder.addAll(range.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Error while loading " + nodeType + " graph", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        WeightedGraph graph = builder.build();
+        LOG.info("Loaded graph with " + graph.size() + " nodes and " + graph.edgeCount() + " edges");
+
+        return graph;
+    }
+
+    private long[] scanNodes(Label label) {
+        long[] nodeIds = new long[1024];
+        int count = 0;
+        try (Transaction tx = database.beginTx(); ResourceIterator<Node> nodes = database.findNodes(label)) {
+            while (nodes.hasNext()) {
+                if (count == nodeIds.length) {
+                    nodeIds = Arrays.copyOf(nodeIds, count * 2);
+                }
+                nodeIds[count++] = nodes.next().getId();
+            }
+            tx.success();
+        }
+        return Arrays.copyOf(nodeIds, count);
+    }
+
+    private WeightedGraph.Builder loadRange(long[] nodeIds, int from, int to, Label label, RelationshipType type,
+                                            String weightProperty, boolean respectDirections) {
+        WeightedGraph.Builder builder = new WeightedGraph.Builder();
+        try (Transaction tx = database.beginTx()) {
+            for (int i = from; i < to; i++) {
+                Node node = database.getNodeById(nodeIds[i]);
+                for (Relationship rel : node.getRelationships(type, Direction.OUTGOING)) {
+                    Node other = rel.getEndNode();
+                    if (!other.hasLabel(label)) {
+                        continue;
+                    }
+                    double weight = getWeight(rel, weightProperty);
+                    builder.addEdge(nodeIds[i], other.getId(), weight);
+                    if (!respectDirections) {
+                        builder.addEdge(other.getId(), nodeIds[i], weight);
+                    }
+                }
+            }
+            tx.success();
+        }
+        return builder;
+    }
+
+    private static double getWeight(Relationship rel, String weightProperty) {
+        if (weightProperty == null) {
+            return DEFAULT_WEIGHT;
+        }
+        Object weight = rel.getProperty(weightProperty, null);
+        return weight instanceof Number ? ((Number) weight).doubleValue() : DEFAULT_WEIGHT;
+    }
+}
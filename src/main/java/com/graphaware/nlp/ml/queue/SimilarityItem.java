@@ -69,15 +69,6 @@ public class SimilarityItem implements Comparable<SimilarityItem> {
         if (o == null) {
             return 1;
         }
-        if (!this.getSimilarityType().equalsIgnoreCase(o.getSimilarityType())) {
-            throw new RuntimeException("Similarities cannot be compared since they belong to different similarity types");
-        }
-        if (this.getSimilarity() > o.getSimilarity()) {
-            return 1;
-        }
-        if (this.getSimilarity() == o.getSimilarity()) {
-            return 0;
-        }
-        return -1;
+        return Float.compare(similarity, o.similarity);
     }
 }
@@ -15,61 +15,246 @@
  */
 package com.graphaware.nlp.ml.queue;
 
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.persistence.constants.Properties;
 import org.neo4j.graphdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Background writer for the kNN lists computed by the similarity procedures.
+ * Entries are buffered in a bounded queue, so producers block (instead of
+ * filling the heap) when they get ahead of the writer, and are stored by a
+ * single thread in transactions of at most <code>batchSize</code> entries.
+ * The writer thread is started and stopped together with the NLP module;
+ * while it is not running, entries are written in the caller's thread.
+ * <p>
+ * The writer commits its own transactions, so callers must not hold locks on
+ * the nodes being related (by writing to them in their transaction) while
+ * they offer or flush entries: the writer would block on those locks until
+ * the caller's transaction ends. Offering and flushing therefore give up
+ * when the writer makes no progress for <code>similarityWriteTimeout</code>
+ * milliseconds (60000 by default), failing the caller.
+ */
 public class SimilarityQueueProcessor implements Runnable {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SimilarityQueueProcessor.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_WRITE_TIMEOUT_MS = 60000;
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 60000;
+
     private final BlockingQueue<SimilarityItemProcessEntry> queue;
     private final GraphDatabaseService database;
-    private static final Logger LOG = LoggerFactory.getLogger(SimilarityQueueProcessor.class);
+    private final DynamicConfiguration configuration;
+    private final Object pendingLock = new Object();
+    private long pending = 0;
+    private volatile boolean running = false;
+    private Thread worker;
+
+    public SimilarityQueueProcessor(GraphDatabaseService database, DynamicConfiguration configuration) {
+        this(database, configuration, getIntSetting(configuration, SettingsConstants.SIMILARITY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY));
+    }
 
-    public SimilarityQueueProcessor(GraphDatabaseService database) {
-        this.queue = new LinkedBlockingQueue<>();
+    public SimilarityQueueProcessor(GraphDatabaseService database, DynamicConfiguration configuration, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
         this.database = database;
+        this.configuration = configuration;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this, "GA-NLP-SimilarityWriter");
+        worker.setDaemon(true);
+        worker.start();
+        LOG.info("Similarity writer started with queue capacity " + (queue.remainingCapacity() + queue.size()));
+    }
+
+    /**
+     * Stops accepting work in the background thread, waits for the queued
+     * entries to be written and stops the writer thread.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            LOG.warn("Similarity writer did not stop in time, " + queue.size() + " entries were not written");
+            worker.interrupt();
+        }
+        worker = null;
+        LOG.info("Similarity writer stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Enqueues the entry, blocking while the queue is full.
+     *
+     * @throws RuntimeException if the queue stays full for longer than the
+     * write timeout
+     */
+    public void offer(SimilarityItemProcessEntry similarityItemProcessEntry) {
+        if (!running) {
+            write(Collections.singletonList(similarityItemProcessEntry));
+            return;
+        }
+        synchronized (pendingLock) {
+            pending++;
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(similarityItemProcessEntry, getWriteTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            completed(1);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for space in the similarity queue", e);
+        }
+        if (!queued) {
+            completed(1);
+            throw new RuntimeException(timeoutMessage("for space in the similarity queue"));
+        }
+    }
+
+    /**
+     * Blocks until every entry offered so far has been written (or dropped
+     * after repeated failures).
+     *
+     * @throws RuntimeException if the writer does not write any entry for
+     * longer than the write timeout
+     */
+    public void flush() {
+        long timeout = getWriteTimeout();
+        synchronized (pendingLock) {
+            long lastPending = pending;
+            long deadline = System.currentTimeMillis() + timeout;
+            while (pending > 0 && running) {
+                if (pending < lastPending) {
+                    lastPending = pending;
+                    deadline = System.currentTimeMillis() + timeout;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RuntimeException(timeoutMessage("for " + pending + " similarity entries to be written"));
+                }
+                try {
+                    pendingLock.wait(Math.min(POLL_TIMEOUT_MS, remaining));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the similarity entries to be written", e);
+                }
+            }
+        }
+    }
+
+    private String timeoutMessage(String waitingFor) {
+        return "The similarity writer made no progress for " + getWriteTimeout() + "ms while waiting " + waitingFor
+                + ". The calling transaction may hold locks on the nodes being related; the timeout can be changed with the "
+                + SettingsConstants.SIMILARITY_WRITE_TIMEOUT + " setting";
+    }
+
+    public int getQueueSize() {
+        return queue.size();
     }
 
     @Override
     public void run() {
-        while (true) {
+        List<SimilarityItemProcessEntry> items = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
             try {
-                List<SimilarityItemProcessEntry> items = new ArrayList<>();
-                items.add(queue.take());
-                queue.drainTo(items, 99);
-                LOG.warn("Processing: " + items.size() + " over " + queue.size() + " element at " + System.currentTimeMillis());
-                try (Transaction tx = database.beginTx()) {
-                    items.stream().filter((item) -> (item.getkNN() != null && item.getkNN().size() > 0))
-                            .forEach((item) -> {
-                                clearCurrentSimilarity(item);
-                                createRelationship(item);
-                            });
-                    tx.success();
-                } catch (Exception ex) {
-                    LOG.error("Errors occur during storing of similarity data. Reenqueing ...", ex);
-                    items.stream().filter((item) -> (item.getkNN() != null && item.getkNN().size() > 0))
-                            .forEach((item) -> {
-                                queue.offer(item);
-                            });
+                SimilarityItemProcessEntry first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
                 }
-                LOG.warn("Completed processing : " + items.size() + " element at " + System.currentTimeMillis());
-
+                items.add(first);
+                queue.drainTo(items, getBatchSize() - 1);
+                write(items);
             } catch (InterruptedException ex) {
-                LOG.error("Error while getting elements from queue", ex);
+                LOG.warn("Similarity writer interrupted, " + queue.size() + " entries were not written");
+                Thread.currentThread().interrupt();
+                return;
             } catch (Exception ex) {
                 LOG.error("Error while processing elements from queue", ex);
+            } finally {
+                completed(items.size());
+                items.clear();
             }
         }
     }
 
+    private void write(List<SimilarityItemProcessEntry> items) {
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            try (Transaction tx = database.beginTx()) {
+                items.stream().filter((item) -> (item.getkNN() != null && item.getkNN().size() > 0))
+                        .forEach((item) -> {
+                            clearCurrentSimilarity(item);
+                            createRelationship(item);
+                        });
+                tx.success();
+                LOG.debug("Stored similarities of " + items.size() + " nodes, " + queue.size() + " waiting");
+                return;
+            } catch (Exception ex) {
+                LOG.error("Errors occur during storing of similarity data (attempt " + attempt + " of " + MAX_WRITE_ATTEMPTS + ")", ex);
+            }
+        }
+        LOG.error("Similarities of " + items.size() + " nodes could not be stored and were dropped");
+    }
+
+    private void completed(int count) {
+        if (count == 0) {
+            return;
+        }
+        synchronized (pendingLock) {
+            pending -= count;
+            pendingLock.notifyAll();
+        }
+    }
+
+    public int getBatchSize() {
+        return getIntSetting(configuration, SettingsConstants.SIMILARITY_WRITE_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    public int getWriteTimeout() {
+        return getIntSetting(configuration, SettingsConstants.SIMILARITY_WRITE_TIMEOUT, DEFAULT_WRITE_TIMEOUT_MS);
+    }
+
+    private static int getIntSetting(DynamicConfiguration configuration, String key, int defaultValue) {
+        if (configuration == null || !configuration.hasSettingValue(key)) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.valueOf(String.valueOf(configuration.getSettingValueFor(key))));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for setting " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     private void createRelationship(SimilarityItemProcessEntry item) throws QueryExecutionException {
         final RelationshipType simType = RelationshipType.withName(item.getkNN().get(0).getSimilarityType());
         Node node = database.getNodeById(item.getNodeId());
@@ -86,8 +271,4 @@ public class SimilarityQueueProcessor implements Runnable {
         database.execute("MATCH (input:AnnotatedText)-[r:" + similartyType + "]->() WHERE id(input) = {id} DELETE r", params);
     }
 
-    public void offer(SimilarityItemProcessEntry similarityItemProcessEntry) {
-        queue.offer(similarityItemProcessEntry);
-    }
-
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import com.graphaware.nlp.ml.similarity.feature.TermFrequencyFeatureSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Overlap of the BM25 weights of the features shared by two documents,
+ * normalized by the norms of their weight vectors. The term frequencies are
+ * turned into BM25 weights once for the corpus, with the document
+ * frequencies and the average document length of the given vectors:
+ * <code>idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * length / avgLength))</code>.
+ */
+public class Bm25Similarity extends CosineSimilarity {
+
+    public static final String NAME = "bm25";
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDefaultFeatureSource() {
+        return TermFrequencyFeatureSource.NAME;
+    }
+
+    @Override
+    public Map<Long, SparseVector> prepare(Map<Long, SparseVector> vectors) {
+        Map<Long, Integer> documentFrequencies = new HashMap<>();
+        double totalLength = 0.0d;
+        for (SparseVector vector : vectors.values()) {
+            for (int i = 0; i < vector.size(); i++) {
+                documentFrequencies.merge(vector.index(i), 1, Integer::sum);
+                totalLength += vector.value(i);
+            }
+        }
+        int documentCount = vectors.size();
+        float averageLength = documentCount > 0 ? (float) (totalLength / documentCount) : 0.0f;
+        Map<Long, SparseVector> weighted = new HashMap<>(vectors.size() * 2);
+        vectors.forEach((id, vector) -> weighted.put(id, weigh(vector, documentFrequencies, documentCount, averageLength)));
+        return weighted;
+    }
+
+    private static SparseVector weigh(SparseVector vector, Map<Long, Integer> documentFrequencies, int documentCount, float averageLength) {
+        float length = 0.0f;
+        for (int i = 0; i < vector.size(); i++) {
+            length += vector.value(i);
+        }
+        float lengthNorm = averageLength > 0 ? K1 * (1 - B + B * length / averageLength) : K1;
+        float[] weights = new float[vector.size()];
+        for (int i = 0; i < vector.size(); i++) {
+            float tf = vector.value(i);
+            int df = documentFrequencies.get(vector.index(i));
+            float idf = (float) Math.log(1.0d + (documentCount - df + 0.5d) / (df + 0.5d));
+            weights[i] = idf * tf * (K1 + 1) / (tf + lengthNorm);
+        }
+        return SparseVector.of(vector.indices(), weights);
+    }
+}
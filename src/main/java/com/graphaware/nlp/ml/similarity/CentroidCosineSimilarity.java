@@ -13,35 +13,24 @@
  * the GNU General Public License along with this program.  If not, see
  * <http://www.gnu.org/licenses/>.
  */
-package com.graphaware.nlp.util;
+package com.graphaware.nlp.ml.similarity;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import com.graphaware.nlp.ml.similarity.feature.EmbeddingFeatureSource;
 
-public class FixedSizeOrderedList<T extends Comparable> extends ArrayList<T> {
-    
-    private final int maxSize;
+/**
+ * Cosine similarity of the word embedding centroids of the documents.
+ */
+public class CentroidCosineSimilarity extends CosineSimilarity {
+
+    public static final String NAME = "centroid";
 
-    public FixedSizeOrderedList(int maxSize) {
-        super();
-        this.maxSize = maxSize;
+    @Override
+    public String getName() {
+        return NAME;
     }
-    
+
     @Override
-    public boolean add(T value) {
-        int index = 0;
-        Iterator<T> iter = this.iterator();
-        while (iter.hasNext() 
-                && iter.next().compareTo(value) > 0) {
-            index++;
-            if (index > maxSize) {
-                return false;
-            }
-        }
-        super.add(index, value);
-        if (this.size() > maxSize) {
-            this.remove(maxSize);
-        }
-        return true;
+    public String getDefaultFeatureSource() {
+        return EmbeddingFeatureSource.NAME;
     }
 }
@@ -16,20 +16,27 @@
 package com.graphaware.nlp.ml.similarity;
 
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.IntStream;
 
 public class CosineSimilarity implements Similarity {
 
+    public static final String NAME = "cosine";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
     @Override
-    public float getSimilarity(Map<Long, Float> xVector, Map<Long, Float> yVector) {
-        float a = getDotProduct(xVector, yVector);
-        float b = getNorm(xVector) * getNorm(yVector);
+    public float getSimilarity(SparseVector xVector, SparseVector yVector) {
+        return getSimilarity(xVector, yVector, xVector.dot(yVector));
+    }
+
+    @Override
+    public float getSimilarity(SparseVector xVector, SparseVector yVector, float dot) {
+        float b = xVector.norm() * yVector.norm();
 
         if (b > 0) {
-            return a / b;
+            return dot / b;
         } else {
             return 0;
         }
@@ -46,51 +53,20 @@ public class CosineSimilarity implements Similarity {
         }
     }
 
-    private float getDotProduct(final Map<Long, Float> xVector, final Map<Long, Float> yVector) {
-
-        final AtomicReference<Float> sum = new AtomicReference<>(0f);
-        TreeSet<Long> keys = new TreeSet<>(xVector.keySet());
-        keys.addAll(yVector.keySet());
-        keys.stream().forEach((key) -> {
-            if (xVector.containsKey(key) && yVector.containsKey(key)) {
-                float curValue = sum.get();
-                curValue += xVector.get(key) * yVector.get(key);
-                sum.set(curValue);
-            }
-        });
-        return sum.get();
-    }
-
     private double getDotProduct(final List<Double> xVector, final List<Double> yVector) {
-
-        final AtomicReference<Float> sum = new AtomicReference<>(0f);
-        IntStream.range(0, xVector.size())
-                .boxed().forEach((key) -> {
-                    float curValue = sum.get();
-                    curValue += xVector.get(key) * yVector.get(key);
-                    sum.set(curValue);
-                });
-        return sum.get();
+        double sum = 0.0d;
+        for (int i = 0; i < xVector.size(); i++) {
+            sum += xVector.get(i) * yVector.get(i);
+        }
+        return sum;
     }
 
-    private float getNorm(Map<Long, Float> xVector) {
-        final AtomicReference<Float> sum = new AtomicReference<>(0f);
-        xVector.values().stream().forEach((value) -> {
-            float curValue = sum.get();
-            curValue += value * value;
-            sum.set(curValue);
-        });
-        return Double.valueOf(Math.sqrt(sum.get().doubleValue())).floatValue();
-    }
-    
     private double getNorm(List<Double> xVector) {
-        final AtomicReference<Float> sum = new AtomicReference<>(0f);
-        xVector.stream().forEach((value) -> {
-            float curValue = sum.get();
-            curValue += value * value;
-            sum.set(curValue);
-        });
-        return Math.sqrt(sum.get().doubleValue());
+        double sum = 0.0d;
+        for (Double value : xVector) {
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
     }
 
 }
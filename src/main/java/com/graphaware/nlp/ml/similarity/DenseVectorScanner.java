@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Brute force cosine kNN over a dense vector property: the ids of the
+ * candidate nodes are collected first, then scanned in parallel partitions,
+ * each one reading the vectors in its own transaction and keeping its own
+ * {@link TopKCollector}. The partial results are merged at the end.
+ * Quantized vector properties are compared without being decoded.
+ */
+public class DenseVectorScanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DenseVectorScanner.class);
+
+    private static final int MIN_PARTITION_SIZE = 1024;
+
+    private final GraphDatabaseService database;
+
+    public DenseVectorScanner(GraphDatabaseService database) {
+        this.database = database;
+    }
+
+    /**
+     * @return the <code>k</code> nodes with the given label most similar to
+     * the query vector, best first; the node with the id
+     * <code>excludedId</code> is skipped
+     */
+    public TopKCollector topK(double[] vector, long excludedId, String label, String property, int k) {
+        long startTime = System.currentTimeMillis();
+        long[] candidates = getNodeIds(label);
+        double norm = DenseVectors.norm(vector);
+        int partitions = Math.max(1, Math.min(candidates.length / MIN_PARTITION_SIZE, Runtime.getRuntime().availableProcessors() * 4));
+        TopKCollector[] partial = new TopKCollector[partitions];
+        IntStream.range(0, partitions).parallel().forEach((partition) -> {
+            TopKCollector collector = new TopKCollector(k, Float.NEGATIVE_INFINITY);
+            try (Transaction tx = database.beginTx()) {
+                for (int i = partition; i < candidates.length; i += partitions) {
+                    if (candidates[i] == excludedId) {
+                        continue;
+                    }
+                    double cosine = QuantizedVectors.cosine(vector, norm, database.getNodeById(candidates[i]).getProperty(property, null));
+                    if (!Double.isNaN(cosine)) {
+                        collector.offer(candidates[i], (float) cosine);
+                    }
+                }
+                tx.success();
+            }
+            partial[partition] = collector;
+        });
+        TopKCollector result = new TopKCollector(k, Float.NEGATIVE_INFINITY);
+        for (TopKCollector collector : partial) {
+            for (int i = 0; i < collector.size(); i++) {
+                result.offer(collector.id(i), collector.score(i));
+            }
+        }
+        result.sort();
+        LOG.info("Scanned " + candidates.length + " " + label + " nodes in " + partitions + " partitions in " + (System.currentTimeMillis() - startTime) + "ms");
+        return result;
+    }
+
+    private long[] getNodeIds(String label) {
+        long[] ids = new long[MIN_PARTITION_SIZE];
+        int size = 0;
+        try (Transaction tx = database.beginTx()) {
+            ResourceIterator<Node> nodes = database.findNodes(Label.label(label));
+            while (nodes.hasNext()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                ids[size++] = nodes.next().getId();
+            }
+            tx.success();
+        }
+        return Arrays.copyOf(ids, size);
+    }
+}
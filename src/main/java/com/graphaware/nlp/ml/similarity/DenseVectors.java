@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import java.util.List;
+
+/**
+ * Dense vector kernels over primitive arrays (word2vec properties are
+ * stored as <code>double[]</code>). The loops are unrolled by four with
+ * independent accumulators, and all the sums are kept in double precision.
+ * Comparing vectors of different lengths throws an
+ * {@link IllegalArgumentException}.
+ */
+public final class DenseVectors {
+
+    private DenseVectors() {
+    }
+
+    public static double dot(double[] x, double[] y) {
+        int length = checkDimension(x.length, y.length);
+        int unrolled = length & ~3;
+        double s0 = 0.0d, s1 = 0.0d, s2 = 0.0d, s3 = 0.0d;
+        for (int i = 0; i < unrolled; i += 4) {
+            s0 += x[i] * y[i];
+            s1 += x[i + 1] * y[i + 1];
+            s2 += x[i + 2] * y[i + 2];
+            s3 += x[i + 3] * y[i + 3];
+        }
+        for (int i = unrolled; i < length; i++) {
+            s0 += x[i] * y[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static double norm(double[] x) {
+        return Math.sqrt(dot(x, x));
+    }
+
+    public static double cosine(double[] x, double[] y) {
+        double b = norm(x) * norm(y);
+        return b > 0 ? dot(x, y) / b : 0.0d;
+    }
+
+    /**
+     * Cosine similarity with a precomputed norm for <code>x</code>, for
+     * scans comparing one vector with many.
+     */
+    public static double cosine(double[] x, double xNorm, double[] y) {
+        double b = xNorm * norm(y);
+        return b > 0 ? dot(x, y) / b : 0.0d;
+    }
+
+    public static double euclidean(double[] x, double[] y) {
+        int length = checkDimension(x.length, y.length);
+        int unrolled = length & ~3;
+        double s0 = 0.0d, s1 = 0.0d, s2 = 0.0d, s3 = 0.0d;
+        for (int i = 0; i < unrolled; i += 4) {
+            double d0 = x[i] - y[i];
+            double d1 = x[i + 1] - y[i + 1];
+            double d2 = x[i + 2] - y[i + 2];
+            double d3 = x[i + 3] - y[i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (int i = unrolled; i < length; i++) {
+            double d = x[i] - y[i];
+            s0 += d * d;
+        }
+        return Math.sqrt((s0 + s1) + (s2 + s3));
+    }
+
+    /**
+     * @return the common length of the two vectors
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    static int checkDimension(int xLength, int yLength) {
+        if (xLength != yLength) {
+            throw new IllegalArgumentException("Vectors of different dimensions: " + xLength + " and " + yLength);
+        }
+        return xLength;
+    }
+
+    /**
+     * Converts a property value to a <code>double[]</code> without copying
+     * when it already is one.
+     *
+     * @return null if the value is not a numeric array or list
+     */
+    public static double[] toArray(Object value) {
+        if (value instanceof double[]) {
+            return (double[]) value;
+        }
+        if (value instanceof float[]) {
+            float[] floats = (float[]) value;
+            double[] result = new double[floats.length];
+            for (int i = 0; i < floats.length; i++) {
+                result[i] = floats[i];
+            }
+            return result;
+        }
+        if (value instanceof long[]) {
+            long[] longs = (long[]) value;
+            double[] result = new double[longs.length];
+            for (int i = 0; i < longs.length; i++) {
+                result[i] = longs[i];
+            }
+            return result;
+        }
+        if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            double[] result = new double[ints.length];
+            for (int i = 0; i < ints.length; i++) {
+                result[i] = ints[i];
+            }
+            return result;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            double[] result = new double[list.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ((Number) list.get(i)).doubleValue();
+            }
+            return result;
+        }
+        return null;
+    }
+}
@@ -17,36 +17,47 @@ package com.graphaware.nlp.ml.similarity;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.dsl.request.SimilarityRequest;
 import com.graphaware.nlp.ml.queue.SimilarityItem;
 import com.graphaware.nlp.ml.queue.SimilarityItemProcessEntry;
 import com.graphaware.nlp.ml.queue.SimilarityQueueProcessor;
+import com.graphaware.nlp.ml.similarity.feature.*;
+import com.graphaware.nlp.persistence.CorpusStatistics;
 import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.constants.Relationships;
-import com.graphaware.nlp.util.FixedSizeOrderedList;
 import org.neo4j.graphdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
-import static com.graphaware.nlp.domain.Constants.KNN_SIZE;
 
 public class FeatureBasedProcessLogic {
 
     private static final Logger LOG = LoggerFactory.getLogger(FeatureBasedProcessLogic.class);
 
-    private final static String DEFAULT_VECTOR_QUERY = "MATCH (doc:AnnotatedText)\n"
-            + "WITH count(doc) as documentsCount\n"
-            + "MATCH (input:AnnotatedText)-[:CONTAINS_SENTENCE]->(s:Sentence)-[ht:HAS_TAG]->(tag:Tag)\n"
+    /**
+     * Returns the term frequencies only, the IDF comes from the
+     * {@link CorpusStatistics} (custom queries can still return an idf
+     * column).
+     */
+    private final static String DEFAULT_VECTOR_QUERY = "MATCH (input:AnnotatedText)-[:CONTAINS_SENTENCE]->(s:Sentence)-[ht:HAS_TAG]->(tag:Tag)\n"
             + "WHERE id(input) = {id}\n"
-            + "MATCH (tag)<-[:HAS_TAG]-(:Sentence)<-[:CONTAINS_SENTENCE]-(document:AnnotatedText)\n"
-            + "WITH tag, ht.tf as tf, count(distinct document) as documentsCountForTag, documentsCount\n"
-            + "RETURN distinct id(tag) as tagId, sum(tf) as tf, (1.0f + 1.0f*documentsCount)/documentsCountForTag as idf";
+            + "RETURN id(tag) as tagId, sum(ht.tf) as tf";
 
     private final static String DEFAULT_VECTOR_QUERY_WITH_CONCEPT = "MATCH (doc:AnnotatedText)\n"
             + "WITH count(doc) as documentsCount\n"
@@ -54,24 +65,68 @@ public class FeatureBasedProcessLogic {
             + "WHERE id(document) = {id} and not any (p in tag.pos where p in [\"CC\", \"CD\", \"DT\", \"IN\", \"MD\", \"PRP\", \"PRP$\", \"UH\", \"WDT\", \"WP\", \"WRB\", \"TO\", \"PDT\", \"RP\", \"WP$\"])\n" // JJR, JJS ?
             + "WITH tag, sum(ht.tf) as tf, documentsCount, document.numTerms as nTerms\n"
             + "OPTIONAL MATCH (tag)-[rt:IS_RELATED_TO]->(t2_l1:Tag)\n"
-            + "WHERE id(t2_l1) = tag.idMaxConcept  and exists(t2_l1.word2vec) and com.graphaware.nlp.ml.similarity.cosine(tag.word2vec, t2_l1.word2vec)>0.2\n"
+            + "WHERE id(t2_l1) = tag.idMaxConcept  and exists(t2_l1.word2vec) and ga.nlp.vector.cosine(tag, t2_l1, \"word2vec\")>0.2\n"
             + "WITH tag, tf, nTerms, id(t2_l1) as cn5_l1_tag, rt.weight as cn5_l1_tag_w, documentsCount\n"
             + "MATCH (a:AnnotatedText)-[:CONTAINS_SENTENCE]->(s:Sentence)-[ht:HAS_TAG]->(tag)\n"
             + "RETURN id(tag) as tagId, tf, (1.0f*documentsCount)/count(distinct a) as idf, nTerms, (case cn5_l1_tag when null then -1 else cn5_l1_tag end) as cn5_l1_tag, cn5_l1_tag_w\n"
             + "ORDER BY tagId, cn5_l1_tag";
     
+    private final static String CANDIDATE_DOCUMENTS_QUERY = "MATCH (input:AnnotatedText)-[:CONTAINS_SENTENCE]->(:Sentence)-[:HAS_TAG]->(tag:Tag)\n"
+            + "WHERE id(input) = {id}\n"
+            + "WITH DISTINCT input, tag\n"
+            + "MATCH (tag)<-[:HAS_TAG]-(:Sentence)<-[:CONTAINS_SENTENCE]-(other:AnnotatedText)\n"
+            + "WHERE other <> input\n"
+            + "RETURN DISTINCT id(other) as id";
+
     protected final Similarity similarityFunction;
     protected final GraphDatabaseService database;
 
     protected final SimilarityQueueProcessor queueProcessor;
+    protected final FeatureVectorStore vectorStore;
+    protected final CorpusStatistics corpusStatistics;
+    protected final SimilarityRegistry metrics;
+    protected final FeatureSourceRegistry featureSources;
 
-    public FeatureBasedProcessLogic(GraphDatabaseService database) {
+    public FeatureBasedProcessLogic(GraphDatabaseService database, DynamicConfiguration configuration, CorpusStatistics corpusStatistics,
+                                    SimilarityQueueProcessor queueProcessor) {
         this.similarityFunction = new CosineSimilarity();
-        this.queueProcessor = new SimilarityQueueProcessor(database);
+        this.queueProcessor = queueProcessor;
+        this.vectorStore = new FeatureVectorStore(configuration);
+        this.corpusStatistics = corpusStatistics;
         this.database = database;
+        this.metrics = buildAndRegisterMetrics();
+        this.featureSources = buildAndRegisterFeatureSources(configuration);
+    }
+
+    private SimilarityRegistry buildAndRegisterMetrics() {
+        SimilarityRegistry registry = new SimilarityRegistry();
+        registry.register(similarityFunction);
+        registry.register(new JaccardSimilarity());
+        registry.register(new Bm25Similarity());
+        registry.register(new CentroidCosineSimilarity());
+        return registry;
+    }
+
+    private FeatureSourceRegistry buildAndRegisterFeatureSources(DynamicConfiguration configuration) {
+        FeatureSourceRegistry registry = new FeatureSourceRegistry();
+        TfIdfFeatureSource tfIdf = new TfIdfFeatureSource(configuration, corpusStatistics);
+        registry.register(tfIdf);
+        registry.register(new PersistedFeatureSource(tfIdf, vectorStore, corpusStatistics));
+        registry.register(new TermFrequencyFeatureSource(configuration));
+        registry.register(new TagSetFeatureSource(configuration));
+        registry.register(new EmbeddingFeatureSource(database, configuration));
+        return registry;
     }
 
-    private final Cache<Long, Map<Long, Float>> tfCache
+    public SimilarityRegistry getMetrics() {
+        return metrics;
+    }
+
+    public FeatureSourceRegistry getFeatureSources() {
+        return featureSources;
+    }
+
+    private final Cache<Long, SparseVector> tfCache
             = CacheBuilder.newBuilder().maximumSize(10000).expireAfterAccess(30, TimeUnit.MINUTES).build();
 
     public float getFeatureCosine(long firstNode, long secondNode, String query) {
@@ -82,22 +137,27 @@ public class FeatureBasedProcessLogic {
         return similarityFunction.getSimilarity(getTFMap(firstNode, depth), getTFMap(secondNode, depth));
     }
 
-    private Map<Long, Float> getTFMap(long node, String query) throws QueryExecutionException {
-        Map<Long, Float> tfMap = tfCache.getIfPresent(node);
+    private SparseVector getTFMap(long node, String query) throws QueryExecutionException {
+        SparseVector tfMap = tfCache.getIfPresent(node);
         if (tfMap != null) {
             return tfMap;
         }
-        tfMap = createFeatureMap(node, query);
+        if (isDefaultQuery(query, 0)) {
+            tfMap = vectorStore.load(database.getNodeById(node), getCorpusSize());
+        }
+        if (tfMap == null) {
+            tfMap = SparseVector.fromMap(createFeatureMap(node, query));
+        }
         tfCache.put(node, tfMap);
         return tfMap;
     }
 
-    private Map<Long, Float> getTFMap(long node, int depth) throws QueryExecutionException {
-        Map<Long, Float> tfMap = tfCache.getIfPresent(node);
+    private SparseVector getTFMap(long node, int depth) throws QueryExecutionException {
+        SparseVector tfMap = tfCache.getIfPresent(node);
         if (tfMap != null) {
             return tfMap;
         }
-        tfMap = createFeatureMapWithCN5New(node);
+        tfMap = SparseVector.fromMap(createFeatureMapWithCN5New(node));
         tfCache.put(node, tfMap);
         return tfMap;
     }
@@ -113,12 +173,17 @@ public class FeatureBasedProcessLogic {
             float tf = getFloatValue(next.get("tf"));
             //int nTerms = (int) next.get("nTerms");
             //float tf = getFloatValue(next.get("tf")) / nTerms; // normalize to document length
-            float idf = Double.valueOf(Math.log10(Float.valueOf(getFloatValue(next.get("idf"))).doubleValue())).floatValue();
-            result.put(id, tf * idf);
+            float idf = next.containsKey("idf") ? getFloatValue(next.get("idf")) : getIdf(id);
+            result.put(id, tf * (float) Math.log10(idf));
         }
         return result;
     }
 
+    private float getIdf(long tagId) {
+        long frequency = corpusStatistics.getDocumentFrequency(tagId);
+        return frequency > 0 ? (1.0f + corpusStatistics.getDocumentCount()) / frequency : 1.0f;
+    }
+
     private Map<Long, Float> createFeatureMapWithCN5New(long firstNode) throws QueryExecutionException {
         Map<String, Object> params = new HashMap<>();
         params.put("id", firstNode);
@@ -162,72 +227,383 @@ public class FeatureBasedProcessLogic {
     }
 
     public int computeFeatureSimilarityForNodes(List<Long> firstNodeIds) {
-        return computeFeatureSimilarityForNodes(firstNodeIds, DEFAULT_VECTOR_QUERY, Relationships.SIMILARITY_COSINE.name(), 0);
+        return computeFeatureSimilarityForNodes(firstNodeIds, new SimilarityRequest());
+    }
+
+    public int computeFeatureSimilarityForNodes(List<Long> firstNodeIds, SimilarityRequest request) {
+        return computeFeatureSimilarityForNodes(firstNodeIds, DEFAULT_VECTOR_QUERY, getRelationshipType(request.getMetric()), 0, request);
+    }
+
+    /**
+     * The relationship type written by the default computation with the
+     * given metric: SIMILARITY_COSINE for cosine, SIMILARITY_JACCARD for
+     * jaccard, and so on.
+     */
+    public static String getRelationshipType(String metric) {
+        return CosineSimilarity.NAME.equals(metric) ? Relationships.SIMILARITY_COSINE.name() : "SIMILARITY_" + metric.toUpperCase();
     }
 
     public int computeFeatureSimilarityForNodes(List<Long> firstNodeIds, Integer depth) {
-        return computeFeatureSimilarityForNodes(firstNodeIds, DEFAULT_VECTOR_QUERY_WITH_CONCEPT, Relationships.SIMILARITY_COSINE_CN5.name(), depth);
+        return computeFeatureSimilarityForNodes(firstNodeIds, depth, new SimilarityRequest());
+    }
+
+    public int computeFeatureSimilarityForNodes(List<Long> firstNodeIds, Integer depth, SimilarityRequest request) {
+        return computeFeatureSimilarityForNodes(firstNodeIds, DEFAULT_VECTOR_QUERY_WITH_CONCEPT, Relationships.SIMILARITY_COSINE_CN5.name(), depth, request);
     }
 
     public int computeFeatureSimilarityForNodes(List<Long> firstNodeIds, String query, String similarityType, int depth) {
+        return computeFeatureSimilarityForNodes(firstNodeIds, query, similarityType, depth, new SimilarityRequest());
+    }
+
+    /**
+     * Computes the kNN of the given nodes (all the AnnotatedText nodes when
+     * null) among all the AnnotatedText nodes. Candidates are the documents
+     * sharing a tag with the node (exact) or, in approximate mode, the
+     * documents sharing an LSH bucket with it; the similarity is computed
+     * exactly for every candidate in both cases, with the requested metric.
+     * With the default query, the vectors come from the requested feature
+     * source (the default one of the metric when none is requested).
+     */
+    public int computeFeatureSimilarityForNodes(List<Long> firstNodeIds, String query, String similarityType, int depth, SimilarityRequest request) {
         long startTime = System.currentTimeMillis();
         final AtomicInteger countProcessed = new AtomicInteger(0);
         final AtomicInteger countStored = new AtomicInteger(0);
         final AtomicInteger nodeAnalyzed = new AtomicInteger(0);
-        if (firstNodeIds == null) {
-            firstNodeIds = new ArrayList<>();
-            ResourceIterator<Node> properties = database.findNodes(Labels.AnnotatedText);
-            while (properties.hasNext()) {
-                firstNodeIds.add(properties.next().getId());
-            }
+        List<Long> allNodeIds = getAnnotatedTextIds();
+        final List<Long> inputNodeIds = firstNodeIds != null ? firstNodeIds : allNodeIds;
+        Similarity metric = metrics.resolve(request.getMetric());
+        FeatureSource source = isDefaultQuery(query, depth)
+                ? featureSources.resolve(request.getFeatures() != null ? request.getFeatures() : metric.getDefaultFeatureSource())
+                : null;
+        Map<Long, SparseVector> features = createFeatureVectors(allNodeIds, query, depth, source);
+        Map<Long, SparseVector> vectors = metric.prepare(features);
+        final InvertedIndex index;
+        final LshIndex lshIndex;
+        if (request.isApproximate()) {
+            index = null;
+            lshIndex = LshIndex.build(vectors, request.getBands(), request.getRows());
+            LOG.warn("Feature vectors and LSH index (" + request.getBands() + " bands of " + request.getRows() + " rows) built for "
+                    + lshIndex.size() + " documents in " + (System.currentTimeMillis() - startTime));
+        } else {
+            index = InvertedIndex.build(vectors);
+            lshIndex = null;
+            LOG.warn("Feature vectors and inverted index built for " + index.size() + " documents in " + (System.currentTimeMillis() - startTime));
         }
-        int totalNodeSize = firstNodeIds.size();
-        firstNodeIds.parallelStream().forEach((firstNode) -> {
-            int nodeProcessed = nodeAnalyzed.incrementAndGet();
-            if (nodeProcessed % 500 == 0) {
-                LOG.warn("Node Processed: " + nodeProcessed + " over " + totalNodeSize);
+        int totalNodeSize = inputNodeIds.size();
+        int partitions = Math.min(totalNodeSize, Runtime.getRuntime().availableProcessors() * 4);
+        IntStream.range(0, partitions).parallel().forEach((partition) -> {
+            InvertedIndex.Accumulator accumulator = index != null ? index.newAccumulator() : null;
+            LshIndex.Candidates candidates = lshIndex != null ? lshIndex.newCandidates() : null;
+            TopKCollector kNN = new TopKCollector(request.getK(), request.getMinSimilarity());
+            for (int i = partition; i < totalNodeSize; i += partitions) {
+                int nodeProcessed = nodeAnalyzed.incrementAndGet();
+                if (nodeProcessed % 500 == 0) {
+                    LOG.warn("Node Processed: " + nodeProcessed + " over " + totalNodeSize);
+                }
+                long firstNode = inputNodeIds.get(i);
+                SparseVector vector = vectors.get(firstNode);
+                if (vector == null) {
+                    vector = metric.prepare(Collections.singletonMap(firstNode, createFeatureVector(firstNode, query, depth, source))).get(firstNode);
+                }
+                if (index != null) {
+                    computeFeatureSimilarityForNode(firstNode, vector, index, accumulator, kNN, metric, similarityType, countProcessed, countStored);
+                } else {
+                    computeApproximateSimilarityForNode(firstNode, vector, lshIndex, candidates, kNN, metric, similarityType, countProcessed, countStored);
+                }
             }
-            computeFeatureSimilarityForNode(firstNode, query, similarityType, countProcessed, countStored, depth);
         });
         tfCache.invalidateAll();
+        queueProcessor.flush();
+        if (source != null) {
+            storeFeatureVectors(source, features);
+        }
         long totalTime = System.currentTimeMillis() - startTime;
         LOG.warn("Total node processed: " + nodeAnalyzed.get() + " over " + totalNodeSize + " in " + totalTime);
         LOG.warn("Total relationships computed: " + countProcessed.get() + " stored: " + countStored.get());
         return countProcessed.get();
     }
 
-    private void computeFeatureSimilarityForNode(long firstNodeId, String query, String similarityType, AtomicInteger countProcessed, AtomicInteger countStored, Integer depth) {
-        FixedSizeOrderedList<SimilarityItem> kNN = new FixedSizeOrderedList<>(KNN_SIZE);
-        try (Transaction tx0 = database.beginTx()) {
-            ResourceIterator<Node> otherProperties = database.findNodes(Labels.AnnotatedText);
-            List<Long> secondNodeIds = new ArrayList<>();
-            otherProperties.stream().forEach((node) -> {
-                secondNodeIds.add(node.getId());
-            });
-            secondNodeIds.stream()
-                    .forEach((secondNode) -> {
-                        if (secondNode != firstNodeId) {
-                            //if (secondNode > firstNodeId) { // this way, only one relationship between the same AnnotatedTexts will be stored (lower_id -> higher_id)
-                            float similarity;
-                            if (depth != null && depth > 0) {
-                                similarity = getFeatureCosine(firstNodeId, secondNode, depth);
-                            } else {
-                                similarity = getFeatureCosine(firstNodeId, secondNode, query);
-                            }
-
-                            if (similarity > 0) {
-                                kNN.add(new SimilarityItem(firstNodeId, secondNode, similarity, similarityType));
-                                countStored.incrementAndGet();
-                            }
-                            int processed = countProcessed.incrementAndGet();
-                            if (processed % 10000 == 0) {
-                                LOG.warn("Relationships computed: " + processed);
-                            }
-                        }
-                    });
-            tx0.success();
-        }
-        queueProcessor.offer(new SimilarityItemProcessEntry(firstNodeId, kNN));
+    public int updateFeatureSimilarityForNodes(List<Long> nodeIds) {
+        return updateFeatureSimilarityForNodes(nodeIds, new SimilarityRequest());
+    }
+
+    public int updateFeatureSimilarityForNodes(List<Long> nodeIds, SimilarityRequest request) {
+        return updateFeatureSimilarityForNodes(nodeIds, DEFAULT_VECTOR_QUERY, Relationships.SIMILARITY_COSINE.name(), 0, request);
+    }
+
+    public int updateFeatureSimilarityForNodes(List<Long> nodeIds, Integer depth, SimilarityRequest request) {
+        return updateFeatureSimilarityForNodes(nodeIds, DEFAULT_VECTOR_QUERY_WITH_CONCEPT, Relationships.SIMILARITY_COSINE_CN5.name(), depth, request);
+    }
+
+    /**
+     * Incrementally maintains the kNN lists after the given (new or
+     * re-annotated) documents were stored: their own kNN lists are rebuilt
+     * from the documents sharing at least one tag with them, and they are
+     * inserted in the kNN list of each of those documents when they beat its
+     * current k-th similarity. The relationships pointing to a re-annotated
+     * document are removed first, so documents that are no longer candidates
+     * don't keep a stale similarity to it (their kNN list is one entry short
+     * until the next full computation). Only the relationships of the affected
+     * documents are rewritten, and the feature vectors of the existing
+     * documents are not recomputed, so the cost is proportional to the new
+     * documents and their neighbourhoods rather than to the corpus.
+     * <p>
+     * The relationships are written in the caller's transaction (or in a new
+     * one), not through the {@link SimilarityQueueProcessor}. This locks
+     * every candidate whose kNN list is changed, so the automatic update of
+     * {@link SimilarityProcessor} runs after the annotation transaction
+     * rather than in it.
+     */
+    public int updateFeatureSimilarityForNodes(List<Long> nodeIds, String query, String similarityType, int depth, SimilarityRequest request) {
+        long startTime = System.currentTimeMillis();
+        RelationshipType relationshipType = RelationshipType.withName(similarityType);
+        TopKCollector kNN = new TopKCollector(request.getK(), request.getMinSimilarity());
+        int updated = 0;
+        for (long nodeId : nodeIds) {
+            updated += updateFeatureSimilarityForNode(nodeId, query, relationshipType, depth, kNN);
+        }
+        LOG.info("Similarities of " + nodeIds.size() + " nodes updated, " + updated + " relationships written in " + (System.currentTimeMillis() - startTime));
+        return updated;
+    }
+
+    private int updateFeatureSimilarityForNode(long nodeId, String query, RelationshipType relationshipType, int depth, TopKCollector kNN) {
+        try (Transaction tx = database.beginTx()) {
+            Node node = database.getNodeById(nodeId);
+            SparseVector vector = SparseVector.fromMap(depth > 0 ? createFeatureMapWithCN5New(nodeId) : createFeatureMap(nodeId, query));
+            if (isDefaultQuery(query, depth)) {
+                vectorStore.store(node, vector, getCorpusSize());
+            }
+            tfCache.put(nodeId, vector);
+            node.getRelationships(Direction.BOTH, relationshipType).forEach(Relationship::delete);
+            kNN.reset();
+            int updated = 0;
+            float norm = vector.norm();
+            if (norm > 0) {
+                for (long candidate : getCandidateDocumentIds(nodeId)) {
+                    SparseVector other = depth > 0 ? getTFMap(candidate, depth) : getTFMap(candidate, query);
+                    float b = norm * other.norm();
+                    float similarity = b > 0 ? vector.dot(other) / b : 0;
+                    if (!(similarity > kNN.getMinScore())) {
+                        continue;
+                    }
+                    kNN.offer(candidate, similarity);
+                    if (insertIntoKNN(database.getNodeById(candidate), node, similarity, relationshipType, kNN.getK())) {
+                        updated++;
+                    }
+                }
+            }
+            kNN.sort();
+            for (int i = 0; i < kNN.size(); i++) {
+                Relationship relationship = node.createRelationshipTo(database.getNodeById(kNN.id(i)), relationshipType);
+                relationship.setProperty(Properties.SIMILARITY_VALUE, kNN.score(i));
+                updated++;
+            }
+            tx.success();
+            return updated;
+        }
+    }
+
+    private List<Long> getCandidateDocumentIds(long nodeId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", nodeId);
+        List<Long> candidates = new ArrayList<>();
+        Result res = database.execute(CANDIDATE_DOCUMENTS_QUERY, params);
+        while (res.hasNext()) {
+            candidates.add((Long) res.next().get("id"));
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds the new neighbour to the kNN list of the node, replacing its
+     * weakest neighbour when the list is full.
+     *
+     * @return true if the relationship has been created
+     */
+    private boolean insertIntoKNN(Node node, Node neighbour, float similarity, RelationshipType relationshipType, int k) {
+        Relationship weakest = null;
+        float weakestSimilarity = Float.MAX_VALUE;
+        int size = 0;
+        for (Relationship relationship : node.getRelationships(Direction.OUTGOING, relationshipType)) {
+            if (relationship.getEndNodeId() == neighbour.getId()) {
+                relationship.delete();
+                continue;
+            }
+            size++;
+            float current = getFloatValue(relationship.getProperty(Properties.SIMILARITY_VALUE, null));
+            if (current < weakestSimilarity) {
+                weakestSimilarity = current;
+                weakest = relationship;
+            }
+        }
+        if (size >= k) {
+            if (similarity <= weakestSimilarity) {
+                return false;
+            }
+            weakest.delete();
+        }
+        Relationship relationship = node.createRelationshipTo(neighbour, relationshipType);
+        relationship.setProperty(Properties.SIMILARITY_VALUE, similarity);
+        return true;
+    }
+
+    private List<Long> getAnnotatedTextIds() {
+        List<Long> nodeIds = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            ResourceIterator<Node> nodes = database.findNodes(Labels.AnnotatedText);
+            while (nodes.hasNext()) {
+                nodeIds.add(nodes.next().getId());
+            }
+            tx.success();
+        }
+        return nodeIds;
+    }
+
+    private long getCorpusSize() {
+        return corpusStatistics.getDocumentCount();
+    }
+
+    /**
+     * Feature sources and persisted vectors only apply to the default query,
+     * custom queries and ConceptNet5 vectors are computed on every run.
+     */
+    private boolean isDefaultQuery(String query, int depth) {
+        return depth == 0 && DEFAULT_VECTOR_QUERY.equals(query);
+    }
+
+    private Map<Long, SparseVector> createFeatureVectors(List<Long> nodeIds, String query, int depth, FeatureSource source) {
+        Map<Long, SparseVector> vectors = new ConcurrentHashMap<>();
+        nodeIds.parallelStream().forEach((nodeId) -> {
+            vectors.put(nodeId, createFeatureVector(nodeId, query, depth, source));
+        });
+        LOG.info("Feature vectors of " + vectors.size() + " documents built from " + (source != null ? source.getName() : "query"));
+        return vectors;
+    }
+
+    /**
+     * Lets the feature source store the vectors it computed, once the
+     * relationships have been written. Like the relationships, the vectors
+     * are written from a separate thread in transactions of
+     * <code>similarityWriteBatchSize</code> nodes, each committed on its own.
+     * A batch that does not commit within <code>similarityWriteTimeout</code>
+     * milliseconds (when the caller locks its nodes, for instance) stops the
+     * write; the vectors not stored are computed again on the next run.
+     */
+    private void storeFeatureVectors(FeatureSource source, Map<Long, SparseVector> features) {
+        int batchSize = queueProcessor.getBatchSize();
+        long timeout = queueProcessor.getWriteTimeout();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Map<Long, SparseVector> batch = new HashMap<>();
+            for (Map.Entry<Long, SparseVector> entry : features.entrySet()) {
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() == batchSize) {
+                    storeFeatureVectors(writer, source, batch, timeout);
+                    batch = new HashMap<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                storeFeatureVectors(writer, source, batch, timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while storing the feature vectors");
+        } catch (ExecutionException e) {
+            LOG.warn("Error while storing the feature vectors, they will be computed again on the next run", e.getCause());
+        } catch (TimeoutException e) {
+            LOG.warn("Feature vectors not stored within " + timeout + "ms, the calling transaction may hold locks on the annotated texts");
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private void storeFeatureVectors(ExecutorService writer, FeatureSource source, Map<Long, SparseVector> batch, long timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        writer.submit(() -> {
+            try (Transaction tx = database.beginTx(timeout, TimeUnit.MILLISECONDS)) {
+                source.store(database, batch);
+                tx.success();
+            }
+        }).get(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the vector of the node from the feature source if there is one,
+     * otherwise computes it with the query.
+     */
+    private SparseVector createFeatureVector(long nodeId, String query, int depth, FeatureSource source) {
+        try (Transaction tx = database.beginTx()) {
+            SparseVector vector;
+            if (source != null) {
+                vector = source.getVector(database.getNodeById(nodeId));
+            } else {
+                vector = SparseVector.fromMap(depth > 0 ? createFeatureMapWithCN5New(nodeId) : createFeatureMap(nodeId, query));
+            }
+            tx.success();
+            return vector;
+        }
+    }
+
+    private void computeFeatureSimilarityForNode(long firstNodeId, SparseVector vector, InvertedIndex index, InvertedIndex.Accumulator accumulator,
+                                                 TopKCollector kNN, Similarity metric, String similarityType,
+                                                 AtomicInteger countProcessed, AtomicInteger countStored) {
+        kNN.reset();
+        float norm = vector.norm();
+        if (norm > 0) {
+            index.accumulate(vector, accumulator);
+            for (int i = 0; i < accumulator.candidateCount(); i++) {
+                int document = accumulator.candidate(i);
+                long secondNode = index.documentId(document);
+                if (secondNode == firstNodeId) {
+                    continue;
+                }
+                float similarity = metric.getSimilarity(vector, index.vector(document), accumulator.score(document));
+                addNeighbour(kNN, secondNode, similarity, countProcessed);
+            }
+        }
+        offerNeighbours(firstNodeId, kNN, similarityType, countStored);
+    }
+
+    private void computeApproximateSimilarityForNode(long firstNodeId, SparseVector vector, LshIndex index, LshIndex.Candidates candidates,
+                                                     TopKCollector kNN, Similarity metric, String similarityType,
+                                                     AtomicInteger countProcessed, AtomicInteger countStored) {
+        kNN.reset();
+        float norm = vector.norm();
+        if (norm > 0) {
+            index.candidates(vector, candidates);
+            for (int i = 0; i < candidates.candidateCount(); i++) {
+                int document = candidates.candidate(i);
+                long secondNode = index.documentId(document);
+                if (secondNode == firstNodeId) {
+                    continue;
+                }
+                float similarity = metric.getSimilarity(vector, index.vector(document));
+                addNeighbour(kNN, secondNode, similarity, countProcessed);
+            }
+        }
+        offerNeighbours(firstNodeId, kNN, similarityType, countStored);
+    }
+
+    /**
+     * Hands the collected kNN, best first, over to the writer: only the k
+     * kept neighbours are turned into objects.
+     */
+    private void offerNeighbours(long firstNodeId, TopKCollector kNN, String similarityType, AtomicInteger countStored) {
+        kNN.sort();
+        ArrayList<SimilarityItem> items = new ArrayList<>(kNN.size());
+        for (int i = 0; i < kNN.size(); i++) {
+            items.add(new SimilarityItem(firstNodeId, kNN.id(i), kNN.score(i), similarityType));
+        }
+        countStored.addAndGet(items.size());
+        queueProcessor.offer(new SimilarityItemProcessEntry(firstNodeId, items));
+    }
+
+    private void addNeighbour(TopKCollector kNN, long secondNode, float similarity, AtomicInteger countProcessed) {
+        kNN.offer(secondNode, similarity);
+        int processed = countProcessed.incrementAndGet();
+        if (processed % 10000 == 0) {
+            LOG.warn("Relationships computed: " + processed);
+        }
     }
 
     protected float getFloatValue(Object value) {
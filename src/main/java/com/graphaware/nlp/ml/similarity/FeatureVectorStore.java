@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import com.graphaware.nlp.persistence.constants.Properties;
+import org.neo4j.graphdb.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the TF-IDF vector of an AnnotatedText on the node itself, as two
+ * packed arrays (tag ids and weights), stamped with the size of the corpus
+ * its IDF values were computed on. A stored vector is used as long as the
+ * corpus size did not drift by more than the <code>tfidfDriftTolerance</code>
+ * setting (a fraction, 0.05 by default) from its stamp; the vector is
+ * removed when the text is re-annotated.
+ */
+public class FeatureVectorStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FeatureVectorStore.class);
+
+    public static final double DEFAULT_DRIFT_TOLERANCE = 0.05d;
+
+    private final DynamicConfiguration configuration;
+
+    public FeatureVectorStore(DynamicConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return the stored vector of the node, or null if there is none or if
+     * it is stale for the given corpus size
+     */
+    public SparseVector load(Node node, long corpusSize) {
+        Object indices = node.getProperty(configuration.getPropertyKeyFor(Properties.TFIDF_INDICES), null);
+        Object values = node.getProperty(configuration.getPropertyKeyFor(Properties.TFIDF_VALUES), null);
+        Object stamp = node.getProperty(configuration.getPropertyKeyFor(Properties.TFIDF_CORPUS_SIZE), null);
+        if (!(indices instanceof long[]) || !(values instanceof float[]) || !(stamp instanceof Number)) {
+            return null;
+        }
+        if (isStale(((Number) stamp).longValue(), corpusSize, getDriftTolerance())) {
+            return null;
+        }
+        try {
+            return SparseVector.of((long[]) indices, (float[]) values);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid stored vector on node " + node.getId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the node has no stored vector or if it is stale for the
+     * given corpus size, without reading the vector itself
+     */
+    public boolean needsUpdate(Node node, long corpusSize) {
+        Object stamp = node.getProperty(configuration.getPropertyKeyFor(Properties.TFIDF_CORPUS_SIZE), null);
+        return !(stamp instanceof Number)
+                || !node.hasProperty(configuration.getPropertyKeyFor(Properties.TFIDF_INDICES))
+                || !node.hasProperty(configuration.getPropertyKeyFor(Properties.TFIDF_VALUES))
+                || isStale(((Number) stamp).longValue(), corpusSize, getDriftTolerance());
+    }
+
+    public void store(Node node, SparseVector vector, long corpusSize) {
+        node.setProperty(configuration.getPropertyKeyFor(Properties.TFIDF_INDICES), vector.indices());
+        node.setProperty(configuration.getPropertyKeyFor(Properties.TFIDF_VALUES), vector.values());
+        node.setProperty(configuration.getPropertyKeyFor(Properties.TFIDF_CORPUS_SIZE), corpusSize);
+    }
+
+    protected static boolean isStale(long stamp, long corpusSize, double tolerance) {
+        if (stamp <= 0) {
+            return true;
+        }
+        return Math.abs(corpusSize - stamp) > tolerance * stamp;
+    }
+
+    private double getDriftTolerance() {
+        if (!configuration.hasSettingValue(SettingsConstants.TFIDF_DRIFT_TOLERANCE)) {
+            return DEFAULT_DRIFT_TOLERANCE;
+        }
+        try {
+            return Double.valueOf(String.valueOf(configuration.getSettingValueFor(SettingsConstants.TFIDF_DRIFT_TOLERANCE)));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for setting " + SettingsConstants.TFIDF_DRIFT_TOLERANCE + ", using " + DEFAULT_DRIFT_TOLERANCE);
+            return DEFAULT_DRIFT_TOLERANCE;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory inverted index over the feature vectors of a corpus: for every
+ * tag, the posting list of the documents containing it, with their weights.
+ * Dot products between a vector and all the documents sharing at least one
+ * tag with it are accumulated along the postings of its tags, so the
+ * documents without any common tag are never visited.
+ */
+public class InvertedIndex {
+
+    private final long[] documentIds;
+    private final SparseVector[] vectors;
+    private final float[] norms;
+    private final Map<Long, Integer> postingLists;
+    private final int[] postingOffsets;
+    private final int[] postingDocuments;
+    private final float[] postingWeights;
+
+    private InvertedIndex(long[] documentIds, SparseVector[] vectors, float[] norms, Map<Long, Integer> postingLists,
+                          int[] postingOffsets, int[] postingDocuments, float[] postingWeights) {
+        this.documentIds = documentIds;
+        this.vectors = vectors;
+        this.norms = norms;
+        this.postingLists = postingLists;
+        this.postingOffsets = postingOffsets;
+        this.postingDocuments = postingDocuments;
+        this.postingWeights = postingWeights;
+    }
+
+    public static InvertedIndex build(Map<Long, SparseVector> vectors) {
+        int n = vectors.size();
+        long[] documentIds = new long[n];
+        SparseVector[] documentVectors = new SparseVector[n];
+        float[] norms = new float[n];
+        Map<Long, Integer> postingLists = new HashMap<>();
+        int[] postingSizes = new int[16];
+        int postings = 0;
+        int document = 0;
+        for (Map.Entry<Long, SparseVector> vector : vectors.entrySet()) {
+            documentIds[document] = vector.getKey();
+            SparseVector features = vector.getValue();
+            documentVectors[document] = features;
+            for (int i = 0; i < features.size(); i++) {
+                Integer list = postingLists.get(features.index(i));
+                if (list == null) {
+                    list = postingLists.size();
+                    postingLists.put(features.index(i), list);
+                    if (list == postingSizes.length) {
+                        postingSizes = Arrays.copyOf(postingSizes, list * 2);
+                    }
+                }
+                postingSizes[list]++;
+                postings++;
+            }
+            norms[document++] = features.norm();
+        }
+
+        int[] postingOffsets = new int[postingLists.size() + 1];
+        for (int list = 0; list < postingLists.size(); list++) {
+            postingOffsets[list + 1] = postingOffsets[list] + postingSizes[list];
+        }
+        int[] position = Arrays.copyOf(postingOffsets, postingLists.size());
+        int[] postingDocuments = new int[postings];
+        float[] postingWeights = new float[postings];
+        document = 0;
+        for (SparseVector features : vectors.values()) {
+            for (int i = 0; i < features.size(); i++) {
+                int slot = position[postingLists.get(features.index(i))]++;
+                postingDocuments[slot] = document;
+                postingWeights[slot] = features.value(i);
+            }
+            document++;
+        }
+        return new InvertedIndex(documentIds, documentVectors, norms, postingLists, postingOffsets, postingDocuments, postingWeights);
+    }
+
+    public int size() {
+        return documentIds.length;
+    }
+
+    public long documentId(int document) {
+        return documentIds[document];
+    }
+
+    public float norm(int document) {
+        return norms[document];
+    }
+
+    public SparseVector vector(int document) {
+        return vectors[document];
+    }
+
+    public Accumulator newAccumulator() {
+        return new Accumulator(documentIds.length);
+    }
+
+    /**
+     * Accumulates the dot products of the given vector with every document
+     * sharing at least one tag with it into the (cleared) accumulator.
+     */
+    public void accumulate(SparseVector vector, Accumulator accumulator) {
+        accumulator.clear();
+        for (int i = 0; i < vector.size(); i++) {
+            Integer list = postingLists.get(vector.index(i));
+            if (list == null) {
+                continue;
+            }
+            float weight = vector.value(i);
+            for (int posting = postingOffsets[list], end = postingOffsets[list + 1]; posting < end; posting++) {
+                accumulator.add(postingDocuments[posting], weight * postingWeights[posting]);
+            }
+        }
+    }
+
+    /**
+     * Per-thread scratch space holding the scores of the candidate documents
+     * of one vector; reused across vectors.
+     */
+    public static class Accumulator {
+
+        private final float[] scores;
+        private final boolean[] hit;
+        private final int[] candidates;
+        private int count;
+
+        private Accumulator(int size) {
+            this.scores = new float[size];
+            this.hit = new boolean[size];
+            this.candidates = new int[size];
+        }
+
+        private void add(int document, float score) {
+            if (!hit[document]) {
+                hit[document] = true;
+                candidates[count++] = document;
+            }
+            scores[document] += score;
+        }
+
+        private void clear() {
+            for (int i = 0; i < count; i++) {
+                scores[candidates[i]] = 0.0f;
+                hit[candidates[i]] = false;
+            }
+            count = 0;
+        }
+
+        public int candidateCount() {
+            return count;
+        }
+
+        public int candidate(int i) {
+            return candidates[i];
+        }
+
+        public float score(int document) {
+            return scores[document];
+        }
+    }
+}
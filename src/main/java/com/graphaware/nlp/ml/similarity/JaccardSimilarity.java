@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import com.graphaware.nlp.ml.similarity.feature.TagSetFeatureSource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Jaccard similarity of the sets of non zero features (tags) of two
+ * vectors. The prepared vectors are binary, so their dot product is the
+ * size of the intersection and the inverted index computes it directly;
+ * without it, the sorted index arrays are merged.
+ */
+public class JaccardSimilarity implements Similarity {
+
+    public static final String NAME = "jaccard";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getDefaultFeatureSource() {
+        return TagSetFeatureSource.NAME;
+    }
+
+    @Override
+    public float getSimilarity(SparseVector x, SparseVector y) {
+        int intersection = 0;
+        int i = 0;
+        int j = 0;
+        while (i < x.size() && j < y.size()) {
+            long a = x.index(i);
+            long b = y.index(j);
+            if (a == b) {
+                intersection++;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return jaccard(x.size(), y.size(), intersection);
+    }
+
+    @Override
+    public float getSimilarity(SparseVector x, SparseVector y, float dot) {
+        return jaccard(x.size(), y.size(), Math.round(dot));
+    }
+
+    @Override
+    public Map<Long, SparseVector> prepare(Map<Long, SparseVector> vectors) {
+        Map<Long, SparseVector> binary = new HashMap<>(vectors.size() * 2);
+        vectors.forEach((id, vector) -> binary.put(id, binarize(vector)));
+        return binary;
+    }
+
+    private static SparseVector binarize(SparseVector vector) {
+        float[] ones = new float[vector.size()];
+        Arrays.fill(ones, 1.0f);
+        return SparseVector.of(vector.indices(), ones);
+    }
+
+    private static float jaccard(int xSize, int ySize, int intersection) {
+        int union = xSize + ySize - intersection;
+        return union > 0 ? (float) intersection / union : 0;
+    }
+}
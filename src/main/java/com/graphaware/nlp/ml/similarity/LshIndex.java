@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Locality sensitive hashing index for approximate cosine kNN, based on
+ * signed random projections (SimHash). Every vector gets a signature of
+ * <code>bands * rows</code> bits, the sign of its projection on as many
+ * random hyperplanes; two vectors agree on a bit with probability
+ * <code>1 - angle / PI</code>. The signature is cut into bands of
+ * <code>rows</code> bits, and vectors sharing a band are candidates. More
+ * bands raise the recall, more rows per band reduce the candidates.
+ * <p>
+ * The hyperplane components are +1/-1 values derived from a hash of the tag
+ * id, so they are never materialized. Each band is stored as a sorted array
+ * of <code>(bucket hash, document)</code> pairs.
+ */
+public class LshIndex {
+
+    public static final int DEFAULT_BANDS = 16;
+    public static final int DEFAULT_ROWS = 8;
+    public static final int MAX_ROWS = 64;
+
+    private static final long DEFAULT_SEED = 0x2545F4914F6CDD1DL;
+
+    private final int bands;
+    private final int rows;
+    private final long seed;
+    private final long[] documentIds;
+    private final SparseVector[] vectors;
+    private final long[][] buckets;
+
+    private LshIndex(int bands, int rows, long seed, long[] documentIds, SparseVector[] vectors, long[][] buckets) {
+        this.bands = bands;
+        this.rows = rows;
+        this.seed = seed;
+        this.documentIds = documentIds;
+        this.vectors = vectors;
+        this.buckets = buckets;
+    }
+
+    public static LshIndex build(Map<Long, SparseVector> vectors, int bands, int rows) {
+        return build(vectors, bands, rows, DEFAULT_SEED);
+    }
+
+    /**
+     * Indexes the non-empty vectors of the given map; empty vectors have no
+     * direction and are never candidates.
+     */
+    public static LshIndex build(Map<Long, SparseVector> vectors, int bands, int rows, long seed) {
+        if (bands < 1) {
+            throw new IllegalArgumentException("The number of bands should be greater than 0");
+        }
+        if (rows < 1 || rows > MAX_ROWS) {
+            throw new IllegalArgumentException("The number of rows per band should be between 1 and " + MAX_ROWS);
+        }
+        int n = 0;
+        for (SparseVector vector : vectors.values()) {
+            if (vector.norm() > 0) {
+                n++;
+            }
+        }
+        long[] documentIds = new long[n];
+        SparseVector[] indexed = new SparseVector[n];
+        long[][] buckets = new long[bands][n];
+        float[] projections = new float[rows];
+        int document = 0;
+        for (Map.Entry<Long, SparseVector> vector : vectors.entrySet()) {
+            if (vector.getValue().norm() == 0) {
+                continue;
+            }
+            documentIds[document] = vector.getKey();
+            indexed[document] = vector.getValue();
+            for (int band = 0; band < bands; band++) {
+                int hash = bucketHash(bandSignature(vector.getValue(), band, rows, seed, projections));
+                buckets[band][document] = ((long) hash << 32) | document;
+            }
+            document++;
+        }
+        for (long[] band : buckets) {
+            Arrays.sort(band);
+        }
+        return new LshIndex(bands, rows, seed, documentIds, indexed, buckets);
+    }
+
+    public int size() {
+        return documentIds.length;
+    }
+
+    public long documentId(int document) {
+        return documentIds[document];
+    }
+
+    public SparseVector vector(int document) {
+        return vectors[document];
+    }
+
+    public Candidates newCandidates() {
+        return new Candidates(documentIds.length, rows);
+    }
+
+    /**
+     * Collects into the (cleared) candidates every indexed document sharing
+     * at least one band with the given vector.
+     */
+    public void candidates(SparseVector vector, Candidates candidates) {
+        candidates.clear();
+        if (vector.norm() == 0) {
+            return;
+        }
+        for (int band = 0; band < bands; band++) {
+            int hash = bucketHash(bandSignature(vector, band, rows, seed, candidates.projections));
+            long[] entries = buckets[band];
+            int start = Arrays.binarySearch(entries, (long) hash << 32);
+            if (start < 0) {
+                start = -start - 1;
+            }
+            for (int i = start; i < entries.length && (int) (entries[i] >>> 32) == hash; i++) {
+                candidates.add((int) entries[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the <code>rows</code> signature bits of the vector for the
+     * given band
+     */
+    protected static long bandSignature(SparseVector vector, int band, int rows, long seed, float[] projections) {
+        Arrays.fill(projections, 0, rows, 0.0f);
+        for (int i = 0; i < vector.size(); i++) {
+            long hyperplanes = mix(vector.index(i) * 0x9E3779B97F4A7C15L + seed + band);
+            float value = vector.value(i);
+            for (int row = 0; row < rows; row++) {
+                projections[row] += ((hyperplanes >>> row) & 1L) != 0 ? value : -value;
+            }
+        }
+        long signature = 0L;
+        for (int row = 0; row < rows; row++) {
+            if (projections[row] > 0) {
+                signature |= 1L << row;
+            }
+        }
+        return signature;
+    }
+
+    private static int bucketHash(long signature) {
+        long hash = mix(signature);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Per-thread scratch space holding the candidate documents of one
+     * vector; reused across vectors.
+     */
+    public static class Candidates {
+
+        private final boolean[] hit;
+        private final int[] candidates;
+        private final float[] projections;
+        private int count;
+
+        private Candidates(int size, int rows) {
+            this.hit = new boolean[size];
+            this.candidates = new int[size];
+            this.projections = new float[rows];
+        }
+
+        private void add(int document) {
+            if (!hit[document]) {
+                hit[document] = true;
+                candidates[count++] = document;
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < count; i++) {
+                hit[candidates[i]] = false;
+            }
+            count = 0;
+        }
+
+        public int candidateCount() {
+            return count;
+        }
+
+        public int candidate(int i) {
+            return candidates[i];
+        }
+    }
+}
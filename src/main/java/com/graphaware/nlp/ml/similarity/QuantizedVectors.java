@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * Encoding, decoding and cosine kernels for quantized vectors (see
+ * {@link VectorEncoding}). The cosine similarity does not depend on the
+ * scale of the vectors, so two <code>int8</code> vectors are compared with
+ * integer arithmetic on the raw values, and <code>float16</code> values are
+ * decoded on the fly through a lookup table, without materializing the
+ * decoded vectors.
+ */
+public final class QuantizedVectors {
+
+    public static final String SCALE_PROPERTY_SUFFIX = "Scale";
+
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+    static {
+        for (int i = 0; i < HALF_TO_FLOAT.length; i++) {
+            HALF_TO_FLOAT[i] = halfToFloat(i);
+        }
+    }
+
+    private QuantizedVectors() {
+    }
+
+    public static String scaleProperty(String property) {
+        return property + SCALE_PROPERTY_SUFFIX;
+    }
+
+    /**
+     * @return the vector in the property value type of the given encoding;
+     * for <code>int8</code> the values are divided by {@link #scale(double[])}
+     */
+    public static Object encode(double[] vector, VectorEncoding encoding) {
+        switch (encoding) {
+            case FLOAT32:
+                float[] floats = new float[vector.length];
+                for (int i = 0; i < vector.length; i++) {
+                    floats[i] = (float) vector[i];
+                }
+                return floats;
+            case FLOAT16:
+                short[] halves = new short[vector.length];
+                for (int i = 0; i < vector.length; i++) {
+                    halves[i] = toHalf((float) vector[i]);
+                }
+                return halves;
+            case INT8:
+                return toInt8(vector, scale(vector));
+            default:
+                return vector;
+        }
+    }
+
+    /**
+     * @return the <code>int8</code> scale of the vector, its maximum absolute
+     * value divided by 127
+     */
+    public static double scale(double[] vector) {
+        double max = 0.0d;
+        for (double value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max / 127.0d;
+    }
+
+    public static byte[] toInt8(double[] vector, double scale) {
+        byte[] result = new byte[vector.length];
+        if (scale > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                result[i] = (byte) Math.max(-127, Math.min(127, Math.round(vector[i] / scale)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a property value: <code>short[]</code> as half precision
+     * values, <code>byte[]</code> as <code>int8</code> values multiplied by
+     * <code>scale</code>, anything else through {@link DenseVectors#toArray(Object)}.
+     */
+    public static double[] decode(Object value, double scale) {
+        if (value instanceof short[]) {
+            short[] halves = (short[]) value;
+            double[] result = new double[halves.length];
+            for (int i = 0; i < halves.length; i++) {
+                result[i] = fromHalf(halves[i]);
+            }
+            return result;
+        }
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            double[] result = new double[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                result[i] = bytes[i] * scale;
+            }
+            return result;
+        }
+        return DenseVectors.toArray(value);
+    }
+
+    /**
+     * @return the decoded vector property of the node, null if the node
+     * has no such property
+     */
+    public static double[] read(Node node, String property) {
+        Object value = node.getProperty(property, null);
+        if (value instanceof byte[]) {
+            return decode(value, ((Number) node.getProperty(scaleProperty(property), 1.0d)).doubleValue());
+        }
+        return decode(value, 1.0d);
+    }
+
+    /**
+     * Stores the vector in the property with the given encoding, along with
+     * its scale for <code>int8</code>.
+     */
+    public static void write(Node node, String property, double[] vector, VectorEncoding encoding) {
+        node.setProperty(property, encode(vector, encoding));
+        if (encoding == VectorEncoding.INT8) {
+            node.setProperty(scaleProperty(property), scale(vector));
+        } else {
+            node.removeProperty(scaleProperty(property));
+        }
+    }
+
+    /**
+     * Cosine similarity of two vector property values of any encoding,
+     * computed on the quantized values when both have the same one.
+     *
+     * @return NaN if one of the values is not a vector
+     */
+    public static double cosine(Object x, Object y) {
+        if (x instanceof byte[] && y instanceof byte[]) {
+            return cosine((byte[]) x, (byte[]) y);
+        }
+        if (x instanceof short[] && y instanceof short[]) {
+            return cosine((short[]) x, (short[]) y);
+        }
+        double[] xs = decode(x, 1.0d);
+        return xs != null ? cosine(xs, DenseVectors.norm(xs), y) : Double.NaN;
+    }
+
+    /**
+     * Cosine similarity of a query vector, with its precomputed norm, with a
+     * vector property value of any encoding.
+     *
+     * @return NaN if the value is not a vector
+     */
+    public static double cosine(double[] x, double xNorm, Object y) {
+        if (y instanceof byte[]) {
+            return cosine(x, xNorm, (byte[]) y);
+        }
+        if (y instanceof short[]) {
+            return cosine(x, xNorm, (short[]) y);
+        }
+        double[] ys = DenseVectors.toArray(y);
+        return ys != null ? DenseVectors.cosine(x, xNorm, ys) : Double.NaN;
+    }
+
+    public static double cosine(byte[] x, byte[] y) {
+        int length = DenseVectors.checkDimension(x.length, y.length);
+        long dot = 0, xx = 0, yy = 0;
+        for (int i = 0; i < length; i++) {
+            int a = x[i];
+            int b = y[i];
+            dot += a * b;
+            xx += a * a;
+            yy += b * b;
+        }
+        double norms = Math.sqrt((double) xx) * Math.sqrt((double) yy);
+        return norms > 0 ? dot / norms : 0.0d;
+    }
+
+    public static double cosine(short[] x, short[] y) {
+        int length = DenseVectors.checkDimension(x.length, y.length);
+        double dot = 0.0d, xx = 0.0d, yy = 0.0d;
+        for (int i = 0; i < length; i++) {
+            double a = HALF_TO_FLOAT[x[i] & 0xffff];
+            double b = HALF_TO_FLOAT[y[i] & 0xffff];
+            dot += a * b;
+            xx += a * a;
+            yy += b * b;
+        }
+        double norms = Math.sqrt(xx) * Math.sqrt(yy);
+        return norms > 0 ? dot / norms : 0.0d;
+    }
+
+    public static double cosine(double[] x, double xNorm, byte[] y) {
+        int length = DenseVectors.checkDimension(x.length, y.length);
+        double dot = 0.0d;
+        long yy = 0;
+        for (int i = 0; i < length; i++) {
+            int b = y[i];
+            dot += x[i] * b;
+            yy += b * b;
+        }
+        double norms = xNorm * Math.sqrt((double) yy);
+        return norms > 0 ? dot / norms : 0.0d;
+    }
+
+    public static double cosine(double[] x, double xNorm, short[] y) {
+        int length = DenseVectors.checkDimension(x.length, y.length);
+        double dot = 0.0d, yy = 0.0d;
+        for (int i = 0; i < length; i++) {
+            double b = HALF_TO_FLOAT[y[i] & 0xffff];
+            dot += x[i] * b;
+            yy += b * b;
+        }
+        double norms = xNorm * Math.sqrt(yy);
+        return norms > 0 ? dot / norms : 0.0d;
+    }
+
+    public static float fromHalf(short half) {
+        return HALF_TO_FLOAT[half & 0xffff];
+    }
+
+    /**
+     * Converts to IEEE 754 half precision, rounding to nearest. Values out of
+     * range become infinite, values too small become (signed) zero.
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int magnitude = bits & 0x7fffffff;
+        if (magnitude >= 0x7f800000) {
+            return (short) (sign | 0x7c00 | (magnitude > 0x7f800000 ? 0x200 : 0));
+        }
+        int rounded = magnitude + 0x1000;
+        if (rounded >= 0x47800000) {
+            return (short) (sign | 0x7c00);
+        }
+        if (rounded >= 0x38800000) {
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        }
+        if (magnitude < 0x33000000) {
+            return (short) sign;
+        }
+        int exponent = magnitude >>> 23;
+        return (short) (sign | ((((magnitude & 0x7fffff) | 0x800000) + (0x800000 >>> (exponent - 102))) >>> (126 - exponent)));
+    }
+
+    private static float halfToFloat(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        if (exponent == 0) {
+            float value = mantissa * 0x1.0p-24f;
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 31) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+}
@@ -15,8 +15,44 @@
  */
 package com.graphaware.nlp.ml.similarity;
 
+import com.graphaware.nlp.ml.similarity.feature.PersistedFeatureSource;
+
 import java.util.Map;
 
+/**
+ * A similarity metric between feature vectors. The vectors are produced by a
+ * {@link com.graphaware.nlp.ml.similarity.feature.FeatureSource} and then
+ * re-weighted once for the whole corpus with {@link #prepare(Map)}.
+ */
 public interface Similarity {
-    public float getSimilarity(Map<Long, Float> x, Map<Long, Float> y);
+
+    public String getName();
+
+    public float getSimilarity(SparseVector x, SparseVector y);
+
+    /**
+     * Fast path used with the inverted index, which already computed the dot
+     * product of the two prepared vectors.
+     */
+    public default float getSimilarity(SparseVector x, SparseVector y, float dot) {
+        return getSimilarity(x, y);
+    }
+
+    /**
+     * @return the name of the feature source used when none is requested
+     */
+    public default String getDefaultFeatureSource() {
+        return PersistedFeatureSource.NAME;
+    }
+
+    /**
+     * Corpus level re-weighting of the vectors, applied before indexing.
+     */
+    public default Map<Long, SparseVector> prepare(Map<Long, SparseVector> vectors) {
+        return vectors;
+    }
+
+    public default float getSimilarity(Map<Long, Float> x, Map<Long, Float> y) {
+        return getSimilarity(SparseVector.fromMap(x), SparseVector.fromMap(y));
+    }
 }
@@ -15,16 +15,26 @@
  */
 package com.graphaware.nlp.ml.similarity;
 
+import com.graphaware.nlp.NLPEvents;
 import com.graphaware.nlp.annotation.NLPModuleExtension;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import com.graphaware.nlp.dsl.request.SimilarityRequest;
+import com.graphaware.nlp.event.EventDispatcher;
+import com.graphaware.nlp.event.TextAnnotationEvent;
 import com.graphaware.nlp.extension.AbstractExtension;
 import com.graphaware.nlp.extension.NLPExtension;
+import com.graphaware.nlp.util.TransactionUtils;
 import org.neo4j.graphdb.Node;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @NLPModuleExtension(name = "SimilarityProcessor")
@@ -33,6 +43,11 @@ public class SimilarityProcessor extends AbstractExtension implements NLPExtensi
     private static final Logger LOG = LoggerFactory.getLogger(SimilarityProcessor.class);
 
     private FeatureBasedProcessLogic featureBusinessLogic;
+    private final ExecutorService incrementalUpdater = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "GA-NLP-IncrementalSimilarity");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final static String PARAMETER_NAME_QUERY = "query";
     private final static String PARAMETER_RELATIONSHIP_TYPE = "relationshipType";
 
@@ -41,31 +56,111 @@ public class SimilarityProcessor extends AbstractExtension implements NLPExtensi
 
     @Override
     public void postLoaded() {
-        featureBusinessLogic = new FeatureBasedProcessLogic(getDatabase());
+        featureBusinessLogic = new FeatureBasedProcessLogic(getDatabase(), getConfiguration(), getNLPManager().getCorpusStatistics(),
+                getNLPManager().getSimilarityQueueProcessor());
     }
 
     public int compute(List<Node> input, String query, String relationshipType, Long depth) {
+        return compute(input, query, relationshipType, depth, new SimilarityRequest());
+    }
+
+    public int compute(List<Node> input, String query, String relationshipType, Long depth, SimilarityRequest request) {
         int processed;
-        if (depth != null && depth > 0) {
-            processed = computeAllCn5(input, depth.intValue());
+        if (request.isIncremental()) {
+            processed = update(input, query, relationshipType, depth, request);
+        } else if (depth != null && depth > 0) {
+            processed = computeAllCn5(input, depth.intValue(), request);
         } else {
-            processed = computeAll(input, query, relationshipType);
+            processed = computeAll(input, query, relationshipType, request);
         }
         return processed;
     }
     
     public int computeAll(List<Node> input, String query, String relationshipType) {
+        return computeAll(input, query, relationshipType, new SimilarityRequest());
+    }
+
+    public int computeAll(List<Node> input, String query, String relationshipType, SimilarityRequest request) {
         int processed = 0;
         List<Long> firstNodeIds = getNodesFromInput(input);
         if (query != null && relationshipType != null) {
-            processed = featureBusinessLogic.computeFeatureSimilarityForNodes(firstNodeIds, query, relationshipType, 0);
+            processed = featureBusinessLogic.computeFeatureSimilarityForNodes(firstNodeIds, query, relationshipType, 0, request);
         } else {
-            processed = featureBusinessLogic.computeFeatureSimilarityForNodes(firstNodeIds);
+            processed = featureBusinessLogic.computeFeatureSimilarityForNodes(firstNodeIds, request);
         }
         return processed;
 
     }
 
+    /**
+     * Incremental mode: updates the kNN lists for the given new documents
+     * only.
+     */
+    public int update(List<Node> input, String query, String relationshipType, Long depth, SimilarityRequest request) {
+        if (input == null || input.isEmpty()) {
+            throw new RuntimeException("The incremental mode requires the new AnnotatedText nodes as input");
+        }
+        List<Long> nodeIds = getNodesFromInput(input);
+        if (depth != null && depth > 0) {
+            return featureBusinessLogic.updateFeatureSimilarityForNodes(nodeIds, depth.intValue(), request);
+        } else if (query != null && relationshipType != null) {
+            return featureBusinessLogic.updateFeatureSimilarityForNodes(nodeIds, query, relationshipType, 0, request);
+        }
+        return featureBusinessLogic.updateFeatureSimilarityForNodes(nodeIds, request);
+    }
+
+    /**
+     * When the similarityIncremental setting is true, the cosine kNN lists
+     * are updated for every newly annotated text once its annotation
+     * transaction has committed. The updates run one at a time in a
+     * background thread, each in its own transaction, so they neither lock
+     * the neighbours of the document in the annotation transaction nor fail
+     * the annotation; updates that fail are logged.
+     */
+    @Override
+    public void registerEventListeners(EventDispatcher eventDispatcher) {
+        eventDispatcher.registerListener(NLPEvents.POST_TEXT_ANNOTATION, (event) -> {
+            if (!isIncrementalEnabled()) {
+                return;
+            }
+            long nodeId = ((TextAnnotationEvent) event).getAnnotatedNode().getId();
+            TransactionUtils.registerCloseListener(getDatabase(), (transactionId) -> {
+                if (TransactionUtils.isCommitted(transactionId)) {
+                    incrementalUpdater.submit(() -> updateSimilarities(nodeId));
+                }
+            });
+        });
+    }
+
+    private void updateSimilarities(long nodeId) {
+        try {
+            featureBusinessLogic.updateFeatureSimilarityForNodes(Collections.singletonList(nodeId));
+        } catch (Exception e) {
+            LOG.error("Error while updating the similarities of node " + nodeId, e);
+        }
+    }
+
+    /**
+     * Waits for the incremental updates of the annotated texts committed so
+     * far.
+     */
+    public void awaitIncrementalUpdates() {
+        try {
+            incrementalUpdater.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the incremental similarity updates", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while waiting for the incremental similarity updates", e.getCause());
+        }
+    }
+
+    private boolean isIncrementalEnabled() {
+        return getConfiguration().hasSettingValue(SettingsConstants.SIMILARITY_INCREMENTAL)
+                && Boolean.valueOf(String.valueOf(getConfiguration().getSettingValueFor(SettingsConstants.SIMILARITY_INCREMENTAL)));
+    }
+
     private List<Long> getNodesFromInput(List<Node> input) {
         return input.stream().map(x -> x.getId()).collect(Collectors.toList());
     }
@@ -93,9 +188,13 @@ public class SimilarityProcessor extends AbstractExtension implements NLPExtensi
     }
 
     public int computeAllCn5(List<Node> input, int depth) {
+        return computeAllCn5(input, depth, new SimilarityRequest());
+    }
+
+    public int computeAllCn5(List<Node> input, int depth, SimilarityRequest request) {
         int processed = 0;
         List<Long> firstNodeIds = getNodesFromInput(input);
-        processed = featureBusinessLogic.computeFeatureSimilarityForNodes(firstNodeIds, depth);
+        processed = featureBusinessLogic.computeFeatureSimilarityForNodes(firstNodeIds, depth, request);
         return processed;
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SimilarityRegistry {
+
+    private final Map<String, Similarity> metrics = new HashMap<>();
+
+    public void register(Similarity metric) {
+        metrics.put(metric.getName(), metric);
+    }
+
+    public Similarity resolve(String name) {
+        if (metrics.containsKey(name)) {
+            return metrics.get(name);
+        }
+
+        throw new RuntimeException("Unknown similarity metric : " + name);
+    }
+
+    public Map<String, Similarity> getMetrics() {
+        return metrics;
+    }
+}
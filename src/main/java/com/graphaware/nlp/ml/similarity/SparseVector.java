@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable sparse vector stored as parallel arrays of strictly increasing
+ * indices and their values, with its L2 norm computed once. Dot products are
+ * merge joins over the two index arrays and do not allocate.
+ */
+public final class SparseVector {
+
+    public static final SparseVector EMPTY = new SparseVector(new long[0], new float[0]);
+
+    private final long[] indices;
+    private final float[] values;
+    private final float norm;
+
+    private SparseVector(long[] indices, float[] values) {
+        this.indices = indices;
+        this.values = values;
+        double sum = 0.0d;
+        for (float value : values) {
+            sum += value * value;
+        }
+        this.norm = (float) Math.sqrt(sum);
+    }
+
+    public static SparseVector fromMap(Map<Long, Float> map) {
+        long[] indices = new long[map.size()];
+        int i = 0;
+        for (Long index : map.keySet()) {
+            indices[i++] = index;
+        }
+        Arrays.sort(indices);
+        float[] values = new float[indices.length];
+        for (i = 0; i < indices.length; i++) {
+            values[i] = map.get(indices[i]);
+        }
+        return new SparseVector(indices, values);
+    }
+
+    /**
+     * Creates a vector from its packed arrays, as returned by
+     * {@link #indices()} and {@link #values()}; the indices must be strictly
+     * increasing.
+     */
+    public static SparseVector of(long[] indices, float[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException("Indices and values should have the same length");
+        }
+        for (int i = 1; i < indices.length; i++) {
+            if (indices[i] <= indices[i - 1]) {
+                throw new IllegalArgumentException("Indices should be strictly increasing");
+            }
+        }
+        return new SparseVector(indices.clone(), values.clone());
+    }
+
+    public int size() {
+        return indices.length;
+    }
+
+    public long index(int i) {
+        return indices[i];
+    }
+
+    public float value(int i) {
+        return values[i];
+    }
+
+    public long[] indices() {
+        return indices.clone();
+    }
+
+    public float[] values() {
+        return values.clone();
+    }
+
+    public float norm() {
+        return norm;
+    }
+
+    public float dot(SparseVector other) {
+        float sum = 0.0f;
+        int i = 0;
+        int j = 0;
+        while (i < indices.length && j < other.indices.length) {
+            long x = indices[i];
+            long y = other.indices[j];
+            if (x == y) {
+                sum += values[i++] * other.values[j++];
+            } else if (x < y) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    public Map<Long, Float> toMap() {
+        Map<Long, Float> map = new HashMap<>(indices.length * 2);
+        for (int i = 0; i < indices.length; i++) {
+            map.put(indices[i], values[i]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+/**
+ * Collects the <code>k</code> highest scored ids offered to it, using a
+ * binary min-heap over primitive arrays: the weakest kept score is at the
+ * root, so a rejected candidate costs a single comparison and an accepted
+ * one O(log k). Scores not above the minimum score are ignored. A collector
+ * can be reused after {@link #reset()}; it is not thread safe.
+ */
+public class TopKCollector {
+
+    private final int k;
+    private final float minScore;
+    private final long[] ids;
+    private final float[] scores;
+    private int size = 0;
+
+    public TopKCollector(int k, float minScore) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k should be greater than 0");
+        }
+        this.k = k;
+        this.minScore = minScore;
+        this.ids = new long[k];
+        this.scores = new float[k];
+    }
+
+    /**
+     * @return true if the id is kept (for now) among the top k
+     */
+    public boolean offer(long id, float score) {
+        if (!(score > minScore)) {
+            return false;
+        }
+        if (size < k) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0, size);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public float getMinScore() {
+        return minScore;
+    }
+
+    /**
+     * @return the score a new id has to beat to be kept
+     */
+    public float threshold() {
+        return size < k ? minScore : scores[0];
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the collected ids by descending score, after which
+     * {@link #id(int)} and {@link #score(int)} return them in that order.
+     * The collector has to be reset before it is used again.
+     */
+    public void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public float score(int index) {
+        return scores[index];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int end) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < end && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < end && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(smallest, index);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
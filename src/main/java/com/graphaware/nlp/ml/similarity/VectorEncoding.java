@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity;
+
+/**
+ * Storage encodings of dense vectors, for embedding stores and vector
+ * properties (see {@link QuantizedVectors}):
+ * <ul>
+ * <li><code>double</code>: 8 bytes per value, <code>double[]</code>
+ * properties;</li>
+ * <li><code>float32</code>: 4 bytes per value, <code>float[]</code>
+ * properties;</li>
+ * <li><code>float16</code>: IEEE half precision, 2 bytes per value,
+ * <code>short[]</code> properties;</li>
+ * <li><code>int8</code>: 1 byte per value, scaled to [-127, 127] by the
+ * maximum absolute value of the vector, <code>byte[]</code> properties with
+ * the scale in a separate property.</li>
+ * </ul>
+ */
+public enum VectorEncoding {
+
+    DOUBLE("double", 1, Double.BYTES),
+    FLOAT32("float32", 2, Float.BYTES),
+    FLOAT16("float16", 3, 2),
+    INT8("int8", 4, 1);
+
+    private final String name;
+    private final int id;
+    private final int bytesPerValue;
+
+    VectorEncoding(String name, int id, int bytesPerValue) {
+        this.name = name;
+        this.id = id;
+        this.bytesPerValue = bytesPerValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the identifier of the encoding in the embedding store files
+     */
+    public int getId() {
+        return id;
+    }
+
+    public int getBytesPerValue() {
+        return bytesPerValue;
+    }
+
+    public static VectorEncoding fromName(String name) {
+        for (VectorEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name)) {
+                return encoding;
+            }
+        }
+        throw new RuntimeException("Unknown vector encoding: " + name);
+    }
+
+    public static VectorEncoding fromId(int id) {
+        for (VectorEncoding encoding : values()) {
+            if (encoding.id == id) {
+                return encoding;
+            }
+        }
+        throw new RuntimeException("Unknown vector encoding id: " + id);
+    }
+}
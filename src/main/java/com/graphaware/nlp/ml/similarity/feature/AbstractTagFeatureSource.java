@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class for the sources built from the tags of the document, read
+ * with a traversal of its sentences rather than with a Cypher query.
+ */
+public abstract class AbstractTagFeatureSource implements FeatureSource {
+
+    protected final DynamicConfiguration configuration;
+
+    protected AbstractTagFeatureSource(DynamicConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return the term frequency of every tag of the document, by tag node id
+     */
+    protected Map<Long, Float> getTermFrequencies(Node annotatedText) {
+        RelationshipType containsSentence = configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE);
+        RelationshipType hasTag = configuration.getRelationshipFor(Relationships.HAS_TAG);
+        String tfKey = configuration.getPropertyKeyFor(Properties.TF);
+        Map<Long, Float> frequencies = new HashMap<>();
+        for (Relationship sentence : annotatedText.getRelationships(Direction.OUTGOING, containsSentence)) {
+            for (Relationship tag : sentence.getEndNode().getRelationships(Direction.OUTGOING, hasTag)) {
+                float tf = ((Number) tag.getProperty(tfKey, 1)).floatValue();
+                frequencies.merge(tag.getEndNodeId(), tf, Float::sum);
+            }
+        }
+        return frequencies;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.ml.similarity.QuantizedVectors;
+import com.graphaware.nlp.ml.similarity.SparseVector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.util.Map;
+
+/**
+ * The centroid of the word embeddings (the <code>word2vec</code> property)
+ * of the tags of the document, weighted by their term frequency. Tags
+ * without an embedding are ignored. The dense centroid is returned as a
+ * vector over the dimension indices.
+ */
+public class EmbeddingFeatureSource extends AbstractTagFeatureSource {
+
+    public static final String NAME = "embedding";
+
+    public static final String DEFAULT_PROPERTY = "word2vec";
+
+    private final GraphDatabaseService database;
+    private final String property;
+
+    public EmbeddingFeatureSource(GraphDatabaseService database, DynamicConfiguration configuration) {
+        this(database, configuration, DEFAULT_PROPERTY);
+    }
+
+    public EmbeddingFeatureSource(GraphDatabaseService database, DynamicConfiguration configuration, String property) {
+        super(configuration);
+        this.database = database;
+        this.property = property;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public SparseVector getVector(Node annotatedText) {
+        double[] centroid = null;
+        double weightSum = 0.0d;
+        for (Map.Entry<Long, Float> tag : getTermFrequencies(annotatedText).entrySet()) {
+            double[] embedding = QuantizedVectors.read(database.getNodeById(tag.getKey()), property);
+            if (embedding == null) {
+                continue;
+            }
+            if (centroid == null) {
+                centroid = new double[embedding.length];
+            }
+            int length = Math.min(centroid.length, embedding.length);
+            for (int i = 0; i < length; i++) {
+                centroid[i] += tag.getValue() * embedding[i];
+            }
+            weightSum += tag.getValue();
+        }
+        if (centroid == null || weightSum == 0.0d) {
+            return SparseVector.EMPTY;
+        }
+        long[] indices = new long[centroid.length];
+        float[] values = new float[centroid.length];
+        for (int i = 0; i < centroid.length; i++) {
+            indices[i] = i;
+            values[i] = (float) (centroid[i] / weightSum);
+        }
+        return SparseVector.of(indices, values);
+    }
+}
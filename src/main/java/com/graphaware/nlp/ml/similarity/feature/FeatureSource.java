@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.ml.similarity.SparseVector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.util.Map;
+
+/**
+ * Describes an AnnotatedText as a feature vector for the similarity
+ * computation. Implementations are called concurrently, always inside a
+ * transaction, and must not write while reading the vectors: the calling
+ * thread takes part in the concurrent reads, and a write there would land in
+ * (and lock nodes for) the caller's transaction.
+ */
+public interface FeatureSource {
+
+    String getName();
+
+    SparseVector getVector(Node annotatedText);
+
+    /**
+     * Called once the similarity relationships of a computation have been
+     * written, with the vectors returned by {@link #getVector(Node)} by node
+     * id. The vectors are passed in batches, each one from a separate thread
+     * and in its own transaction. Sources keeping their vectors on the nodes
+     * write them here. Does nothing by default.
+     */
+    default void store(GraphDatabaseService database, Map<Long, SparseVector> vectors) {
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.ml.similarity.FeatureVectorStore;
+import com.graphaware.nlp.ml.similarity.SparseVector;
+import com.graphaware.nlp.persistence.CorpusStatistics;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+
+import java.util.Map;
+
+/**
+ * TF-IDF vectors read from the {@link FeatureVectorStore}; missing or stale
+ * vectors are computed with the {@link TfIdfFeatureSource}, and stored once
+ * the computation is over.
+ */
+public class PersistedFeatureSource implements FeatureSource {
+
+    public static final String NAME = "persisted";
+
+    private final TfIdfFeatureSource tfIdf;
+    private final FeatureVectorStore vectorStore;
+    private final CorpusStatistics corpusStatistics;
+
+    public PersistedFeatureSource(TfIdfFeatureSource tfIdf, FeatureVectorStore vectorStore, CorpusStatistics corpusStatistics) {
+        this.tfIdf = tfIdf;
+        this.vectorStore = vectorStore;
+        this.corpusStatistics = corpusStatistics;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public SparseVector getVector(Node annotatedText) {
+        long corpusSize = corpusStatistics.getDocumentCount();
+        SparseVector vector = corpusSize > 0 ? vectorStore.load(annotatedText, corpusSize) : null;
+        if (vector == null) {
+            vector = tfIdf.getVector(annotatedText);
+        }
+        return vector;
+    }
+
+    @Override
+    public void store(GraphDatabaseService database, Map<Long, SparseVector> vectors) {
+        long corpusSize = corpusStatistics.getDocumentCount();
+        if (corpusSize == 0) {
+            return;
+        }
+        vectors.forEach((nodeId, vector) -> {
+            try {
+                Node node = database.getNodeById(nodeId);
+                if (vectorStore.needsUpdate(node, corpusSize)) {
+                    vectorStore.store(node, vector, corpusSize);
+                }
+            } catch (NotFoundException e) {
+                // deleted while the similarities were computed
+            }
+        });
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.ml.similarity.SparseVector;
+import org.neo4j.graphdb.Node;
+
+import java.util.Arrays;
+
+/**
+ * The set of tags of the document, as a binary vector over the tag ids.
+ */
+public class TagSetFeatureSource extends AbstractTagFeatureSource {
+
+    public static final String NAME = "tags";
+
+    public TagSetFeatureSource(DynamicConfiguration configuration) {
+        super(configuration);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public SparseVector getVector(Node annotatedText) {
+        long[] tags = getTermFrequencies(annotatedText).keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        float[] ones = new float[tags.length];
+        Arrays.fill(ones, 1.0f);
+        return SparseVector.of(tags, ones);
+    }
+}
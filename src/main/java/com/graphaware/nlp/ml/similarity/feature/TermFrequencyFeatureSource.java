@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.ml.similarity.SparseVector;
+import org.neo4j.graphdb.Node;
+
+/**
+ * Raw term frequencies, for the metrics that apply their own weighting.
+ */
+public class TermFrequencyFeatureSource extends AbstractTagFeatureSource {
+
+    public static final String NAME = "tf";
+
+    public TermFrequencyFeatureSource(DynamicConfiguration configuration) {
+        super(configuration);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public SparseVector getVector(Node annotatedText) {
+        return SparseVector.fromMap(getTermFrequencies(annotatedText));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.similarity.feature;
+
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.ml.similarity.SparseVector;
+import com.graphaware.nlp.persistence.CorpusStatistics;
+import org.neo4j.graphdb.Node;
+
+import java.util.Map;
+
+/**
+ * TF-IDF vectors computed from the graph on every call, the IDF being
+ * <code>log10((1 + N) / df)</code> with the {@link CorpusStatistics}.
+ */
+public class TfIdfFeatureSource extends AbstractTagFeatureSource {
+
+    public static final String NAME = "tfidf";
+
+    private final CorpusStatistics corpusStatistics;
+
+    public TfIdfFeatureSource(DynamicConfiguration configuration, CorpusStatistics corpusStatistics) {
+        super(configuration);
+        this.corpusStatistics = corpusStatistics;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public SparseVector getVector(Node annotatedText) {
+        Map<Long, Float> vector = getTermFrequencies(annotatedText);
+        vector.replaceAll((tag, tf) -> tf * (float) Math.log10(getIdf(tag)));
+        return SparseVector.fromMap(vector);
+    }
+
+    private float getIdf(long tagId) {
+        long frequency = corpusStatistics.getDocumentFrequency(tagId);
+        return frequency > 0 ? (1.0f + corpusStatistics.getDocumentCount()) / frequency : 1.0f;
+    }
+}
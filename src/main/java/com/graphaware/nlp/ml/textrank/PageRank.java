@@ -15,10 +15,12 @@
  */
 package com.graphaware.nlp.ml.textrank;
 
-import com.google.common.util.concurrent.AtomicDouble;
+import com.graphaware.nlp.ml.pagerank.PageRankEngine;
+import com.graphaware.nlp.ml.pagerank.WeightedGraph;
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,14 +28,27 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PageRank {
 
     private static final Logger LOG = LoggerFactory.getLogger(PageRank.class);
 
+    public static final String DEFAULT_WRITE_PROPERTY = "pagerank";
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 10000;
+    public static final long WRITE_BATCH_TIMEOUT_SECONDS = 60;
+
     protected final GraphDatabaseService database;
     private Map<Long, Double> nodeWeights;
     private boolean directionsMatter;
+    private int concurrency = 1;
+    private Map<Long, Double> seeds;
+    private String startProperty;
 
     public PageRank(GraphDatabaseService database) {
         this.database = database;
@@ -48,144 +63,128 @@ public class PageRank {
         this.directionsMatter = respectDirections;
     }
 
-    public Map<Long, Double> run(Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences, int iter, double dampFactor, double threshold) {
-        nodeWeights = initializeNodeWeights(coOccurrences);
-        Map<Long, Double> pagerank = getInitializedPageRank(nodeWeights, dampFactor);
-        int nNodes = pagerank.size();
-        boolean thresholdHit = false;
-        Map<Long, Double> prTemp = new HashMap<>();
-        for (int iteration = 0; iteration < iter && !thresholdHit; iteration++) {
-            //Map<Long, Double> prTemp = new HashMap<>();
-            // calculate main part of the PR calculation, include weights of nodes and relationships
-            nodeWeights.entrySet().stream().forEach(enExt -> {
-                Long nodeIdExt = enExt.getKey();
-                Double nodeWExt = enExt.getValue();
-                AtomicDouble internalSum = new AtomicDouble(0.0);
-                //AtomicDouble internalNodeWSum = new AtomicDouble(0.0);
-                nodeWeights.entrySet().stream()
-                        .filter(enInt -> coOccurrences.containsKey(enInt.getKey()) && coOccurrences.get(enInt.getKey()).containsKey(nodeIdExt))
-                        .forEach(enInt -> {
-                            Long nodeIdInt = enInt.getKey();
-                            Double nodeWInt = enInt.getValue();
-                            //internalNodeWSum.addAndGet(nodeWInt);
-                            Map<Long, CoOccurrenceItem> coOccurrentTags = coOccurrences.get(nodeIdInt);
-                            //Can be optimized
-                            double totalWeightSum = coOccurrentTags.values().stream().map(item -> item.getCount()).mapToDouble(Number::doubleValue).sum();
-                            //internalSum.addAndGet(1.0d/coOccurrentTags.size() * pagerank.get(nodeIdInt)); // no relationship weights
-                            internalSum.addAndGet(((1.0d * coOccurrentTags.get(nodeIdExt).getCount()) / totalWeightSum) * pagerank.get(nodeIdInt)); // with relationship weights
-                            //internalSum.addAndGet(((1.0d * coOccurrentTags.get(nodeIdExt).getCount()) / totalWeightSum) * pagerank.get(nodeIdInt) * nodeWInt); // with relationship & node weights
-                        });
-                double newPrValue = (1 - dampFactor) / nNodes + dampFactor * internalSum.get(); // PR is a probability (PR values add up to 1)
-
-                // PageRank with node weights
-                //long nInt = nodeWeights.entrySet().stream()
-                //        .filter(enInt -> coOccurrences.containsKey(enInt.getKey()) && coOccurrences.get(enInt.getKey()).containsKey(nodeIdExt))
-                //        .count();
-                //double newPrValue = (1 - dampFactor) / nNodes + dampFactor * internalSum.get() * (nInt / internalNodeWSum.get()); // PR is a probability (PR values add up to 1); WITH node weights
-                prTemp.put(nodeIdExt, newPrValue);
-            });
-            thresholdHit = checkThreshold(pagerank, prTemp, threshold);
-            if (thresholdHit) {
-                LOG.warn("Threshold hit after " + (iteration + 1) + " iterations");
-            }
-            // finish page rank computation and store it to the final list
-            nodeWeights.keySet().stream().forEach((nodeIdExt) -> {
-                pagerank.put(nodeIdExt, prTemp.get(nodeIdExt));
-            });
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
 
-        } // iterations
-        return pagerank;
+    public void setSeeds(Map<Long, Double> seeds) {
+        this.seeds = seeds;
     }
 
-    public Map<Long, Map<Long, CoOccurrenceItem>> processGraph(String nodeType, String relType, String weightProperties) {
-        String query = "MATCH (t1:" + nodeType + ")-[r:" + relType + "]->(t2:" + nodeType + ")\n"
-                + "RETURN id(t1) as node1, id(t2) as node2, r as rel, count(*)\n";
-        LOG.info("Running query: " + query);
-        Map<Long, Map<Long, CoOccurrenceItem>> results = new HashMap<>();
-        try (Transaction tx = database.beginTx();) {
-            Result res = database.execute(query);
-            while (res != null && res.hasNext()) {
-                Map<String, Object> next = res.next();
-                Long tag1 = (Long) next.get("node1");
-                Long tag2 = (Long) next.get("node2");
-                double w = 1.; //not used
-                Relationship rel = (Relationship) next.get("rel");
-                if (weightProperties != null
-                        && rel.hasProperty(weightProperties)) {
-                    w = (int) rel.getProperty(weightProperties);
-                }
-                addTagToCoOccurrence(results, tag1, tag2, w);
-                if (!directionsMatter)
-                    addTagToCoOccurrence(results, tag2, tag1, w);
-            }
-            tx.success();
-        } catch (Exception e) {
-            LOG.error("processGraph() failed: " + e.getMessage());
-        }
-        return results;
+    public void setStartProperty(String startProperty) {
+        this.startProperty = startProperty;
     }
 
-    public void storeOnGraph(Map<Long, Double> pageranks, String nodeType) {
-        for (Long tag : pageranks.keySet()) {
-            try (Transaction tx = database.beginTx();) {
-                database.execute("MATCH (t:" + nodeType + ") WHERE id(t)=" + tag + "\n SET t.pagerank = " + pageranks.get(tag));
-                tx.success();
-            } catch (Exception e) {
-                LOG.error("storeOnGraph() failed: " + e.getMessage());
-            }
-        }
+    public Map<Long, Double> run(Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences, int iter, double dampFactor, double threshold) {
+        return run(buildGraph(coOccurrences), iter, dampFactor, threshold);
     }
 
-    private void addTagToCoOccurrence(Map<Long, Map<Long, CoOccurrenceItem>> results, Long tag1, Long tag2, double w) {
-        Map<Long, CoOccurrenceItem> mapTag1;
-        if (!results.containsKey(tag1)) {
-            mapTag1 = new HashMap<>();
-            results.put(tag1, mapTag1);
-        } else {
-            mapTag1 = results.get(tag1);
+    public Map<Long, Double> run(WeightedGraph graph, int iter, double dampFactor, double threshold) {
+        if (graph.size() == 0) {
+            return new HashMap<>();
         }
-        if (mapTag1.containsKey(tag2)) {
-            mapTag1.get(tag2).incCountBy(w);
-        } else {
-            mapTag1.put(tag2, new CoOccurrenceItem(tag1, tag2));
-            mapTag1.get(tag2).setCount(w);
+        double[] teleport = PageRankEngine.teleportVector(graph, dampFactor, seeds);
+        double[] initial = startProperty != null ? loadScores(graph, startProperty) : null;
+        double[] pagerank = new PageRankEngine(concurrency).run(graph, iter, dampFactor, threshold, teleport, initial);
+        return graph.toMap(pagerank);
+    }
+
+    private double[] loadScores(WeightedGraph graph, String property) {
+        double[] scores = new double[graph.size()];
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < scores.length; i++) {
+                Object score = database.getNodeById(graph.nodeId(i)).getProperty(property, null);
+                scores[i] = score instanceof Number ? ((Number) score).doubleValue() : Double.NaN;
+            }
+            tx.success();
         }
+        return scores;
     }
 
-    private Map<Long, Double> initializeNodeWeights(Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences) {
-        if (nodeWeights != null && nodeWeights.size() > 0) {
-            return nodeWeights;
+    /**
+     * When node weights are set, the walk is restricted to their nodes. The
+     * edges leading to other nodes still count in the out-weight sums of
+     * their sources, so the score sent along them leaves the walk instead of
+     * being redistributed over the remaining edges.
+     */
+    protected WeightedGraph buildGraph(Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences) {
+        WeightedGraph.Builder builder = new WeightedGraph.Builder();
+        boolean restrictToNodeWeights = nodeWeights != null && nodeWeights.size() > 0;
+        if (restrictToNodeWeights) {
+            nodeWeights.keySet().forEach(builder::addNode);
         }
-        Map<Long, Double> nodeInitialWeights = new HashMap<>();
-        coOccurrences.entrySet().stream().forEach((coOccurrence) -> {
-            coOccurrence.getValue().entrySet().stream().forEach((entry) -> {
-                nodeInitialWeights.put(entry.getValue().getSource(), 1.0d);
-                nodeInitialWeights.put(entry.getValue().getDestination(), 1.0d);
+        coOccurrences.values().forEach(coOccurrentTags -> {
+            coOccurrentTags.values().forEach(item -> {
+                if (!restrictToNodeWeights || nodeWeights.containsKey(item.getSource()) && nodeWeights.containsKey(item.getDestination())) {
+                    builder.addEdge(item.getSource(), item.getDestination(), item.getCount());
+                } else if (nodeWeights.containsKey(item.getSource())) {
+                    builder.addOutWeight(item.getSource(), item.getCount());
+                }
             });
         });
-        return nodeInitialWeights;
+        return builder.build();
     }
 
-    private Map<Long, Double> getInitializedPageRank(Map<Long, Double> nodeWeights, double damp) {
-        Map<Long, Double> pageRank = new HashMap<>();
-        int n = nodeWeights.size();
-        nodeWeights.entrySet().stream().forEach((item) -> {
-            pageRank.put(item.getKey(), (1. - damp) / n);
-        });
+    public void storeOnGraph(Map<Long, Double> pageranks, String nodeType) {
+        storeOnGraph(pageranks, nodeType, DEFAULT_WRITE_PROPERTY, DEFAULT_WRITE_BATCH_SIZE);
+    }
 
-        return pageRank;
+    /**
+     * Writes the scores through the Core API in transactions of
+     * <code>batchSize</code> nodes. Nodes that have been deleted or do not
+     * carry the <code>nodeType</code> label anymore are skipped.
+     * <p>
+     * Transactions opened on a thread that already runs one (a procedure
+     * call, for instance) are nested into it, so the batches are written from
+     * a separate thread where each of them is committed on its own. The write
+     * is therefore not atomic: only the nodes committed before the call are
+     * visible to the writer, and the first failing batch stops the write with
+     * its error rethrown while the batches committed before it are kept.
+     * <p>
+     * A batch waiting for the locks of the calling transaction would never
+     * get them, so every batch is given {@link #WRITE_BATCH_TIMEOUT_SECONDS}
+     * to commit and the call fails once it is exceeded.
+     */
+    public void storeOnGraph(Map<Long, Double> pageranks, String nodeType, String property, int batchSize) {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        long batches = Math.max(1, (pageranks.size() + batchSize - 1) / batchSize);
+        try {
+            Future<?> write = writer.submit(() -> writeBatches(pageranks, Label.label(nodeType), property, batchSize));
+            write.get(batches * WRITE_BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while storing the PageRank scores", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while storing the PageRank scores", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out while storing the PageRank scores, "
+                    + "the nodes may be locked by the calling transaction", e);
+        } finally {
+            writer.shutdownNow();
+        }
     }
 
-    private boolean checkThreshold(Map<Long, Double> pagerank, Map<Long, Double> prTemp, double threshold) {
-        Iterator<Long> iterator = pagerank.keySet().iterator();
-        while (iterator.hasNext()) {
-            long nodeIdExt = iterator.next();
-            double diff = Math.abs(prTemp.get(nodeIdExt) - pagerank.get(nodeIdExt));
-            if (diff > threshold) {
-                return false;
+    private void writeBatches(Map<Long, Double> pageranks, Label label, String property, int batchSize) {
+        Iterator<Map.Entry<Long, Double>> entries = pageranks.entrySet().iterator();
+        int written = 0;
+        while (entries.hasNext()) {
+            try (Transaction tx = database.beginTx(WRITE_BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                for (int i = 0; i < batchSize && entries.hasNext(); i++) {
+                    Map.Entry<Long, Double> entry = entries.next();
+                    try {
+                        Node node = database.getNodeById(entry.getKey());
+                        if (node.hasLabel(label)) {
+                            node.setProperty(property, entry.getValue());
+                        }
+                    } catch (NotFoundException e) {
+                        LOG.warn("Node " + entry.getKey() + " not found, skipping it");
+                    }
+                    written++;
+                }
+                tx.success();
             }
+            LOG.debug("Stored " + written + " of " + pageranks.size() + " PageRank scores");
         }
-        return true;
     }
 
 }
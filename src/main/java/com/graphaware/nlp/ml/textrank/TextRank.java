@@ -20,6 +20,7 @@ import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.domain.Keyword;
 import com.graphaware.nlp.domain.TfIdfObject;
+import com.graphaware.nlp.persistence.CorpusStatistics;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.persisters.KeywordPersister;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
@@ -822,13 +823,10 @@ public class TextRank {
             });
         }
 
-        String query = "MATCH (doc:AnnotatedText)\n"
-                + "WITH count(doc) as documentsCount\n"
-                + "MATCH (a:AnnotatedText)-[:CONTAINS_SENTENCE]->(:Sentence)-[ht:HAS_TAG]->(t:Tag)\n"
+        String query = "MATCH (a:AnnotatedText)-[:CONTAINS_SENTENCE]->(:Sentence)-[ht:HAS_TAG]->(t:Tag)\n"
                 + "WHERE id(a) = {id} \n"
-                + "WITH t, sum(ht.tf) as tf, documentsCount\n"
-                + "MATCH (a:AnnotatedText)-[:CONTAINS_SENTENCE]->(:Sentence)-[:HAS_TAG]->(t)\n"
-                + "RETURN id(t) as tag, t.id as tagVal, tf, count(distinct a) as docCountForTag, documentsCount\n";
+                + "RETURN id(t) as tag, t.id as tagVal, sum(ht.tf) as tf\n";
+        CorpusStatistics corpusStatistics = NLPManager.getInstance().getCorpusStatistics();
 
         try (Transaction tx = database.beginTx();) {
             Result res = database.execute(query, Collections.singletonMap("id", annotatedText.getId()));
@@ -839,8 +837,8 @@ public class TextRank {
                     continue;
                 long tf = ((Long) next.get("tf"));
 
-                long docCount = (long) next.get("documentsCount");
-                long docCountTag = (long) next.get("docCountForTag");
+                long docCount = corpusStatistics.getDocumentCount();
+                long docCountTag = Math.max(1L, corpusStatistics.getDocumentFrequency(tag));
                 double idf = Math.log10(1.0d * docCount / docCountTag);
 
                 if (nodeWeights.containsKey(tag)) {
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.word2vec;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, concurrent least-recently-used cache of word vectors in front of
+ * an {@link EmbeddingStore}. Words that are not in the store are cached as
+ * well, so repeated misses do not probe the store either. The returned
+ * vectors are shared and must not be modified.
+ */
+public class EmbeddingCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static final double[] NOT_FOUND = new double[0];
+
+    private final EmbeddingStore store;
+    private final Cache<String, double[]> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public EmbeddingCache(EmbeddingStore store) {
+        this(store, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public EmbeddingCache(EmbeddingStore store, long maximumSize) {
+        this.store = store;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    public EmbeddingStore getStore() {
+        return store;
+    }
+
+    public double[] get(String word) {
+        double[] vector = cache.getIfPresent(word);
+        if (vector != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            vector = load(word);
+        }
+        return vector == NOT_FOUND ? null : vector;
+    }
+
+    /**
+     * Looks up the given words at once. The words are deduplicated and
+     * sorted, the cached ones are served first and the remaining ones are
+     * then probed in the store.
+     *
+     * @return the vectors of the words found in the store, in word order
+     */
+    public Map<String, double[]> getAll(Collection<String> words) {
+        SortedSet<String> keys = new TreeSet<>(words);
+        Map<String, double[]> result = new TreeMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String word : keys) {
+            double[] vector = cache.getIfPresent(word);
+            if (vector == null) {
+                missing.add(word);
+            } else if (vector != NOT_FOUND) {
+                result.put(word, vector);
+            }
+        }
+        hits.addAndGet(keys.size() - missing.size());
+        misses.addAndGet(missing.size());
+        for (String word : missing) {
+            double[] vector = load(word);
+            if (vector != NOT_FOUND) {
+                result.put(word, vector);
+            }
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", requests == 0 ? 0.0d : (double) hitCount / requests);
+        return stats;
+    }
+
+    private double[] load(String word) {
+        double[] vector = store.getVector(word);
+        if (vector == null) {
+            vector = NOT_FOUND;
+        }
+        cache.put(word, vector);
+        return vector;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.word2vec;
+
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports word embedding files into an {@link EmbeddingStore}. Supported
+ * formats:
+ * <ul>
+ * <li>text (word2vec, GloVe, Numberbatch, fastText <code>.vec</code>): one
+ * word per line followed by its space separated values, with an optional
+ * <code>rows dimension</code> header line;</li>
+ * <li>binary word2vec (<code>.bin</code>): a <code>rows dimension</code>
+ * header line, then each word followed by a space and its values as
+ * little-endian floats.</li>
+ * </ul>
+ * Text files are read in chunks of lines that are parsed on a pool of
+ * threads and written to the store in file order, with a bounded number of
+ * chunks in flight. The vectors are streamed to disk, but the words are
+ * kept in memory until the store is committed, so the memory used grows
+ * with the vocabulary (not with the dimension of the vectors).
+ * The vectors are stored with the given {@link VectorEncoding}, float32 by
+ * default.
+ */
+public class EmbeddingImporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddingImporter.class);
+
+    private static final int CHUNK_SIZE = 2048;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0d;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0d;
+        }
+    }
+
+    private final int concurrency;
+    private final VectorEncoding encoding;
+
+    public EmbeddingImporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public EmbeddingImporter(int concurrency) {
+        this(concurrency, VectorEncoding.FLOAT32);
+    }
+
+    public EmbeddingImporter(int concurrency, VectorEncoding encoding) {
+        this.concurrency = Math.max(1, concurrency);
+        this.encoding = encoding;
+    }
+
+    public EmbeddingStore importFile(File source, File directory) throws IOException {
+        long start = System.currentTimeMillis();
+        try (EmbeddingStore.Writer writer = new EmbeddingStore.Writer(directory, encoding)) {
+            if (isBinary(source)) {
+                importBinary(source, writer);
+            } else {
+                importText(source, writer);
+            }
+            writer.commit();
+            LOG.info("Imported " + writer.size() + " embeddings from " + source + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return EmbeddingStore.open(directory);
+    }
+
+    public static boolean isBinary(File source) {
+        return source.getName().endsWith(".bin");
+    }
+
+    protected void importText(File source, EmbeddingStore.Writer writer) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8), 1 << 20)) {
+            String[] lines = new String[CHUNK_SIZE];
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines[count++] = line;
+                if (count == CHUNK_SIZE) {
+                    final String[] chunk = lines;
+                    inFlight.add(pool.submit(() -> parse(chunk, CHUNK_SIZE)));
+                    lines = new String[CHUNK_SIZE];
+                    count = 0;
+                    if (inFlight.size() >= concurrency * 2) {
+                        write(inFlight.poll(), writer);
+                    }
+                }
+            }
+            if (count > 0) {
+                final String[] chunk = lines;
+                final int size = count;
+                inFlight.add(pool.submit(() -> parse(chunk, size)));
+            }
+            while (!inFlight.isEmpty()) {
+                write(inFlight.poll(), writer);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    protected void importBinary(File source, EmbeddingStore.Writer writer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source), 1 << 20))) {
+            String[] header = readToken(in, '\n').trim().split(" ");
+            if (header.length != 2) {
+                throw new IOException("Invalid word2vec binary header in " + source);
+            }
+            long rows = Long.parseLong(header[0]);
+            int dimension = Integer.parseInt(header[1]);
+            byte[] row = new byte[dimension * Float.BYTES];
+            ByteBuffer buffer = ByteBuffer.wrap(row).order(ByteOrder.LITTLE_ENDIAN);
+            for (long r = 0; r < rows; r++) {
+                String word = readToken(in, ' ').trim();
+                in.readFully(row);
+                float[] vector = new float[dimension];
+                buffer.rewind();
+                buffer.asFloatBuffer().get(vector);
+                writer.add(word, vector);
+            }
+        }
+    }
+
+    private static String readToken(DataInputStream in, char separator) throws IOException {
+        ByteArrayOutputStream token = new ByteArrayOutputStream(32);
+        int b;
+        while ((b = in.read()) != -1 && b != separator) {
+            token.write(b);
+        }
+        if (b == -1 && token.size() == 0) {
+            throw new EOFException();
+        }
+        return new String(token.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(Future<Chunk> future, EmbeddingStore.Writer writer) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing embeddings", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error while parsing embeddings", e.getCause());
+        }
+        for (int i = 0; i < chunk.size; i++) {
+            writer.add(chunk.words[i], chunk.vectors[i]);
+        }
+    }
+
+    /**
+     * Parses the lines having a word and at least two values, so that the
+     * <code>rows dimension</code> header line is skipped.
+     */
+    protected static Chunk parse(String[] lines, int count) {
+        Chunk chunk = new Chunk(count);
+        for (int l = 0; l < count; l++) {
+            String line = lines[l];
+            int end = line.length();
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                end--;
+            }
+            int wordEnd = line.indexOf(' ');
+            if (wordEnd <= 0 || wordEnd >= end) {
+                continue;
+            }
+            int values = 0;
+            for (int i = wordEnd; i < end; i++) {
+                if (line.charAt(i) == ' ' && i + 1 < end && line.charAt(i + 1) != ' ') {
+                    values++;
+                }
+            }
+            if (values < 2) {
+                continue;
+            }
+            float[] vector = new float[values];
+            int position = wordEnd;
+            for (int v = 0; v < values; v++) {
+                while (line.charAt(position) == ' ') {
+                    position++;
+                }
+                int valueEnd = position;
+                while (valueEnd < end && line.charAt(valueEnd) != ' ') {
+                    valueEnd++;
+                }
+                vector[v] = parseFloat(line, position, valueEnd);
+                position = valueEnd;
+            }
+            chunk.add(line.substring(0, wordEnd), vector);
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses plain decimal numbers (optional sign, digits, fraction and
+     * exponent) without creating a substring, and falls back to
+     * {@link Float#parseFloat(String)} for anything else.
+     */
+    protected static float parseFloat(String s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa > 0) {
+                        digits++;
+                    }
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else if (!seenPoint) {
+                    exponent++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (i < to && seenDigit && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if (j < to && (s.charAt(j) == '-' || s.charAt(j) == '+')) {
+                negativeExponent = s.charAt(j) == '-';
+                j++;
+            }
+            int value = 0;
+            int start = j;
+            for (; j < to && s.charAt(j) >= '0' && s.charAt(j) <= '9' && value < 1000; j++) {
+                value = value * 10 + (s.charAt(j) - '0');
+            }
+            if (j > start) {
+                exponent += negativeExponent ? -value : value;
+                i = j;
+            }
+        }
+        if (!seenDigit || i != to || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+            return Float.parseFloat(s.substring(from, to));
+        }
+        double result = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return (float) (negative ? -result : result);
+    }
+
+    protected static class Chunk {
+
+        private final String[] words;
+        private final float[][] vectors;
+        private int size;
+
+        Chunk(int capacity) {
+            this.words = new String[capacity];
+            this.vectors = new float[capacity][];
+        }
+
+        void add(String word, float[] vector) {
+            words[size] = word;
+            vectors[size] = vector;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.word2vec;
+
+import com.graphaware.nlp.ml.similarity.QuantizedVectors;
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read-only word embedding store backed by two memory-mapped files in a
+ * model directory:
+ * <ul>
+ * <li><code>vectors.bin</code>: the embeddings as a contiguous row-major
+ * matrix, one row per word, in one of the {@link VectorEncoding}s
+ * (little-endian; an <code>int8</code> row starts with its float scale);</li>
+ * <li><code>index.bin</code>: a header (magic, version, rows, dimension,
+ * table size, encoding), an open-addressing hash table with linear probing whose slots
+ * hold <code>row + 1</code> (0 for an empty slot), the offsets of the words
+ * and the UTF-8 bytes of the words.</li>
+ * </ul>
+ * A lookup is a hash probe over the mapped index followed by a read of the
+ * row slice, no objects are created apart from the returned vector, and
+ * cosine similarities are computed on the encoded rows directly. The
+ * vector file is mapped in segments, so it can be larger than 2GB. Stores
+ * are created with {@link Writer} (see {@link EmbeddingImporter}) and the
+ * index is written last, only when the writer is committed, so a directory
+ * without <code>index.bin</code> is an incomplete store.
+ */
+public class EmbeddingStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmbeddingStore.class);
+
+    public static final String VECTORS_FILE = "vectors.bin";
+    public static final String INDEX_FILE = "index.bin";
+
+    private static final int MAGIC = 0x57325653;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+    private static final int V1_HEADER_SIZE = 5 * Integer.BYTES;
+
+    private final int rows;
+    private final int dimension;
+    private final VectorEncoding encoding;
+    private final int rowSize;
+    private final int tableSize;
+    private final int rowsPerSegment;
+    private final ByteBuffer index;
+    private final ByteBuffer[] segments;
+    private final int tableStart;
+    private final int offsetsStart;
+    private final int wordsStart;
+
+    private EmbeddingStore(ByteBuffer index, ByteBuffer[] segments, int headerSize, int rows, int dimension,
+                           VectorEncoding encoding, int tableSize, int rowsPerSegment) {
+        this.index = index;
+        this.segments = segments;
+        this.rows = rows;
+        this.dimension = dimension;
+        this.encoding = encoding;
+        this.rowSize = rowSize(encoding, dimension);
+        this.tableSize = tableSize;
+        this.rowsPerSegment = rowsPerSegment;
+        this.tableStart = headerSize;
+        this.offsetsStart = headerSize + tableSize * Integer.BYTES;
+        this.wordsStart = offsetsStart + (rows + 1) * Integer.BYTES;
+    }
+
+    protected static int rowSize(VectorEncoding encoding, int dimension) {
+        return dimension * encoding.getBytesPerValue() + (encoding == VectorEncoding.INT8 ? Float.BYTES : 0);
+    }
+
+    public static boolean exists(File directory) {
+        return new File(directory, INDEX_FILE).isFile() && new File(directory, VECTORS_FILE).isFile();
+    }
+
+    public static EmbeddingStore open(File directory) throws IOException {
+        ByteBuffer index = map(new File(directory, INDEX_FILE), 0, -1);
+        int version = index.getInt(Integer.BYTES);
+        if (index.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("Not an embedding store: " + directory);
+        }
+        int rows = index.getInt(2 * Integer.BYTES);
+        int dimension = index.getInt(3 * Integer.BYTES);
+        int tableSize = index.getInt(4 * Integer.BYTES);
+        VectorEncoding encoding = version == 1 ? VectorEncoding.FLOAT32 : VectorEncoding.fromId(index.getInt(5 * Integer.BYTES));
+        int rowSize = rowSize(encoding, dimension);
+        int rowsPerSegment = Math.max(1, Integer.MAX_VALUE / Math.max(1, rowSize));
+        File vectorsFile = new File(directory, VECTORS_FILE);
+        if (vectorsFile.length() != (long) rows * rowSize) {
+            throw new IOException("Vector file size does not match the index: " + vectorsFile);
+        }
+        ByteBuffer[] segments = new ByteBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i * rowsPerSegment * rowSize;
+            long size = (long) Math.min(rowsPerSegment, rows - i * rowsPerSegment) * rowSize;
+            segments[i] = map(vectorsFile, start, size);
+        }
+        LOG.info("Opened embedding store " + directory + " with " + rows + " " + encoding.getName() + " words of dimension " + dimension);
+        return new EmbeddingStore(index, segments, version == 1 ? V1_HEADER_SIZE : HEADER_SIZE, rows, dimension, encoding, tableSize, rowsPerSegment);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public VectorEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return the row of the given word, or -1 if it is not in the store.
+     * Spaces are looked up as underscores, as in multi-word entries.
+     */
+    public int rowOf(String word) {
+        byte[] bytes = normalize(word).getBytes(StandardCharsets.UTF_8);
+        int mask = tableSize - 1;
+        for (int slot = hash(bytes) & mask; ; slot = (slot + 1) & mask) {
+            int row = index.getInt(tableStart + slot * Integer.BYTES) - 1;
+            if (row < 0) {
+                return -1;
+            }
+            if (wordEquals(row, bytes)) {
+                return row;
+            }
+        }
+    }
+
+    public double[] getVector(String word) {
+        int row = rowOf(word);
+        return row < 0 ? null : getVector(row);
+    }
+
+    public double[] getVector(int row) {
+        double[] vector = new double[dimension];
+        ByteBuffer segment = segment(row);
+        int position = position(row);
+        switch (encoding) {
+            case INT8:
+                double scale = segment.getFloat(position);
+                position += Float.BYTES;
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = segment.get(position + i) * scale;
+                }
+                break;
+            default:
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = value(segment, position, i);
+                }
+        }
+        return vector;
+    }
+
+    public float get(int row, int component) {
+        ByteBuffer segment = segment(row);
+        int position = position(row);
+        if (encoding == VectorEncoding.INT8) {
+            return segment.getFloat(position) * segment.get(position + Float.BYTES + component);
+        }
+        return (float) value(segment, position, component);
+    }
+
+    /**
+     * Dot product of a query vector with a row, read in place.
+     */
+    public double dot(double[] vector, int row) {
+        ByteBuffer segment = segment(row);
+        int position = position(row);
+        int length = Math.min(vector.length, dimension);
+        double dot = 0.0d;
+        if (encoding == VectorEncoding.INT8) {
+            position += Float.BYTES;
+            for (int i = 0; i < length; i++) {
+                dot += vector[i] * segment.get(position + i);
+            }
+            return dot * segment.getFloat(position - Float.BYTES);
+        }
+        for (int i = 0; i < length; i++) {
+            dot += vector[i] * value(segment, position, i);
+        }
+        return dot;
+    }
+
+    public double norm(int row) {
+        ByteBuffer segment = segment(row);
+        int position = position(row);
+        if (encoding == VectorEncoding.INT8) {
+            long sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                int q = segment.get(position + Float.BYTES + i);
+                sum += q * q;
+            }
+            return Math.abs(segment.getFloat(position)) * Math.sqrt((double) sum);
+        }
+        double sum = 0.0d;
+        for (int i = 0; i < dimension; i++) {
+            double value = value(segment, position, i);
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Cosine similarity of a query vector, with its precomputed norm, and a
+     * row, without decoding the row.
+     */
+    public double cosine(double[] vector, double vectorNorm, int row) {
+        double norms = vectorNorm * norm(row);
+        return norms > 0 ? dot(vector, row) / norms : 0.0d;
+    }
+
+    /**
+     * Dot product of two rows, read in place; <code>int8</code> rows are
+     * multiplied with integer arithmetic on the quantized values.
+     */
+    public double dot(int row1, int row2) {
+        ByteBuffer segment1 = segment(row1);
+        ByteBuffer segment2 = segment(row2);
+        int position1 = position(row1);
+        int position2 = position(row2);
+        if (encoding == VectorEncoding.INT8) {
+            long dot = 0;
+            for (int i = 0; i < dimension; i++) {
+                dot += segment1.get(position1 + Float.BYTES + i) * segment2.get(position2 + Float.BYTES + i);
+            }
+            return dot * (double) segment1.getFloat(position1) * segment2.getFloat(position2);
+        }
+        double dot = 0.0d;
+        for (int i = 0; i < dimension; i++) {
+            dot += value(segment1, position1, i) * value(segment2, position2, i);
+        }
+        return dot;
+    }
+
+    public double cosine(int row1, int row2) {
+        double norms = norm(row1) * norm(row2);
+        return norms > 0 ? dot(row1, row2) / norms : 0.0d;
+    }
+
+    private ByteBuffer segment(int row) {
+        return segments[row / rowsPerSegment];
+    }
+
+    private int position(int row) {
+        return (row % rowsPerSegment) * rowSize;
+    }
+
+    private double value(ByteBuffer segment, int position, int component) {
+        switch (encoding) {
+            case FLOAT32:
+                return segment.getFloat(position + component * Float.BYTES);
+            case FLOAT16:
+                return QuantizedVectors.fromHalf(segment.getShort(position + component * 2));
+            case DOUBLE:
+                return segment.getDouble(position + component * Double.BYTES);
+            default:
+                return segment.getFloat(position) * segment.get(position + Float.BYTES + component);
+        }
+    }
+
+    public String getWord(int row) {
+        int start = index.getInt(offsetsStart + row * Integer.BYTES);
+        int end = index.getInt(offsetsStart + (row + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = index.get(wordsStart + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean wordEquals(int row, byte[] bytes) {
+        int start = index.getInt(offsetsStart + row * Integer.BYTES);
+        int end = index.getInt(offsetsStart + (row + 1) * Integer.BYTES);
+        if (end - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (index.get(wordsStart + start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String word) {
+        return word.replace(" ", "_");
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, stable across JVMs since it is part of the
+     * file format.
+     */
+    private static int hash(byte[] bytes) {
+        int hash = 0x811c9dc5;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static ByteBuffer map(File file, long position, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size < 0 ? channel.size() : size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    /**
+     * Streams the vectors to <code>vectors.bin</code> as they are added,
+     * encoded with the given {@link VectorEncoding} (float32 by default), and
+     * writes the hash index on {@link #commit()}. Closing a writer that was
+     * not committed, e.g. after a failed import, deletes the vector file
+     * instead. All the vectors must have the same dimension; the first
+     * occurrence of a word wins. The words are kept in memory to build the
+     * index, so the memory used is proportional to the vocabulary.
+     */
+    public static class Writer implements Closeable {
+
+        private final File directory;
+        private final VectorEncoding encoding;
+        private final DataOutputStream vectors;
+        private final Set<String> seen = new HashSet<>();
+        private final List<String> words = new ArrayList<>();
+        private int dimension = -1;
+        private byte[] row;
+        private boolean committed;
+
+        public Writer(File directory) throws IOException {
+            this(directory, VectorEncoding.FLOAT32);
+        }
+
+        public Writer(File directory, VectorEncoding encoding) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            this.directory = directory;
+            this.encoding = encoding;
+            new File(directory, INDEX_FILE).delete();
+            this.vectors = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, VECTORS_FILE)), 1 << 20));
+        }
+
+        /**
+         * @return <code>false</code> if the word was skipped, because it is a
+         * duplicate or its vector has a different dimension
+         */
+        public boolean add(String word, float[] vector) throws IOException {
+            if (dimension < 0) {
+                dimension = vector.length;
+                row = new byte[rowSize(encoding, dimension)];
+            } else if (vector.length != dimension) {
+                LOG.warn("Skipping '" + word + "': dimension " + vector.length + " instead of " + dimension);
+                return false;
+            }
+            String normalized = normalize(word);
+            if (!seen.add(normalized)) {
+                return false;
+            }
+            encode(vector, ByteBuffer.wrap(row).order(ByteOrder.LITTLE_ENDIAN));
+            vectors.write(row);
+            words.add(normalized);
+            return true;
+        }
+
+        public int size() {
+            return words.size();
+        }
+
+        private void encode(float[] vector, ByteBuffer buffer) {
+            switch (encoding) {
+                case FLOAT32:
+                    for (float value : vector) {
+                        buffer.putFloat(value);
+                    }
+                    break;
+                case FLOAT16:
+                    for (float value : vector) {
+                        buffer.putShort(QuantizedVectors.toHalf(value));
+                    }
+                    break;
+                case DOUBLE:
+                    for (float value : vector) {
+                        buffer.putDouble(value);
+                    }
+                    break;
+                default:
+                    float max = 0.0f;
+                    for (float value : vector) {
+                        max = Math.max(max, Math.abs(value));
+                    }
+                    float scale = max / 127.0f;
+                    buffer.putFloat(scale);
+                    for (float value : vector) {
+                        buffer.put(scale > 0 ? (byte) Math.max(-127, Math.min(127, Math.round(value / scale))) : 0);
+                    }
+            }
+        }
+
+        /**
+         * Closes the vector file and writes the index, which makes the store
+         * readable.
+         */
+        public void commit() throws IOException {
+            vectors.close();
+            seen.clear();
+            int rows = words.size();
+            int tableSize = Integer.highestOneBit(Math.max(2, rows * 2 - 1)) << 1;
+            int[] table = new int[tableSize];
+            int[] offsets = new int[rows + 1];
+            ByteArrayOutputStream wordBytes = new ByteArrayOutputStream(rows * 8);
+            for (int r = 0; r < rows; r++) {
+                byte[] bytes = words.get(r).getBytes(StandardCharsets.UTF_8);
+                wordBytes.write(bytes, 0, bytes.length);
+                offsets[r + 1] = offsets[r] + bytes.length;
+                int slot = hash(bytes) & (tableSize - 1);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (tableSize - 1);
+                }
+                table[slot] = r + 1;
+            }
+            File indexFile = new File(directory, INDEX_FILE);
+            File tmpFile = new File(directory, INDEX_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20))) {
+                ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int value : new int[]{MAGIC, VERSION, rows, Math.max(0, dimension), tableSize, encoding.getId()}) {
+                    writeInt(out, buffer, value);
+                }
+                for (int value : table) {
+                    writeInt(out, buffer, value);
+                }
+                for (int value : offsets) {
+                    writeInt(out, buffer, value);
+                }
+                wordBytes.writeTo(out);
+            }
+            if (!tmpFile.renameTo(indexFile)) {
+                throw new IOException("Cannot create " + indexFile);
+            }
+            committed = true;
+            LOG.info("Stored " + rows + " " + encoding.getName() + " embeddings of dimension " + dimension + " in " + directory);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) {
+                return;
+            }
+            committed = true;
+            try {
+                vectors.close();
+            } finally {
+                new File(directory, INDEX_FILE + ".tmp").delete();
+                new File(directory, VECTORS_FILE).delete();
+            }
+        }
+
+        private static void writeInt(DataOutputStream out, ByteBuffer buffer, int value) throws IOException {
+            buffer.clear();
+            buffer.putInt(value);
+            out.write(buffer.array());
+        }
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.ml.word2vec;
+
+import com.graphaware.nlp.ml.similarity.TopKCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical Navigable Small World graph (Malkov and Yashunin) over the
+ * rows of an {@link EmbeddingStore}, for approximate cosine nearest
+ * neighbour search. Every row gets a random level; a query descends
+ * greedily from the entry point through the upper levels and then runs a
+ * best-first search of width <code>ef</code> on the bottom level, where each
+ * row links to up to <code>2 * m</code> neighbours (<code>m</code> above).
+ * <p>
+ * The graph is built in parallel, with striped locks on the neighbour
+ * lists, and written to <code>hnsw.bin</code> in the store directory: a
+ * header (magic, version, rows, m, max level, entry point), the bottom level
+ * neighbour lists (count followed by <code>2 * m</code> rows), the level of
+ * each row and the upper level lists of the rows above the bottom level.
+ * The bottom level is memory-mapped in segments when the index is opened,
+ * so it can be larger than 2GB, the upper levels (about one row in
+ * <code>m</code>) are read in memory.
+ */
+public class HnswIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HnswIndex.class);
+
+    public static final String INDEX_FILE = "hnsw.bin";
+
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 100;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    private static final int MAGIC = 0x484e5357;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    private final EmbeddingStore store;
+    private final float[] norms;
+    private final int m;
+    private final int maxLevel;
+    private final int entryPoint;
+    private final ByteBuffer[] bottom;
+    private final int rowsPerSegment;
+    private final int[][] upper;
+
+    private HnswIndex(EmbeddingStore store, float[] norms, int m, int maxLevel, int entryPoint, ByteBuffer[] bottom, int rowsPerSegment, int[][] upper) {
+        this.store = store;
+        this.norms = norms;
+        this.m = m;
+        this.maxLevel = maxLevel;
+        this.entryPoint = entryPoint;
+        this.bottom = bottom;
+        this.rowsPerSegment = rowsPerSegment;
+        this.upper = upper;
+    }
+
+    public static boolean exists(File directory) {
+        return new File(directory, INDEX_FILE).isFile();
+    }
+
+    public static HnswIndex open(EmbeddingStore store, File directory) throws IOException {
+        File file = new File(directory, INDEX_FILE);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Invalid HNSW index for the embedding store: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int rows = header.getInt(2 * Integer.BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION || rows != store.size()) {
+                throw new IOException("Invalid HNSW index for the embedding store: " + file);
+            }
+            int m = header.getInt(3 * Integer.BYTES);
+            int maxLevel = header.getInt(4 * Integer.BYTES);
+            int entryPoint = header.getInt(5 * Integer.BYTES);
+            int rowSize = (2 * m + 1) * Integer.BYTES;
+            long levelsStart = HEADER_SIZE + (long) rows * rowSize;
+            if (channel.size() < levelsStart + rows) {
+                throw new IOException("Truncated HNSW index: " + file);
+            }
+            int rowsPerSegment = Math.max(1, Integer.MAX_VALUE / rowSize);
+            ByteBuffer[] bottom = new ByteBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+            for (int i = 0; i < bottom.length; i++) {
+                long start = HEADER_SIZE + (long) i * rowsPerSegment * rowSize;
+                long size = (long) Math.min(rowsPerSegment, rows - i * rowsPerSegment) * rowSize;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+                bottom[i] = mapped;
+            }
+            channel.position(levelsStart);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 20));
+            byte[] levels = new byte[rows];
+            in.readFully(levels);
+            int[][] upper = new int[rows][];
+            for (int row = 0; row < rows; row++) {
+                if (levels[row] > 0) {
+                    upper[row] = new int[levels[row] * (m + 1)];
+                    for (int i = 0; i < upper[row].length; i++) {
+                        upper[row][i] = Integer.reverseBytes(in.readInt());
+                    }
+                }
+            }
+            LOG.info("Opened HNSW index " + file + " with " + rows + " rows and " + (maxLevel + 1) + " levels");
+            return new HnswIndex(store, computeNorms(store), m, maxLevel, entryPoint, bottom, rowsPerSegment, upper);
+        }
+    }
+
+    /**
+     * Builds the graph over all the rows of the store, writes it to the
+     * store directory and opens it.
+     */
+    public static HnswIndex build(EmbeddingStore store, File directory, int m, int efConstruction, int concurrency) throws IOException {
+        long start = System.currentTimeMillis();
+        Builder builder = new Builder(store, computeNorms(store), m, efConstruction);
+        if (store.size() > 0) {
+            builder.insert(0);
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, concurrency));
+            try {
+                pool.submit(() -> IntStream.range(1, store.size()).parallel().forEach(builder::insert)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while building the HNSW index", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Error while building the HNSW index", e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+        builder.write(directory);
+        LOG.info("Built HNSW index of " + store.size() + " rows in " + (System.currentTimeMillis() - start) + "ms");
+        return open(store, directory);
+    }
+
+    public EmbeddingStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return the (at most) <code>k</code> rows most similar to the vector,
+     * best first, with their cosine similarity
+     * @throws IllegalArgumentException if the vector does not have the
+     * dimension of the store
+     */
+    public TopKCollector search(double[] vector, int k, int ef) {
+        checkDimension(store, vector);
+        double norm = 0.0d;
+        for (double value : vector) {
+            norm += value * value;
+        }
+        double vectorNorm = Math.sqrt(norm);
+        RowScorer scorer = (row) -> similarity(store.dot(vector, row), vectorNorm, norms[row]);
+        TopKCollector result = new TopKCollector(k, Float.NEGATIVE_INFINITY);
+        if (store.size() == 0) {
+            return result;
+        }
+        int[] buffer = new int[2 * m];
+        Visited visited = Visited.get(store.size());
+        int current = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            current = best(searchLevel(this::neighbours, scorer, current, 1, level, visited, buffer));
+        }
+        TopKCollector candidates = searchLevel(this::neighbours, scorer, current, Math.max(ef, k), 0, visited, buffer);
+        for (int i = 0; i < candidates.size(); i++) {
+            result.offer(candidates.id(i), candidates.score(i));
+        }
+        result.sort();
+        return result;
+    }
+
+    /**
+     * Exact search by a full scan of the store, for models without an index.
+     *
+     * @throws IllegalArgumentException if the vector does not have the
+     * dimension of the store
+     */
+    public static TopKCollector scan(EmbeddingStore store, double[] vector, int k) {
+        checkDimension(store, vector);
+        double norm = 0.0d;
+        for (double value : vector) {
+            norm += value * value;
+        }
+        double vectorNorm = Math.sqrt(norm);
+        TopKCollector result = new TopKCollector(k, Float.NEGATIVE_INFINITY);
+        for (int row = 0; row < store.size(); row++) {
+            result.offer(row, (float) store.cosine(vector, vectorNorm, row));
+        }
+        result.sort();
+        return result;
+    }
+
+    private static void checkDimension(EmbeddingStore store, double[] vector) {
+        if (vector.length != store.getDimension()) {
+            throw new IllegalArgumentException("The vector has " + vector.length + " dimensions, the model vectors have "
+                    + store.getDimension());
+        }
+    }
+
+    private int neighbours(int row, int level, int[] buffer) {
+        if (level == 0) {
+            ByteBuffer segment = bottom[row / rowsPerSegment];
+            int position = (row % rowsPerSegment) * (2 * m + 1) * Integer.BYTES;
+            int count = segment.getInt(position);
+            for (int i = 0; i < count; i++) {
+                buffer[i] = segment.getInt(position + (i + 1) * Integer.BYTES);
+            }
+            return count;
+        }
+        int[] links = upper[row];
+        int offset = (level - 1) * (m + 1);
+        if (links == null || offset >= links.length) {
+            return 0;
+        }
+        int count = links[offset];
+        System.arraycopy(links, offset + 1, buffer, 0, count);
+        return count;
+    }
+
+    private static float similarity(double dot, double norm1, double norm2) {
+        double norms = norm1 * norm2;
+        return norms > 0 ? (float) (dot / norms) : 0.0f;
+    }
+
+    private static float[] computeNorms(EmbeddingStore store) {
+        float[] norms = new float[store.size()];
+        IntStream.range(0, norms.length).parallel().forEach((row) -> norms[row] = (float) store.norm(row));
+        return norms;
+    }
+
+    private static int best(TopKCollector collector) {
+        int best = 0;
+        for (int i = 1; i < collector.size(); i++) {
+            if (collector.score(i) > collector.score(best)) {
+                best = i;
+            }
+        }
+        return (int) collector.id(best);
+    }
+
+    /**
+     * Best-first search of one level from the entry rows, keeping the
+     * <code>ef</code> most similar rows found.
+     */
+    private static TopKCollector searchLevel(Links links, RowScorer scorer, int entry, int ef, int level, Visited visited, int[] buffer) {
+        return searchLevel(links, scorer, new int[]{entry}, 1, ef, level, visited, buffer);
+    }
+
+    private static TopKCollector searchLevel(Links links, RowScorer scorer, int[] entries, int entryCount, int ef, int level, Visited visited, int[] buffer) {
+        TopKCollector results = new TopKCollector(ef, Float.NEGATIVE_INFINITY);
+        Candidates candidates = new Candidates(Math.max(16, ef));
+        visited.clear();
+        for (int i = 0; i < entryCount; i++) {
+            int entry = entries[i];
+            if (visited.visit(entry)) {
+                float score = scorer.score(entry);
+                results.offer(entry, score);
+                candidates.push(entry, score);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            float score = candidates.bestScore();
+            if (results.size() == ef && score < results.threshold()) {
+                break;
+            }
+            int row = candidates.pop();
+            int count = links.neighbours(row, level, buffer);
+            for (int i = 0; i < count; i++) {
+                int neighbour = buffer[i];
+                if (visited.visit(neighbour)) {
+                    float neighbourScore = scorer.score(neighbour);
+                    if (results.size() < ef || neighbourScore > results.threshold()) {
+                        results.offer(neighbour, neighbourScore);
+                        candidates.push(neighbour, neighbourScore);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private interface Links {
+
+        int neighbours(int row, int level, int[] buffer);
+    }
+
+    private interface RowScorer {
+
+        float score(int row);
+    }
+
+    /**
+     * Per-thread visited marks, cleared in O(1) by bumping a generation.
+     */
+    private static class Visited {
+
+        private static final ThreadLocal<Visited> INSTANCES = new ThreadLocal<>();
+
+        private int[] marks;
+        private int generation;
+
+        static Visited get(int size) {
+            Visited visited = INSTANCES.get();
+            if (visited == null || visited.marks.length < size) {
+                visited = new Visited();
+                visited.marks = new int[size];
+                INSTANCES.set(visited);
+            }
+            return visited;
+        }
+
+        void clear() {
+            if (++generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        boolean visit(int row) {
+            if (marks[row] == generation) {
+                return false;
+            }
+            marks[row] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * Max-heap of candidate rows by score.
+     */
+    private static class Candidates {
+
+        private int[] rows;
+        private float[] scores;
+        private int size;
+
+        Candidates(int capacity) {
+            rows = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float bestScore() {
+            return scores[0];
+        }
+
+        void push(int row, float score) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                rows[index] = rows[parent];
+                scores[index] = scores[parent];
+                index = parent;
+            }
+            rows[index] = row;
+            scores[index] = score;
+        }
+
+        int pop() {
+            int best = rows[0];
+            size--;
+            int row = rows[size];
+            float score = scores[size];
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] > scores[child]) {
+                    child++;
+                }
+                if (scores[child] <= score) {
+                    break;
+                }
+                rows[index] = rows[child];
+                scores[index] = scores[child];
+                index = child;
+            }
+            rows[index] = row;
+            scores[index] = score;
+            return best;
+        }
+    }
+
+    private static class Builder implements Links {
+
+        private static final int LOCK_STRIPES = 1 << 12;
+        private static final int CHUNK_SHIFT = 16;
+        private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+
+        private final EmbeddingStore store;
+        private final float[] norms;
+        private final int m;
+        private final int efConstruction;
+        private final byte[] levels;
+        private final int[][] bottom;
+        private final int[][] upper;
+        private final Object[] locks = new Object[LOCK_STRIPES];
+        private int maxLevel = -1;
+        private int entryPoint = -1;
+
+        Builder(EmbeddingStore store, float[] norms, int m, int efConstruction) {
+            this.store = store;
+            this.norms = norms;
+            this.m = m;
+            this.efConstruction = efConstruction;
+            int rows = store.size();
+            this.levels = new byte[rows];
+            this.bottom = new int[(rows + CHUNK_ROWS - 1) >>> CHUNK_SHIFT][];
+            for (int i = 0; i < bottom.length; i++) {
+                bottom[i] = new int[Math.min(CHUNK_ROWS, rows - (i << CHUNK_SHIFT)) * (2 * m + 1)];
+            }
+            this.upper = new int[rows][];
+            double levelMultiplier = 1.0d / Math.log(m);
+            Random random = new Random(42);
+            for (int row = 0; row < rows; row++) {
+                int level = (int) Math.min(Byte.MAX_VALUE, Math.floor(-Math.log(1.0d - random.nextDouble()) * levelMultiplier));
+                levels[row] = (byte) level;
+                if (level > 0) {
+                    upper[row] = new int[level * (m + 1)];
+                }
+            }
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        void insert(int row) {
+            int level = levels[row];
+            int currentEntryPoint;
+            int currentMaxLevel;
+            synchronized (this) {
+                if (entryPoint < 0) {
+                    entryPoint = row;
+                    maxLevel = level;
+                    return;
+                }
+                currentEntryPoint = entryPoint;
+                currentMaxLevel = maxLevel;
+            }
+            double[] vector = store.getVector(row);
+            float norm = norms[row];
+            RowScorer scorer = (other) -> similarity(store.dot(vector, other), norm, norms[other]);
+            Visited visited = Visited.get(store.size());
+            int[] buffer = new int[2 * m + 1];
+            int current = currentEntryPoint;
+            for (int l = currentMaxLevel; l > level; l--) {
+                current = best(searchLevel(this, scorer, current, 1, l, visited, buffer));
+            }
+            int[] entries = new int[]{current};
+            int entryCount = 1;
+            for (int l = Math.min(level, currentMaxLevel); l >= 0; l--) {
+                TopKCollector found = searchLevel(this, scorer, entries, entryCount, efConstruction, l, visited, buffer);
+                found.sort();
+                int[] selected = selectNeighbours(found, maxLinks(l), row);
+                for (int neighbour : selected) {
+                    link(row, neighbour, l);
+                    link(neighbour, row, l);
+                }
+                entries = new int[found.size()];
+                for (int i = 0; i < found.size(); i++) {
+                    entries[i] = (int) found.id(i);
+                }
+                entryCount = entries.length;
+            }
+            if (level > currentMaxLevel) {
+                synchronized (this) {
+                    if (level > maxLevel) {
+                        maxLevel = level;
+                        entryPoint = row;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Neighbour selection heuristic: a candidate (best first) is kept if
+         * it is more similar to the row than to any of the kept candidates,
+         * which keeps links towards different directions.
+         */
+        private int[] selectNeighbours(TopKCollector sorted, int max, int row) {
+            int[] selected = new int[Math.min(max, sorted.size())];
+            int count = 0;
+            for (int i = 0; i < sorted.size() && count < selected.length; i++) {
+                int candidate = (int) sorted.id(i);
+                if (candidate != row && isDiverse(candidate, sorted.score(i), selected, count)) {
+                    selected[count++] = candidate;
+                }
+            }
+            return Arrays.copyOf(selected, count);
+        }
+
+        private boolean isDiverse(int candidate, float score, int[] selected, int count) {
+            for (int j = 0; j < count; j++) {
+                if (similarity(store.dot(candidate, selected[j]), norms[candidate], norms[selected[j]]) > score) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void link(int row, int neighbour, int level) {
+            int max = maxLinks(level);
+            synchronized (lock(row)) {
+                int[] links = links(row, level);
+                int offset = offset(row, level);
+                int count = links[offset];
+                for (int i = 0; i < count; i++) {
+                    if (links[offset + 1 + i] == neighbour) {
+                        return;
+                    }
+                }
+                if (count < max) {
+                    links[offset + 1 + count] = neighbour;
+                    links[offset] = count + 1;
+                    return;
+                }
+                TopKCollector candidates = new TopKCollector(max + 1, Float.NEGATIVE_INFINITY);
+                candidates.offer(neighbour, similarity(store.dot(row, neighbour), norms[row], norms[neighbour]));
+                for (int i = 0; i < count; i++) {
+                    int other = links[offset + 1 + i];
+                    candidates.offer(other, similarity(store.dot(row, other), norms[row], norms[other]));
+                }
+                candidates.sort();
+                int[] selected = selectNeighbours(candidates, max, row);
+                System.arraycopy(selected, 0, links, offset + 1, selected.length);
+                links[offset] = selected.length;
+            }
+        }
+
+        @Override
+        public int neighbours(int row, int level, int[] buffer) {
+            synchronized (lock(row)) {
+                int[] links = links(row, level);
+                if (links == null) {
+                    return 0;
+                }
+                int offset = offset(row, level);
+                int count = links[offset];
+                System.arraycopy(links, offset + 1, buffer, 0, count);
+                return count;
+            }
+        }
+
+        private int maxLinks(int level) {
+            return level == 0 ? 2 * m : m;
+        }
+
+        /**
+         * The bottom level lists are split in chunks of rows, so that the
+         * arrays stay below the maximum array size.
+         */
+        private int[] links(int row, int level) {
+            return level == 0 ? bottom[row >>> CHUNK_SHIFT] : upper[row];
+        }
+
+        private int offset(int row, int level) {
+            return level == 0 ? (row & (CHUNK_ROWS - 1)) * (2 * m + 1) : (level - 1) * (m + 1);
+        }
+
+        private Object lock(int row) {
+            return locks[row & (LOCK_STRIPES - 1)];
+        }
+
+        void write(File directory) throws IOException {
+            File file = new File(directory, INDEX_FILE);
+            File tmpFile = new File(directory, INDEX_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20))) {
+                ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int value : new int[]{MAGIC, VERSION, store.size(), m, Math.max(0, maxLevel), Math.max(0, entryPoint)}) {
+                    writeInt(out, buffer, value);
+                }
+                for (int[] chunk : bottom) {
+                    for (int value : chunk) {
+                        writeInt(out, buffer, value);
+                    }
+                }
+                out.write(levels);
+                for (int[] links : upper) {
+                    if (links != null) {
+                        for (int value : links) {
+                            writeInt(out, buffer, value);
+                        }
+                    }
+                }
+            }
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Cannot create " + file);
+            }
+        }
+
+        private static void writeInt(DataOutputStream out, ByteBuffer buffer, int value) throws IOException {
+            buffer.clear();
+            buffer.putInt(value);
+            out.write(buffer.array());
+        }
+    }
+}
@@ -16,17 +16,15 @@
 package com.graphaware.nlp.ml.word2vec;
 
 import com.graphaware.nlp.util.TypeConverter;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.FSDirectory;
 import org.slf4j.LoggerFactory;
@@ -59,11 +57,9 @@ public class Word2VecIndexLookup {
 
     public double[] searchIndex(String searchString) {
         try {
-            Analyzer analyzer = new KeywordAnalyzer();
-            QueryParser queryParser = new QueryParser(Word2VecIndexCreator.WORD_FIELD, analyzer);
-            Query query = queryParser.parse(searchString.replace(" ", "_"));
+            Query query = new TermQuery(new Term(Word2VecIndexCreator.WORD_FIELD, searchString.replace(" ", "_")));
             TopDocs searchResult = indexSearcher.search(query, 1);
-            LOG.info("Searching for '" + searchString + "'. Number of hits: " + searchResult.totalHits);
+            LOG.debug("Searching for '" + searchString + "'. Number of hits: " + searchResult.totalHits);
             if (searchResult.totalHits != 1) {
                 return null;
             }
@@ -71,7 +67,7 @@ public class Word2VecIndexLookup {
             Document hitDoc = indexSearcher.doc(hit.doc);
             StoredField binaryVector = (StoredField) hitDoc.getField(Word2VecIndexCreator.VECTOR_FIELD);
             return TypeConverter.toDoubleArray(binaryVector.binaryValue().bytes);
-        } catch (ParseException | IOException ex) {
+        } catch (IOException ex) {
             LOG.error("Error while getting word2vec for " + searchString, ex);
         }
         return null;
@@ -15,52 +15,223 @@
  */
 package com.graphaware.nlp.ml.word2vec;
 
+import com.graphaware.nlp.ml.similarity.TopKCollector;
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Word embedding models loaded from the files in
+ * <code>import/word2vecSource/</code>. Each file is imported once into an
+ * {@link EmbeddingStore} in <code>import/word2vecStore/&lt;model&gt;</code>,
+ * where the model name is the part of the file name before the first '-'.
+ * Existing stores are opened at startup, missing ones are imported in the
+ * background, with the configured {@link VectorEncoding}, and the model is
+ * available once its import completes. Lookups
+ * go through a per-model {@link EmbeddingCache}. A {@link HnswIndex} is
+ * then opened, or built in the background, for nearest neighbour queries;
+ * until it is available they fall back to a full scan of the store.
+ */
 public class Word2VecModel {
     private static final Logger LOG = LoggerFactory.getLogger(Word2VecModel.class);
 
     protected static final String IMPORT_DIRECTORY = "import/";
     protected static final String WORD2VEC_SOURCE_DIRECTORY = IMPORT_DIRECTORY + "word2vecSource/";
-    protected static final String WORD2VEC_DEST_DIRECTORY = IMPORT_DIRECTORY + "word2vecIndex/";
+    protected static final String WORD2VEC_DEST_DIRECTORY = IMPORT_DIRECTORY + "word2vecStore/";
 
-    private final Map<String, Word2VecIndexLookup> models;
-    private String defaultModel;
+    private final Map<String, EmbeddingCache> models;
+    private final Map<String, HnswIndex> indexes;
+    private final Set<String> importing;
+    private final VectorEncoding encoding;
+    private volatile String defaultModel;
 
     public Word2VecModel() {
-        models = new HashMap<>();
+        this(VectorEncoding.FLOAT32);
+    }
+
+    public Word2VecModel(VectorEncoding encoding) {
+        models = new ConcurrentHashMap<>();
+        indexes = new ConcurrentHashMap<>();
+        importing = ConcurrentHashMap.newKeySet();
+        this.encoding = encoding;
     }
 
     protected final void init() {
-        List<String> modelsName = Word2VecIndexCreator.inspectDirectoryAndLoad(WORD2VEC_SOURCE_DIRECTORY, WORD2VEC_DEST_DIRECTORY);
-        if (modelsName != null && modelsName.size() > 0) {
-            modelsName.forEach((modelName) -> {
-                LOG.info("Adding model: " + modelName);
-                Word2VecIndexLookup index = new Word2VecIndexLookup(WORD2VEC_DEST_DIRECTORY + modelName);
-                models.put(modelName, index);
-                if (defaultModel == null) {
-                    LOG.info("Setting default model to: " + modelName);
-                    defaultModel = modelName;
-                }
-            });
+        File[] files = new File(WORD2VEC_SOURCE_DIRECTORY).listFiles();
+        if (files == null) {
+            LOG.warn("No files in " + WORD2VEC_SOURCE_DIRECTORY + " for loading word2Vec");
+            return;
         }
+        ExecutorService importer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "word2vec-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            String modelName = file.getName().split("-")[0];
+            LOG.info("Custom models: Found file " + file.getName() + ". Assigned name: " + modelName);
+            if (models.containsKey(modelName) || importing.contains(modelName)) {
+                LOG.warn("Model " + modelName + " already loaded, skipping " + file.getName());
+                continue;
+            }
+            if (defaultModel == null) {
+                LOG.info("Setting default model to: " + modelName);
+                defaultModel = modelName;
+            }
+            File storeDirectory = new File(WORD2VEC_DEST_DIRECTORY + modelName);
+            if (EmbeddingStore.exists(storeDirectory)) {
+                load(modelName, file, storeDirectory);
+            } else {
+                importing.add(modelName);
+                importer.submit(() -> {
+                    try {
+                        load(modelName, file, storeDirectory);
+                    } finally {
+                        importing.remove(modelName);
+                    }
+                });
+            }
+            importer.submit(() -> loadIndex(modelName, storeDirectory));
+        }
+        importer.shutdown();
     }
 
-    public double[] getWordToVec(String lemma, String modelName) {
-        if (models.isEmpty()) {
+    private void loadIndex(String modelName, File storeDirectory) {
+        EmbeddingCache model = models.get(modelName);
+        if (model == null) {
+            return;
+        }
+        try {
+            if (HnswIndex.exists(storeDirectory)) {
+                addIndex(modelName, HnswIndex.open(model.getStore(), storeDirectory));
+            } else {
+                LOG.info("Building HNSW index for model " + modelName);
+                addIndex(modelName, HnswIndex.build(model.getStore(), storeDirectory, HnswIndex.DEFAULT_M,
+                        HnswIndex.DEFAULT_EF_CONSTRUCTION, Runtime.getRuntime().availableProcessors()));
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Error loading HNSW index for model " + modelName, ex);
+        }
+    }
+
+    private void load(String modelName, File source, File storeDirectory) {
+        try {
+            addModel(modelName, loadStore(source, storeDirectory, encoding));
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Error loading Word2Vec: " + source, ex);
+        }
+    }
+
+    protected static EmbeddingStore loadStore(File source, File storeDirectory, VectorEncoding encoding) throws IOException {
+        if (EmbeddingStore.exists(storeDirectory)) {
+            return EmbeddingStore.open(storeDirectory);
+        }
+        LOG.info("Importing " + source + " into " + storeDirectory);
+        return new EmbeddingImporter(Runtime.getRuntime().availableProcessors(), encoding).importFile(source, storeDirectory);
+    }
+
+    protected void addModel(String modelName, EmbeddingStore store) {
+        LOG.info("Adding model: " + modelName);
+        models.put(modelName, new EmbeddingCache(store));
+        if (defaultModel == null) {
+            LOG.info("Setting default model to: " + modelName);
+            defaultModel = modelName;
+        }
+    }
+
+    protected void addIndex(String modelName, HnswIndex index) {
+        indexes.put(modelName, index);
+    }
+
+    public EmbeddingCache getModel(String modelName) {
+        String name = modelName == null ? defaultModel : modelName;
+        if (name == null) {
             return null;
         }
-        if (modelName == null) {
-            return models.get(defaultModel).searchIndex(lemma);
-        } else if (models.containsKey(modelName)) {
-            return models.get(modelName).searchIndex(lemma);
+        if (importing.contains(name)) {
+            LOG.warn("Model " + name + " is still being imported");
         }
-        return null;
+        return models.get(name);
+    }
+
+    public boolean isImporting(String modelName) {
+        return importing.contains(modelName == null ? defaultModel : modelName);
+    }
+
+    public double[] getWordToVec(String lemma, String modelName) {
+        EmbeddingCache model = getModel(modelName);
+        return model == null ? null : model.get(lemma);
+    }
+
+    /**
+     * @return the vectors of the given words that are in the model, keyed
+     * by word
+     */
+    public Map<String, double[]> getWordToVec(Collection<String> lemmas, String modelName) {
+        EmbeddingCache model = getModel(modelName);
+        return model == null ? Collections.emptyMap() : model.getAll(lemmas);
+    }
+
+    /**
+     * @return the (at most) <code>k</code> words of the model most similar
+     * (cosine) to the given one, best first; empty if the word is not in
+     * the model
+     */
+    public Map<String, Double> getNearestNeighbours(String word, int k, String modelName) {
+        EmbeddingCache model = getModel(modelName);
+        if (model == null) {
+            return Collections.emptyMap();
+        }
+        int row = model.getStore().rowOf(word);
+        if (row < 0) {
+            return Collections.emptyMap();
+        }
+        return getNearestNeighbours(model.getStore(), model.getStore().getVector(row), k, row, modelName);
+    }
+
+    public Map<String, Double> getNearestNeighbours(double[] vector, int k, String modelName) {
+        EmbeddingCache model = getModel(modelName);
+        if (model == null) {
+            return Collections.emptyMap();
+        }
+        return getNearestNeighbours(model.getStore(), vector, k, -1, modelName);
+    }
+
+    private Map<String, Double> getNearestNeighbours(EmbeddingStore store, double[] vector, int k, int excludedRow, String modelName) {
+        HnswIndex index = indexes.get(modelName == null ? defaultModel : modelName);
+        TopKCollector topK;
+        if (index != null) {
+            topK = index.search(vector, k + 1, Math.max(HnswIndex.DEFAULT_EF_SEARCH, k + 1));
+        } else {
+            LOG.warn("No HNSW index available for model " + (modelName == null ? defaultModel : modelName) + ", scanning all the vectors");
+            topK = HnswIndex.scan(store, vector, k + 1);
+        }
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < topK.size() && result.size() < k; i++) {
+            if (topK.id(i) != excludedRow) {
+                result.put(store.getWord((int) topK.id(i)), (double) topK.score(i));
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats(String modelName) {
+        EmbeddingCache model = getModel(modelName);
+        return model == null ? Collections.emptyMap() : model.getStats();
     }
 
 }
@@ -17,10 +17,13 @@ package com.graphaware.nlp.ml.word2vec;
 
 import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.annotation.NLPModuleExtension;
+import com.graphaware.nlp.configuration.SettingsConstants;
 import com.graphaware.nlp.domain.Tag;
 import com.graphaware.nlp.dsl.request.Word2VecRequest;
 import com.graphaware.nlp.extension.AbstractExtension;
 import com.graphaware.nlp.extension.NLPExtension;
+import com.graphaware.nlp.ml.similarity.QuantizedVectors;
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.processor.TextProcessor;
 import org.neo4j.graphdb.Node;
@@ -43,10 +46,26 @@ public class Word2VecProcessor extends AbstractExtension implements NLPExtension
 
     @Override
     public void postLoaded() {
-        word2VecModel = new Word2VecModel();
+        word2VecModel = new Word2VecModel(getStoreEncoding());
         word2VecModel.init();
     }
 
+    private VectorEncoding getStoreEncoding() {
+        if (!getConfiguration().hasSettingValue(SettingsConstants.WORD2VEC_STORE_ENCODING)) {
+            return VectorEncoding.FLOAT32;
+        }
+        try {
+            return VectorEncoding.fromName(String.valueOf(getConfiguration().getSettingValueFor(SettingsConstants.WORD2VEC_STORE_ENCODING)));
+        } catch (RuntimeException e) {
+            LOG.warn("Invalid value for setting " + SettingsConstants.WORD2VEC_STORE_ENCODING + ", using float32");
+            return VectorEncoding.FLOAT32;
+        }
+    }
+
+    public Word2VecModel getWord2VecModel() {
+        return word2VecModel;
+    }
+
     public int attach(Word2VecRequest request) {
         try {
             Iterator<Node> tagsIterator;
@@ -81,19 +100,17 @@ public class Word2VecProcessor extends AbstractExtension implements NLPExtension
                     tags.add(tag);
                 }
             }
-            List<Tag> extendedTags = new ArrayList<>();
+            Set<String> lemmas = new HashSet<>();
+            tags.forEach((tag) -> lemmas.add(tag.getLemma().toLowerCase()));
+            Map<String, double[]> vectors = word2VecModel.getWordToVec(lemmas, request.getModelName());
+            LOG.debug("Found " + vectors.size() + " vectors for " + lemmas.size() + " words");
+            AtomicInteger affectedTag = new AtomicInteger(0);
             tags.stream().forEach((tag) -> {
-                LOG.info("Searching for: " + tag.getLemma().toLowerCase());
-                double[] vector = word2VecModel.getWordToVec(tag.getLemma().toLowerCase(), request.getModelName());
+                double[] vector = vectors.get(tag.getLemma().toLowerCase());
                 if (vector != null) {
                     tag.addProperties(request.getPropertyName(), vector);
-                    extendedTags.add(tag);
-                }
-            });
-            AtomicInteger affectedTag = new AtomicInteger(0);
-            extendedTags.stream().forEach((newTag) -> {
-                if (newTag != null) {
-                    getPersister(Tag.class).getOrCreate(newTag, newTag.getId(), String.valueOf(System.currentTimeMillis()));
+                    Node tagNode = getPersister(Tag.class).getOrCreate(tag, tag.getId(), String.valueOf(System.currentTimeMillis()));
+                    QuantizedVectors.write(tagNode, request.getPropertyName(), vector, request.getEncoding());
                     affectedTag.incrementAndGet();
                 }
             });
@@ -52,6 +52,22 @@ public class NLPModule extends BaseTxDrivenModule<Void> {
         nlpManager.init(database, nlpMLConfiguration);
     }
 
+    @Override
+    public void start(GraphDatabaseService database) {
+        super.start(database);
+        if (nlpManager != null) {
+            nlpManager.start();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (nlpManager != null) {
+            nlpManager.shutdown();
+        }
+        super.shutdown();
+    }
+
     public NLPConfiguration getNlpMLConfiguration() {
         return nlpMLConfiguration;
     }
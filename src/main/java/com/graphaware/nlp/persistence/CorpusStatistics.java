@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.common.kv.GraphKeyValueStore;
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import com.graphaware.nlp.persistence.constants.Relationships;
+import com.graphaware.nlp.util.TransactionUtils;
+import com.graphaware.tx.event.improved.api.ImprovedTransactionData;
+import org.neo4j.graphdb.*;
+import org.neo4j.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Document count of the corpus and document frequency of every tag (number
+ * of AnnotatedText nodes having at least one sentence with the tag),
+ * maintained incrementally when annotated texts are persisted or deleted, so
+ * that IDF lookups do not need to traverse the documents of a tag.
+ * <p>
+ * The frequencies are stored on the Tag nodes, and the tags counted for a
+ * document on the AnnotatedText node, so that its contribution can be
+ * reverted when it is re-annotated or deleted. The document count is read
+ * from the label counts, again after every commit that added or deleted
+ * documents, so concurrent transactions neither lose each other's updates
+ * nor lock a shared node; the {@link GraphKeyValueStore} only records that
+ * the statistics were built. Values changed by a transaction are kept with
+ * that transaction, published to the in-memory maps when it commits and
+ * discarded when it rolls back, whether or not a commit was attempted.
+ */
+public class CorpusStatistics {
+
+    private static final Log LOG = LoggerFactory.getLogger(CorpusStatistics.class);
+
+    public static final String DOCUMENT_COUNT_KEY = "GA__NLP__CORPUS__documentCount";
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final long DELETED = -1L;
+
+    private final GraphDatabaseService database;
+    private final DynamicConfiguration configuration;
+    private final GraphKeyValueStore keyValueStore;
+
+    private final Map<Long, Long> documentFrequencies = new ConcurrentHashMap<>();
+    private final AtomicLong documentCount = new AtomicLong(0);
+    private final AtomicBoolean documentCountOutdated = new AtomicBoolean(false);
+
+    private final ThreadLocal<PendingChanges> pendingChanges = new ThreadLocal<>();
+
+    public CorpusStatistics(GraphDatabaseService database, DynamicConfiguration configuration) {
+        this.database = database;
+        this.configuration = configuration;
+        this.keyValueStore = new GraphKeyValueStore(database);
+    }
+
+    /**
+     * Loads the document count, building the statistics from the graph the
+     * first time.
+     */
+    public void initialize() {
+        boolean built;
+        try (Transaction tx = database.beginTx()) {
+            built = keyValueStore.hasKey(DOCUMENT_COUNT_KEY);
+            tx.success();
+        }
+        if (built) {
+            documentCountOutdated.set(true);
+        } else {
+            rebuild();
+        }
+    }
+
+    /**
+     * The statistics read by a thread include the changes of its current
+     * transaction.
+     */
+    public long getDocumentCount() {
+        PendingChanges pending = pendingChanges.get();
+        if (pending != null && pending.documentsChanged) {
+            if (pending.documentCount == null) {
+                pending.documentCount = countDocuments();
+            }
+            return pending.documentCount;
+        }
+        if (documentCountOutdated.getAndSet(false)) {
+            documentCount.set(countDocuments());
+        }
+        return documentCount.get();
+    }
+
+    public long getDocumentFrequency(long tagNodeId) {
+        PendingChanges pending = pendingChanges.get();
+        Long frequency = pending != null ? pending.frequencies.get(tagNodeId) : null;
+        if (frequency != null) {
+            return Math.max(0L, frequency);
+        }
+        frequency = documentFrequencies.get(tagNodeId);
+        if (frequency != null) {
+            return frequency;
+        }
+        try (Transaction tx = database.beginTx()) {
+            Node tag = database.getNodeById(tagNodeId);
+            if (tag.hasProperty(frequencyKey())) {
+                frequency = ((Number) tag.getProperty(frequencyKey())).longValue();
+            } else {
+                frequency = countDocuments(tag);
+                refreshDocumentCount();
+            }
+            tx.success();
+        } catch (NotFoundException e) {
+            return 0L;
+        }
+        documentFrequencies.put(tagNodeId, frequency);
+        return frequency;
+    }
+
+    /**
+     * Used for tags that were not counted, i.e. written to the graph without
+     * going through the persister: the document count is synchronized with
+     * the label counts as well, since those documents are missing from it.
+     */
+    private long countDocuments(Node tag) {
+        RelationshipType containsSentence = configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE);
+        RelationshipType hasTag = configuration.getRelationshipFor(Relationships.HAS_TAG);
+        Set<Long> documents = new HashSet<>();
+        for (Relationship sentence : tag.getRelationships(Direction.INCOMING, hasTag)) {
+            for (Relationship document : sentence.getStartNode().getRelationships(Direction.INCOMING, containsSentence)) {
+                documents.add(document.getStartNodeId());
+            }
+        }
+        return documents.size();
+    }
+
+    private void refreshDocumentCount() {
+        documentCountOutdated.set(true);
+    }
+
+    public Map<Long, Long> getDocumentFrequencies(Collection<Long> tagNodeIds) {
+        Map<Long, Long> frequencies = new HashMap<>();
+        tagNodeIds.forEach(tagNodeId -> frequencies.put(tagNodeId, getDocumentFrequency(tagNodeId)));
+        return frequencies;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documentCount", getDocumentCount());
+        stats.put("cachedTags", documentFrequencies.size());
+        return stats;
+    }
+
+    /**
+     * Updates the statistics for an annotated text persisted in the current
+     * transaction: the document is counted if it was not already, and the
+     * frequencies of the tags it gained or lost are updated.
+     */
+    public void documentPersisted(Node annotatedText) {
+        long[] previous = (long[]) annotatedText.getProperty(countedTagsKey(), null);
+        long[] current = getTags(annotatedText);
+        Set<Long> previousTags = toSet(previous);
+        Set<Long> currentTags = toSet(current);
+        for (long tag : current) {
+            if (!previousTags.contains(tag)) {
+                updateFrequency(tag, 1);
+            }
+        }
+        for (long tag : previousTags) {
+            if (!currentTags.contains(tag)) {
+                updateFrequency(tag, -1);
+            }
+        }
+        annotatedText.setProperty(countedTagsKey(), current);
+        if (previous == null) {
+            documentsChanged();
+        }
+    }
+
+    /**
+     * Reverts the contribution of the annotated texts deleted in the
+     * committing transaction.
+     */
+    public void transactionCommitting(ImprovedTransactionData transactionData) {
+        boolean documentDeleted = false;
+        String label = configuration.getLabelFor(Labels.AnnotatedText).name();
+        for (Node deleted : transactionData.getAllDeletedNodes()) {
+            if (!deleted.hasLabel(Label.label(label))) {
+                continue;
+            }
+            documentDeleted = true;
+            long[] counted = (long[]) deleted.getProperty(countedTagsKey(), null);
+            if (counted == null) {
+                continue;
+            }
+            for (long tag : counted) {
+                updateFrequency(tag, -1);
+            }
+        }
+        if (documentDeleted) {
+            documentsChanged();
+        }
+    }
+
+    /**
+     * Recomputes all the statistics from the graph. Annotated texts persisted
+     * concurrently may be counted twice or not at all.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, Long> frequencies = new HashMap<>();
+        List<Long> documents = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            database.findNodes(configuration.getLabelFor(Labels.AnnotatedText)).forEachRemaining(node -> documents.add(node.getId()));
+            tx.success();
+        }
+        for (int from = 0; from < documents.size(); from += REBUILD_BATCH_SIZE) {
+            try (Transaction tx = database.beginTx()) {
+                for (long documentId : documents.subList(from, Math.min(documents.size(), from + REBUILD_BATCH_SIZE))) {
+                    Node document = database.getNodeById(documentId);
+                    long[] tags = getTags(document);
+                    for (long tag : tags) {
+                        frequencies.merge(tag, 1L, Long::sum);
+                    }
+                    document.setProperty(countedTagsKey(), tags);
+                }
+                tx.success();
+            }
+        }
+        List<Long> tags = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            database.findNodes(configuration.getLabelFor(Labels.Tag)).forEachRemaining(node -> tags.add(node.getId()));
+            tx.success();
+        }
+        for (int from = 0; from < tags.size(); from += REBUILD_BATCH_SIZE) {
+            try (Transaction tx = database.beginTx()) {
+                for (long tagId : tags.subList(from, Math.min(tags.size(), from + REBUILD_BATCH_SIZE))) {
+                    database.getNodeById(tagId).setProperty(frequencyKey(), frequencies.getOrDefault(tagId, 0L));
+                }
+                tx.success();
+            }
+        }
+        try (Transaction tx = database.beginTx()) {
+            keyValueStore.set(DOCUMENT_COUNT_KEY, (long) documents.size());
+            tx.success();
+        }
+        documentFrequencies.clear();
+        documentFrequencies.putAll(frequencies);
+        documentCount.set(documents.size());
+        documentCountOutdated.set(false);
+        LOG.info("Corpus statistics rebuilt for " + documents.size() + " documents and " + tags.size() + " tags in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Locks the tag before reading its frequency, so that concurrent
+     * transactions do not lose each other's updates. The transaction is
+     * nested in the caller's one, so it is marked successful for deleted
+     * tags too, which would otherwise roll the caller back.
+     */
+    private void updateFrequency(long tagNodeId, long delta) {
+        try (Transaction tx = database.beginTx()) {
+            Node tag;
+            try {
+                tag = database.getNodeById(tagNodeId);
+            } catch (NotFoundException e) {
+                pending().frequencies.put(tagNodeId, DELETED);
+                tx.success();
+                return;
+            }
+            tx.acquireWriteLock(tag);
+            long frequency = Math.max(0L, ((Number) tag.getProperty(frequencyKey(), 0L)).longValue() + delta);
+            tag.setProperty(frequencyKey(), frequency);
+            pending().frequencies.put(tagNodeId, frequency);
+            tx.success();
+        }
+    }
+
+    /**
+     * The count of the current transaction is read from the label counts,
+     * which include its changes, the next time it is needed.
+     */
+    private void documentsChanged() {
+        PendingChanges pending = pending();
+        pending.documentsChanged = true;
+        pending.documentCount = null;
+    }
+
+    /**
+     * The changes of the transaction bound to the current thread, created the
+     * first time it changes the statistics. They are published or discarded
+     * by a close listener of the kernel transaction, which is notified on
+     * every rollback, unlike the transaction event handlers which are only
+     * called when a commit was attempted.
+     */
+    private PendingChanges pending() {
+        PendingChanges pending = pendingChanges.get();
+        if (pending == null) {
+            PendingChanges changes = new PendingChanges();
+            TransactionUtils.registerCloseListener(database, transactionId -> transactionClosed(changes, transactionId));
+            pendingChanges.set(changes);
+            pending = changes;
+        }
+        return pending;
+    }
+
+    private void transactionClosed(PendingChanges changes, long transactionId) {
+        if (pendingChanges.get() == changes) {
+            pendingChanges.remove();
+        }
+        if (!TransactionUtils.isCommitted(transactionId)) {
+            return;
+        }
+        changes.frequencies.forEach((tag, frequency) -> {
+            if (frequency == DELETED) {
+                documentFrequencies.remove(tag);
+            } else {
+                documentFrequencies.put(tag, frequency);
+            }
+        });
+        if (changes.documentsChanged) {
+            documentCountOutdated.set(true);
+        }
+    }
+
+    private long countDocuments() {
+        String label = configuration.getLabelFor(Labels.AnnotatedText).name();
+        Result result = database.execute("MATCH (n:`" + label + "`) RETURN count(n) AS count");
+        return ((Number) result.next().get("count")).longValue();
+    }
+
+    private long[] getTags(Node annotatedText) {
+        RelationshipType containsSentence = configuration.getRelationshipFor(Relationships.CONTAINS_SENTENCE);
+        RelationshipType hasTag = configuration.getRelationshipFor(Relationships.HAS_TAG);
+        Set<Long> tags = new HashSet<>();
+        for (Relationship sentence : annotatedText.getRelationships(Direction.OUTGOING, containsSentence)) {
+            for (Relationship tag : sentence.getEndNode().getRelationships(Direction.OUTGOING, hasTag)) {
+                tags.add(tag.getEndNodeId());
+            }
+        }
+        return tags.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static Set<Long> toSet(long[] values) {
+        Set<Long> set = new HashSet<>();
+        if (values != null) {
+            for (long value : values) {
+                set.add(value);
+            }
+        }
+        return set;
+    }
+
+    private String frequencyKey() {
+        return configuration.getPropertyKeyFor(Properties.DOCUMENT_FREQUENCY);
+    }
+
+    private String countedTagsKey() {
+        return configuration.getPropertyKeyFor(Properties.COUNTED_TAGS);
+    }
+
+    private static class PendingChanges {
+
+        private final Map<Long, Long> frequencies = new HashMap<>();
+        private boolean documentsChanged;
+        private Long documentCount;
+    }
+}
@@ -30,10 +30,16 @@ public class PersistenceRegistry {
 
     private final Map<Class, Persister> registeredPersisters = new HashMap<>();
 
+    private final TagNodeCache tagNodeCache;
+
+    private final CorpusStatistics corpusStatistics;
+
     public PersistenceRegistry(GraphDatabaseService databaseService, DynamicConfiguration configuration) {
-        register(Tag.class, new TagPersister(databaseService, configuration, this));
+        tagNodeCache = new TagNodeCache(databaseService);
+        corpusStatistics = new CorpusStatistics(databaseService, configuration);
+        register(Tag.class, new TagPersister(databaseService, configuration, this, tagNodeCache));
         register(Sentence.class, new SentencePersister(databaseService, configuration, this));
-        register(AnnotatedText.class, new AnnotatedTextPersister(databaseService, configuration, this));
+        register(AnnotatedText.class, new AnnotatedTextPersister(databaseService, configuration, this, corpusStatistics));
         register(Keyword.class, new KeywordPersister(databaseService, configuration, this));
     }
 
@@ -45,4 +51,12 @@ public class PersistenceRegistry {
         return registeredPersisters.get(clazz);
     }
 
+    public TagNodeCache getTagNodeCache() {
+        return tagNodeCache;
+    }
+
+    public CorpusStatistics getCorpusStatistics() {
+        return corpusStatistics;
+    }
+
 }
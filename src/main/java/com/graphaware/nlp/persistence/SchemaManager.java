@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.configuration.DynamicConfiguration;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Properties;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates the indexes backing the lookups done by the persisters, on the
+ * labels and property keys resolved through the {@link DynamicConfiguration}
+ * (so that relabelled graphs are indexed as well), and reports their state.
+ */
+public class SchemaManager {
+
+    private static final Log LOG = LoggerFactory.getLogger(SchemaManager.class);
+
+    public static final String STATE_MISSING = "MISSING";
+
+    private final GraphDatabaseService database;
+    private final DynamicConfiguration configuration;
+
+    public SchemaManager(GraphDatabaseService database, DynamicConfiguration configuration) {
+        this.database = database;
+        this.configuration = configuration;
+    }
+
+    public List<IndexStatus> getRequiredIndexes() {
+        return Arrays.asList(
+                new IndexStatus(configuration.getLabelFor(Labels.AnnotatedText), Properties.PROPERTY_ID),
+                new IndexStatus(configuration.getLabelFor(Labels.Sentence), configuration.getPropertyKeyFor(Properties.PROPERTY_ID)),
+                new IndexStatus(configuration.getLabelFor(Labels.Tag), configuration.getPropertyKeyFor(Properties.PROPERTY_ID)),
+                new IndexStatus(configuration.getLabelFor(Labels.Phrase), configuration.getPropertyKeyFor(Properties.CONTENT_VALUE)),
+                new IndexStatus(configuration.getLabelFor(Labels.Keyword), Properties.PROPERTY_ID)
+        );
+    }
+
+    public void createMissingIndexes() {
+        try (Transaction tx = database.beginTx()) {
+            Schema schema = database.schema();
+            for (IndexStatus required : getRequiredIndexes()) {
+                if (findIndex(schema, required) == null) {
+                    LOG.info("Creating index on :" + required.getLabel() + "(" + required.getProperty() + ")");
+                    schema.indexFor(Label.label(required.getLabel())).on(required.getProperty()).create();
+                }
+            }
+            tx.success();
+        } catch (Exception e) {
+            LOG.error("Could not create the NLP indexes, lookups will fall back to label scans", e);
+        }
+    }
+
+    public List<IndexStatus> getStatus() {
+        List<IndexStatus> status = new ArrayList<>();
+        try (Transaction tx = database.beginTx()) {
+            Schema schema = database.schema();
+            for (IndexStatus required : getRequiredIndexes()) {
+                IndexDefinition index = findIndex(schema, required);
+                if (index != null) {
+                    required.setState(schema.getIndexState(index).name());
+                }
+                status.add(required);
+            }
+            tx.success();
+        }
+        return status;
+    }
+
+    /**
+     * Uniqueness constraints are backed by an index, which is returned here
+     * as well.
+     */
+    private IndexDefinition findIndex(Schema schema, IndexStatus required) {
+        for (IndexDefinition index : schema.getIndexes(Label.label(required.getLabel()))) {
+            if (isOnProperty(index.getPropertyKeys(), required.getProperty())) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isOnProperty(Iterable<String> keys, String property) {
+        List<String> all = new ArrayList<>();
+        keys.forEach(all::add);
+        return all.size() == 1 && all.get(0).equals(property);
+    }
+
+    public static class IndexStatus {
+
+        private final String label;
+        private final String property;
+        private String state = STATE_MISSING;
+
+        IndexStatus(Label label, String property) {
+            this.label = label.name();
+            this.property = property;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        void setState(String state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.persistence;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphaware.nlp.util.TransactionUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded, concurrent cache of tag id to Tag node id, used to skip the index
+ * seek for tags that are already in the graph.
+ * <p>
+ * Nodes created in a transaction are only visible to the thread that created
+ * them until the transaction commits, then they are published to the shared
+ * cache; they are discarded when it rolls back, whether or not a commit was
+ * attempted. Callers must still check that a cached node exists and is the
+ * expected tag, since deleted node ids are reused: a lookup only counts as a
+ * hit once the caller has resolved the node.
+ */
+public class TagNodeCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+    private final GraphDatabaseService database;
+    private final Cache<String, Long> cache;
+
+    private final ThreadLocal<Map<String, Long>> created = new ThreadLocal<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public TagNodeCache(GraphDatabaseService database) {
+        this(database, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public TagNodeCache(GraphDatabaseService database, long maximumSize) {
+        this.database = database;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * @param resolver returns the tag for the cached node id, or null if the
+     * node is not the expected tag any more, in which case the entry is
+     * invalidated
+     * @return the resolved tag, or null if it is not cached
+     */
+    public <T> T get(String tagId, LongFunction<T> resolver) {
+        Map<String, Long> nodes = created.get();
+        Long nodeId = nodes != null ? nodes.get(tagId) : null;
+        if (nodeId == null) {
+            nodeId = cache.getIfPresent(tagId);
+        }
+        if (nodeId != null) {
+            T resolved = resolver.apply(nodeId);
+            if (resolved != null) {
+                hits.incrementAndGet();
+                return resolved;
+            }
+            invalidate(tagId);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String tagId, long nodeId) {
+        cache.put(tagId, nodeId);
+    }
+
+    /**
+     * Keeps a node created in the transaction bound to the current thread
+     * until the transaction is closed.
+     */
+    public void putCreated(String tagId, long nodeId) {
+        Map<String, Long> nodes = created.get();
+        if (nodes == null) {
+            Map<String, Long> transactionNodes = new HashMap<>();
+            TransactionUtils.registerCloseListener(database, (transactionId) -> transactionClosed(transactionNodes, transactionId));
+            created.set(transactionNodes);
+            nodes = transactionNodes;
+        }
+        nodes.put(tagId, nodeId);
+    }
+
+    public void invalidate(String tagId) {
+        Map<String, Long> nodes = created.get();
+        if (nodes != null) {
+            nodes.remove(tagId);
+        }
+        cache.invalidate(tagId);
+        invalidations.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        Map<String, Long> nodes = created.get();
+        if (nodes != null) {
+            nodes.clear();
+        }
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", requests == 0 ? 0.0d : (double) hitCount / requests);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void transactionClosed(Map<String, Long> nodes, long transactionId) {
+        if (created.get() == nodes) {
+            created.remove();
+        }
+        if (TransactionUtils.isCommitted(transactionId)) {
+            cache.putAll(nodes);
+        } else {
+            invalidations.addAndGet(nodes.size());
+        }
+    }
+}
@@ -43,6 +43,11 @@ public final class Properties {
     public static final String NAMED_ENTITY_PREFIX = "NER_";
     public static final String PART_OF_SPEECH = "pos";
     public static final String LAST_TX_ID = "lastTxId";
+    public static final String TFIDF_INDICES = "tfidfIndices";
+    public static final String TFIDF_VALUES = "tfidfValues";
+    public static final String TFIDF_CORPUS_SIZE = "tfidfCorpusSize";
+    public static final String DOCUMENT_FREQUENCY = "documentFrequency";
+    public static final String COUNTED_TAGS = "countedTags";
 
     /**
      * Private constructor to prevent people from instantiating this class - it's not meant to be instantiated.
@@ -17,6 +17,7 @@ package com.graphaware.nlp.persistence.persisters;
 
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
+import com.graphaware.nlp.configuration.ConfigurationSnapshot;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import org.codehaus.jackson.map.SerializationConfig;
@@ -50,8 +51,13 @@ public abstract class AbstractPersister {
         return database;
     }
 
-    protected DynamicConfiguration configuration() {
-        return configuration;
+    /**
+     * @return the current label, relationship type and property key
+     * remappings; persisters that write many nodes keep the returned snapshot
+     * for the whole call instead of resolving it again for every write
+     */
+    protected ConfigurationSnapshot configuration() {
+        return configuration.getSnapshot();
     }
 
     protected ObjectMapper mapper() {
@@ -19,6 +19,7 @@ import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.persistence.CorpusStatistics;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
@@ -34,8 +35,15 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
 
     private static final Log LOG = LoggerFactory.getLogger(AnnotatedTextPersister.class);
 
+    private final CorpusStatistics corpusStatistics;
+
     public AnnotatedTextPersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry) {
+        this(database, dynamicConfiguration, registry, null);
+    }
+
+    public AnnotatedTextPersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry, CorpusStatistics corpusStatistics) {
         super(database, dynamicConfiguration, registry);
+        this.corpusStatistics = corpusStatistics;
     }
 
     @Override
@@ -45,17 +53,30 @@ public class AnnotatedTextPersister extends AbstractPersister implements Persist
         final Node annotatedTextNode;
         if (tmpAnnotatedNode != null) {
             annotatedTextNode = tmpAnnotatedNode;
+            removeFeatureVector(annotatedTextNode);
         } else {
             annotatedTextNode = getOrCreate(annotatedText, id, txId);
 
         }
         iterateSentencesAndStore(annotatedTextNode, annotatedText, id, txId);
+        if (corpusStatistics != null) {
+            corpusStatistics.documentPersisted(annotatedTextNode);
+        }
         tmpAnnotatedNode = annotatedTextNode;
 
         LOG.info("end storing annotatedText " + id);
         return tmpAnnotatedNode;
     }
 
+    /**
+     * The persisted TF-IDF vector of a re-annotated text is outdated.
+     */
+    private void removeFeatureVector(Node node) {
+        node.removeProperty(configuration().getPropertyKeyFor(Properties.TFIDF_INDICES));
+        node.removeProperty(configuration().getPropertyKeyFor(Properties.TFIDF_VALUES));
+        node.removeProperty(configuration().getPropertyKeyFor(Properties.TFIDF_CORPUS_SIZE));
+    }
+
     @Override
     public AnnotatedText fromNode(Node node) {
         if (!node.hasLabel(configuration().getLabelFor(Labels.AnnotatedText))) {
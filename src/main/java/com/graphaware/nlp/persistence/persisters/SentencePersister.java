@@ -15,6 +15,7 @@
  */
 package com.graphaware.nlp.persistence.persisters;
 
+import com.graphaware.nlp.configuration.ConfigurationSnapshot;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.domain.*;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
@@ -25,6 +26,7 @@ import com.graphaware.nlp.util.SentenceUtils;
 import org.neo4j.graphdb.*;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 public class SentencePersister extends AbstractPersister implements Persister<Sentence> {
@@ -35,20 +37,21 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
 
     @Override
     public Node persist(Sentence sentence, String id, String txId) {
+        ConfigurationSnapshot config = configuration();
         String sentenceId = String.format("%s_%s", id, sentence.getSentenceNumber());
-        Node sentenceNode = getIfExist(configuration().getLabelFor(Labels.Sentence), configuration().getPropertyKeyFor(Properties.PROPERTY_ID), sentenceId);
+        Node sentenceNode = getIfExist(config.getLabelFor(Labels.Sentence), config.getPropertyKeyFor(Properties.PROPERTY_ID), sentenceId);
         Node newSentenceNode;
         if (sentenceNode == null) {
-            newSentenceNode = getOrCreate(sentence, id, txId);
+            newSentenceNode = database.createNode(config.getLabelFor(Labels.Sentence));
         } else {
             newSentenceNode = sentenceNode;
         }
-        update(newSentenceNode, sentence, id);
-        storeSentenceTags(sentence, newSentenceNode, id, txId);
-        storeSentenceTagOccurrences(sentence, newSentenceNode, txId);
-        storeUniversalDependenciesForSentence(sentence, newSentenceNode);
-        storePhrases(sentence, newSentenceNode, txId);
-        assignSentimentLabel(sentence, newSentenceNode);
+        update(newSentenceNode, sentence, id, config);
+        Map<Tag, Node> tagNodes = storeSentenceTags(sentence, newSentenceNode, id, txId, config);
+        Map<String, Node> tokenNodes = storeSentenceTagOccurrences(sentence, newSentenceNode, tagNodes, txId, config);
+        storeUniversalDependenciesForSentence(sentence, tokenNodes, config);
+        storePhrases(sentence, newSentenceNode, txId, config);
+        assignSentimentLabel(sentence, newSentenceNode, config);
         sentenceNode = newSentenceNode;
 
         return sentenceNode;
@@ -87,165 +90,160 @@ public class SentencePersister extends AbstractPersister implements Persister<Se
 
     @Override
     public void update(Node node, Sentence sentence, String id) {
-        node.setProperty(configuration().getPropertyKeyFor(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.SENTENCE_NUMBER), sentence.getSentenceNumber());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.HASH), sentence.hash());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.TEXT), sentence.getSentence());
+        update(node, sentence, id, configuration());
     }
 
-    private void storeSentenceTags(Sentence sentence, Node sentenceNode, String id, String txId) {
+    private void update(Node node, Sentence sentence, String id, ConfigurationSnapshot config) {
+        node.setProperty(config.getPropertyKeyFor(Properties.PROPERTY_ID), String.format("%s_%s", id, sentence.getSentenceNumber()));
+        node.setProperty(config.getPropertyKeyFor(Properties.SENTENCE_NUMBER), sentence.getSentenceNumber());
+        node.setProperty(config.getPropertyKeyFor(Properties.HASH), sentence.hash());
+        node.setProperty(config.getPropertyKeyFor(Properties.TEXT), sentence.getSentence());
+    }
+
+    /**
+     * @return the Tag nodes by Tag instance, so that the tag occurrences
+     * referring to the same instance don't need to resolve it again
+     */
+    private Map<Tag, Node> storeSentenceTags(Sentence sentence, Node sentenceNode, String id, String txId, ConfigurationSnapshot config) {
+        Map<Tag, Node> tagNodes = new IdentityHashMap<>();
         sentence.getTags().forEach(tag -> {
             Node tagNode = getPersister(Tag.class).getOrCreate(tag, id, txId);
-            relateSentenceToTag(sentenceNode, tagNode, tag.getMultiplicity());
+            relateSentenceToTag(sentenceNode, tagNode, tag.getMultiplicity(), config);
+            tagNodes.put(tag, tagNode);
         });
+        return tagNodes;
     }
 
-    private void relateSentenceToTag(Node sentenceNode, Node tagNode, int multiplicity) {
-        Relationship rel = sentenceNode.createRelationshipTo(tagNode, configuration().getRelationshipFor(Relationships.HAS_TAG));
-        rel.setProperty(configuration().getPropertyKeyFor(Properties.TF), multiplicity);
+    private void relateSentenceToTag(Node sentenceNode, Node tagNode, int multiplicity, ConfigurationSnapshot config) {
+        Relationship rel = sentenceNode.createRelationshipTo(tagNode, config.getRelationshipFor(Relationships.HAS_TAG));
+        rel.setProperty(config.getPropertyKeyFor(Properties.TF), multiplicity);
     }
 
-    private void storePhrases(Sentence sentence, Node sentenceNode, String txId) {
+    private void storePhrases(Sentence sentence, Node sentenceNode, String txId, ConfigurationSnapshot config) {
         sentence.getPhraseOccurrences().values().forEach(phraseOccurrenceAtPosition -> {
             phraseOccurrenceAtPosition.values().forEach(occurrence -> {
-                Node phraseNode = getOrCreatePhrase(occurrence.getElement(), txId);
-                relateSentenceToPhrase(sentenceNode, phraseNode);
-                Node phraseOccurrenceNode = createPhraseOccurrence(occurrence);
-                relateSentenceToPhraseOccurrence(sentenceNode, phraseOccurrenceNode);
-                relatePhraseOccurrenceToPhrase(phraseOccurrenceNode, phraseNode);
+                Node phraseNode = getOrCreatePhrase(occurrence.getElement(), txId, config);
+                relateSentenceToPhrase(sentenceNode, phraseNode, config);
+                Node phraseOccurrenceNode = createPhraseOccurrence(occurrence, config);
+                relateSentenceToPhraseOccurrence(sentenceNode, phraseOccurrenceNode, config);
+                relatePhraseOccurrenceToPhrase(phraseOccurrenceNode, phraseNode, config);
             });
         });
     }
 
-    private void storeSentenceTagOccurrences(Sentence sentence, Node sentenceNode, String txId) {
+    /**
+     * @return the created TagOccurrence nodes by token id, used for storing
+     * the dependencies
+     */
+    private Map<String, Node> storeSentenceTagOccurrences(Sentence sentence, Node sentenceNode, Map<Tag, Node> tagNodes, String txId, ConfigurationSnapshot config) {
+        Map<String, Node> tokenNodes = new HashMap<>();
         sentence.getTagOccurrences().values().forEach(occurrence -> {
             for (TagOccurrence tagAtPosition : occurrence) {
-                Node tagNode = getPersister(Tag.class).getOrCreate(tagAtPosition.getElement(), null, txId);
-                Node tagOccurrenceNode = createTagOccurrenceNode(tagAtPosition);
-                relateTagOccurrenceToTag(tagOccurrenceNode, tagNode);
-                relateSentenceToTagOccurrence(sentenceNode, tagOccurrenceNode);
+                Node tagNode = tagNodes.get(tagAtPosition.getElement());
+                if (tagNode == null) {
+                    tagNode = getPersister(Tag.class).getOrCreate(tagAtPosition.getElement(), null, txId);
+                    tagNodes.put(tagAtPosition.getElement(), tagNode);
+                }
+                Node tagOccurrenceNode = createTagOccurrenceNode(tagAtPosition, config);
+                relateTagOccurrenceToTag(tagOccurrenceNode, tagNode, config);
+                relateSentenceToTagOccurrence(sentenceNode, tagOccurrenceNode, config);
+                tagAtPosition.getPartIds().forEach(tokenId -> tokenNodes.put(tokenId, tagOccurrenceNode));
             }
         });
+        return tokenNodes;
     }
 
-    private void relateSentenceToTagOccurrence(Node sentenceNode, Node tagOccurrenceNode) {
-        sentenceNode.createRelationshipTo(tagOccurrenceNode, configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE));
+    private void relateSentenceToTagOccurrence(Node sentenceNode, Node tagOccurrenceNode, ConfigurationSnapshot config) {
+        sentenceNode.createRelationshipTo(tagOccurrenceNode, config.getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE));
     }
 
-    private Node createTagOccurrenceNode(TagOccurrence occurrence) {
-        Node node = database.createNode(configuration().getLabelFor(Labels.TagOccurrence));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN), occurrence.getSpan().first());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_END), occurrence.getSpan().second());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH), occurrence.getElement().getPosAsArray());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.NAMED_ENTITY), occurrence.getElement().getNeAsArray());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), occurrence.getValue());
+    private Node createTagOccurrenceNode(TagOccurrence occurrence, ConfigurationSnapshot config) {
+        Node node = database.createNode(config.getLabelFor(Labels.TagOccurrence));
+        node.setProperty(config.getPropertyKeyFor(Properties.OCCURRENCE_BEGIN), occurrence.getSpan().first());
+        node.setProperty(config.getPropertyKeyFor(Properties.OCCURRENCE_END), occurrence.getSpan().second());
+        node.setProperty(config.getPropertyKeyFor(Properties.PART_OF_SPEECH), occurrence.getElement().getPosAsArray());
+        node.setProperty(config.getPropertyKeyFor(Properties.NAMED_ENTITY), occurrence.getElement().getNeAsArray());
+        node.setProperty(config.getPropertyKeyFor(Properties.TAG_ORIGINAL_VALUE), occurrence.getValue());
         return node;
     }
 
-    private void relateTagOccurrenceToTag(Node tagOccurrence, Node tag) {
-        tagOccurrence.createRelationshipTo(tag, configuration().getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG));
+    private void relateTagOccurrenceToTag(Node tagOccurrence, Node tag, ConfigurationSnapshot config) {
+        tagOccurrence.createRelationshipTo(tag, config.getRelationshipFor(Relationships.TAG_OCCURRENCE_TAG));
     }
 
-    private void storeUniversalDependenciesForSentence(Sentence sentence, Node sentenceNode) {
-        final Map<String, Long> tokenIdsToNodeIds = new HashMap<>();
-        sentence.getTagOccurrences().values().forEach(occurence -> {
-            occurence.forEach(tagOccurrence -> {
-                Node tagOccurrenceNode = getTagOccurrenceInSentence(sentenceNode, tagOccurrence);
-                if (tagOccurrenceNode == null) {
-                    throw new RuntimeException("Expected to find a TagOccurrence node, got null");
-                }
-                tagOccurrence.getPartIds().forEach(tokenId -> {
-                    tokenIdsToNodeIds.put(tokenId, tagOccurrenceNode.getId());
-                });
-            });
-        });
-
+    private void storeUniversalDependenciesForSentence(Sentence sentence, Map<String, Node> tokenNodes, ConfigurationSnapshot config) {
         sentence.getTypedDependencies().forEach(typedDependency -> {
-            if (!tokenIdsToNodeIds.containsKey(typedDependency.getSource()) || !tokenIdsToNodeIds.containsKey(typedDependency.getTarget())) {
-//                LOG.info("source: {} or target: {} for typed dependency not found", typedDependency.getSource(), typedDependency.getTarget());
+            Node sourceNode = tokenNodes.get(typedDependency.getSource());
+            Node targetNode = tokenNodes.get(typedDependency.getTarget());
+            if (sourceNode == null || targetNode == null) {
                 return;
             }
-
-            Node sourceNode = database.getNodeById(tokenIdsToNodeIds.get(typedDependency.getSource()));
-            Node targetNode = database.getNodeById(tokenIdsToNodeIds.get(typedDependency.getTarget()));
-            relateTypedDependencySourceAndTarget(sourceNode, targetNode, typedDependency);
+            relateTypedDependencySourceAndTarget(sourceNode, targetNode, typedDependency, config);
         });
     }
 
-    private void relateTypedDependencySourceAndTarget(Node source, Node target, TypedDependency typedDependency) {
+    private void relateTypedDependencySourceAndTarget(Node source, Node target, TypedDependency typedDependency, ConfigurationSnapshot config) {
         RelationshipType relationshipType = RelationshipType.withName(typedDependency.getName().toUpperCase());
         Relationship relationship = source.createRelationshipTo(target, relationshipType);
         if (null != typedDependency.getSpecific()) {
-            relationship.setProperty(configuration().getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), typedDependency.getSpecific());
+            relationship.setProperty(config.getPropertyKeyFor(Properties.DEPENDENCY_SPECIFIC), typedDependency.getSpecific());
         }
         if (relationshipType.name().equals("ROOT")) {
-            source.addLabel(configuration().getLabelFor(Labels.Root));
+            source.addLabel(config.getLabelFor(Labels.Root));
         }
     }
 
-    private void assignSentimentLabel(Sentence sentence, Node sentenceNode) {
+    private void assignSentimentLabel(Sentence sentence, Node sentenceNode, ConfigurationSnapshot config) {
         int sentiment = sentence.getSentiment();
         Label sentimentLabel = SentenceUtils.getDefaultLabelForSentimentLevel(sentiment);
         if (sentimentLabel == null) {
             return;
         }
-        sentenceNode.addLabel(configuration().getLabelFor(sentimentLabel));
-    }
-
-    private Node getTagOccurrenceInSentence(Node sentenceNode, TagOccurrence tagOccurrence) {
-        for (Relationship relationship : sentenceNode.getRelationships(configuration().getRelationshipFor(Relationships.SENTENCE_TAG_OCCURRENCE), Direction.OUTGOING)) {
-            Node otherNode = relationship.getEndNode();
-            if (otherNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_BEGIN)).equals(tagOccurrence.getSpan().first())
-                    && otherNode.getProperty(configuration().getPropertyKeyFor(Properties.OCCURRENCE_END)).equals(tagOccurrence.getSpan().second())) {
-                return otherNode;
-            }
-        }
-
-        return null;
+        sentenceNode.addLabel(config.getLabelFor(sentimentLabel));
     }
 
-    private void relateSentenceToPhrase(Node sentenceNode, Node phraseNode) {
+    private void relateSentenceToPhrase(Node sentenceNode, Node phraseNode, ConfigurationSnapshot config) {
         sentenceNode.createRelationshipTo(phraseNode,
-                configuration().getRelationshipFor(Relationships.HAS_PHRASE));
+                config.getRelationshipFor(Relationships.HAS_PHRASE));
     }
 
-    private void relatePhraseOccurrenceToPhrase(Node phraseOccurrenceNode, Node phraseNode) {
+    private void relatePhraseOccurrenceToPhrase(Node phraseOccurrenceNode, Node phraseNode, ConfigurationSnapshot config) {
         phraseOccurrenceNode.createRelationshipTo(phraseNode,
-                configuration().getRelationshipFor(Relationships.PHRASE_OCCURRENCE_PHRASE));
+                config.getRelationshipFor(Relationships.PHRASE_OCCURRENCE_PHRASE));
     }
 
-    private void relateSentenceToPhraseOccurrence(Node sentenceNode, Node phraseOccurrenceNode) {
+    private void relateSentenceToPhraseOccurrence(Node sentenceNode, Node phraseOccurrenceNode, ConfigurationSnapshot config) {
         sentenceNode.createRelationshipTo(phraseOccurrenceNode,
-                configuration().getRelationshipFor(Relationships.SENTENCE_PHRASE_OCCURRENCE));
+                config.getRelationshipFor(Relationships.SENTENCE_PHRASE_OCCURRENCE));
     }
 
-    private Node createPhraseOccurrence(PartOfTextOccurrence<Phrase> occurrence) {
-        Node node = database.createNode(configuration().getLabelFor(Labels.PhraseOccurrence));
-        node.setProperty(configuration().getPropertyKeyFor(Properties.START_POSITION), occurrence.getSpan().first());
-        node.setProperty(configuration().getPropertyKeyFor(Properties.END_POSITION), occurrence.getSpan().second());
+    private Node createPhraseOccurrence(PartOfTextOccurrence<Phrase> occurrence, ConfigurationSnapshot config) {
+        Node node = database.createNode(config.getLabelFor(Labels.PhraseOccurrence));
+        node.setProperty(config.getPropertyKeyFor(Properties.START_POSITION), occurrence.getSpan().first());
+        node.setProperty(config.getPropertyKeyFor(Properties.END_POSITION), occurrence.getSpan().second());
 
         return node;
     }
 
-    private Node getOrCreatePhrase(Phrase phrase, String txId) {
-        Node node = database.findNode(configuration().getLabelFor(Labels.Phrase),
-                configuration().getPropertyKeyFor(Properties.CONTENT_VALUE),
+    private Node getOrCreatePhrase(Phrase phrase, String txId, ConfigurationSnapshot config) {
+        Node node = database.findNode(config.getLabelFor(Labels.Phrase),
+                config.getPropertyKeyFor(Properties.CONTENT_VALUE),
                 phrase.getContent()
         );
 
         if (node == null) {
-            node = database.createNode(configuration().getLabelFor(Labels.Phrase));
-            updatePhrase(phrase, node);
+            node = database.createNode(config.getLabelFor(Labels.Phrase));
+            updatePhrase(phrase, node, config);
         } else {
-            updatePhrase(phrase, node);
+            updatePhrase(phrase, node, config);
         }
 
         return node;
     }
 
-    private void updatePhrase(Phrase phrase, Node phraseNode) {
-        phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.CONTENT_VALUE), phrase.getContent());
+    private void updatePhrase(Phrase phrase, Node phraseNode, ConfigurationSnapshot config) {
+        phraseNode.setProperty(config.getPropertyKeyFor(Properties.CONTENT_VALUE), phrase.getContent());
         String type = phrase.getType() != null ? phrase.getType() : NLPDefaultValues.PHRASE_TYPE;
-        phraseNode.setProperty(configuration().getPropertyKeyFor(Properties.PHRASE_TYPE), type);
+        phraseNode.setProperty(config.getPropertyKeyFor(Properties.PHRASE_TYPE), type);
     }
 }
@@ -18,6 +18,7 @@ package com.graphaware.nlp.persistence.persisters;
 import com.graphaware.nlp.configuration.DynamicConfiguration;
 import com.graphaware.nlp.domain.Tag;
 import com.graphaware.nlp.persistence.PersistenceRegistry;
+import com.graphaware.nlp.persistence.TagNodeCache;
 import com.graphaware.nlp.persistence.constants.Labels;
 import com.graphaware.nlp.persistence.constants.Properties;
 import com.graphaware.nlp.persistence.constants.Relationships;
@@ -26,13 +27,21 @@ import com.graphaware.nlp.util.TypeConverter;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 
 import java.util.*;
 
 public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
+    private final TagNodeCache tagNodeCache;
+
     public TagPersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry) {
+        this(database, dynamicConfiguration, registry, new TagNodeCache(database));
+    }
+
+    public TagPersister(GraphDatabaseService database, DynamicConfiguration dynamicConfiguration, PersistenceRegistry registry, TagNodeCache tagNodeCache) {
         super(database, dynamicConfiguration, registry);
+        this.tagNodeCache = tagNodeCache;
     }
 
     @Override
@@ -54,13 +63,11 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
 
     @Override
     public Node getOrCreate(Tag tag, String id, String txId) {
-        Node node = getIfExist(
-                configuration().getLabelFor(configuration().getLabelFor(Labels.Tag)),
-                configuration().getPropertyKeyFor(configuration().getPropertyKeyFor(Properties.PROPERTY_ID)),
-                tag.getId());
+        Node node = getTagNode(tag.getId());
 
         if (null == node) {
             node = database.createNode(configuration().getLabelFor(Labels.Tag));
+            tagNodeCache.putCreated(tag.getId(), node.getId());
         }
 
         if (shouldBeUpdated(tag, node)) {
@@ -78,6 +85,28 @@ public class TagPersister extends AbstractPersister implements Persister<Tag> {
         return node;
     }
 
+    private Node getTagNode(String tagId) {
+        Label label = configuration().getLabelFor(configuration().getLabelFor(Labels.Tag));
+        String idKey = configuration().getPropertyKeyFor(configuration().getPropertyKeyFor(Properties.PROPERTY_ID));
+        Node node = tagNodeCache.get(tagId, (nodeId) -> {
+            try {
+                Node cached = database.getNodeById(nodeId);
+                return cached.hasLabel(label) && tagId.equals(cached.getProperty(idKey, null)) ? cached : null;
+            } catch (NotFoundException e) {
+                // deleted since, or its id has been reused
+                return null;
+            }
+        });
+        if (node != null) {
+            return node;
+        }
+        node = getIfExist(label, idKey, tagId);
+        if (node != null) {
+            tagNodeCache.put(tagId, node.getId());
+        }
+        return node;
+    }
+
     private boolean shouldBeUpdated(Tag tag, Node tagNode) {
         if (tagNode.hasProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH))) {
             String[] pos = (String[]) tagNode.getProperty(configuration().getPropertyKeyFor(Properties.PART_OF_SPEECH));
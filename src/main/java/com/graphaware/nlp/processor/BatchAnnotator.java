@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.processor;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.nlp.NLPEvents;
+import com.graphaware.nlp.NLPManager;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.dsl.result.BatchAnnotationResult;
+import com.graphaware.nlp.event.TextAnnotationEvent;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Annotates a batch of documents on a pool of worker threads and hands the
+ * results over to a single writer thread, which persists them in transactions
+ * of <code>batchSize</code> documents. Annotation is CPU bound and does not
+ * need to wait for the graph writes, which stay serialized in one thread in
+ * order to avoid lock contention on shared Tag nodes. When a batch fails to
+ * be persisted, its documents are persisted again one per transaction, so
+ * only the failing documents are skipped; they are reported in the result
+ * together with the documents that could not be annotated.
+ */
+public class BatchAnnotator {
+
+    private static final Log LOG = LoggerFactory.getLogger(BatchAnnotator.class);
+
+    private static final AnnotatedDocument END_OF_BATCH = new AnnotatedDocument(null, null, null);
+
+    private final NLPManager manager;
+    private final TextProcessor processor;
+    private final String pipeline;
+    private final int batchSize;
+    private final int concurrency;
+
+    public BatchAnnotator(NLPManager manager, TextProcessor processor, String pipeline, int batchSize, int concurrency) {
+        this.manager = manager;
+        this.processor = processor;
+        this.pipeline = pipeline;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+    }
+
+    public BatchAnnotationResult annotateAndPersist(List<Map<String, Object>> documents, boolean checkLanguage) {
+        BlockingQueue<AnnotatedDocument> queue = new ArrayBlockingQueue<>(batchSize * 2);
+        List<String> failedIds = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService annotators = Executors.newFixedThreadPool(concurrency);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> persisted = writer.submit(() -> write(queue, failedIds));
+            List<Future<?>> annotations = new ArrayList<>(documents.size());
+            documents.forEach(document -> annotations.add(annotators.submit(() -> annotate(document, checkLanguage, queue, failedIds))));
+            for (Future<?> annotation : annotations) {
+                annotation.get();
+            }
+            queue.put(END_OF_BATCH);
+            int persistedCount = persisted.get();
+            if (!failedIds.isEmpty()) {
+                LOG.warn(failedIds.size() + " documents of the batch could not be annotated or persisted");
+            }
+
+            return new BatchAnnotationResult(persistedCount, new ArrayList<>(failedIds));
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Error while annotating batch of documents", e);
+        } finally {
+            annotators.shutdownNow();
+            writer.shutdownNow();
+        }
+    }
+
+    private void annotate(Map<String, Object> document, boolean checkLanguage, BlockingQueue<AnnotatedDocument> queue, List<String> failedIds) {
+        String id = String.valueOf(document.get("id"));
+        String text = String.valueOf(document.get("text"));
+        AnnotatedText annotatedText;
+        try {
+            annotatedText = manager.annotateText(text, processor, pipeline, checkLanguage);
+        } catch (Exception e) {
+            LOG.error("Error while annotating document " + id + ", skipping it", e);
+            failedIds.add(id);
+            return;
+        }
+        try {
+            queue.put(new AnnotatedDocument(id, text, annotatedText));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int write(BlockingQueue<AnnotatedDocument> queue, List<String> failedIds) throws InterruptedException {
+        int persisted = 0;
+        List<AnnotatedDocument> batch = new ArrayList<>(batchSize);
+        while (true) {
+            AnnotatedDocument document = queue.take();
+            boolean isLast = document == END_OF_BATCH;
+            if (!isLast) {
+                batch.add(document);
+            }
+            if (batch.size() >= batchSize || (isLast && !batch.isEmpty())) {
+                persisted += persist(batch, failedIds);
+                batch.clear();
+            }
+            if (isLast) {
+                return persisted;
+            }
+        }
+    }
+
+    private int persist(List<AnnotatedDocument> batch, List<String> failedIds) {
+        try {
+            persistInTransaction(batch);
+        } catch (Exception e) {
+            LOG.error("Error while persisting batch of " + batch.size() + " annotated texts, persisting them one by one", e);
+            return persistOneByOne(batch, failedIds);
+        }
+        LOG.info("Persisted batch of " + batch.size() + " annotated texts");
+
+        return batch.size();
+    }
+
+    private int persistOneByOne(List<AnnotatedDocument> batch, List<String> failedIds) {
+        int persisted = 0;
+        for (AnnotatedDocument document : batch) {
+            try {
+                persistInTransaction(Collections.singletonList(document));
+                persisted++;
+            } catch (Exception e) {
+                LOG.error("Error while persisting annotated text " + document.id + ", skipping it", e);
+                failedIds.add(document.id);
+            }
+        }
+
+        return persisted;
+    }
+
+    /**
+     * The listeners are only notified once every document of the transaction
+     * has been persisted, so a batch that fails and is persisted again one by
+     * one does not notify them twice for the same document.
+     */
+    private void persistInTransaction(List<AnnotatedDocument> documents) {
+        String txId = String.valueOf(System.currentTimeMillis());
+        try (Transaction tx = manager.getDatabase().beginTx()) {
+            List<TextAnnotationEvent> events = new ArrayList<>(documents.size());
+            for (AnnotatedDocument document : documents) {
+                Node annotatedNode = manager.persistAnnotatedText(document.annotatedText, document.id, txId);
+                document.annotatedText.setText(document.text);
+                events.add(new TextAnnotationEvent(annotatedNode, document.annotatedText, document.id, txId));
+            }
+            events.forEach(event -> manager.getEventDispatcher().notify(NLPEvents.POST_TEXT_ANNOTATION, event));
+            tx.success();
+        }
+    }
+
+    private static class AnnotatedDocument {
+
+        private final String id;
+        private final String text;
+        private final AnnotatedText annotatedText;
+
+        AnnotatedDocument(String id, String text, AnnotatedText annotatedText) {
+            this.id = id;
+            this.text = text;
+            this.annotatedText = annotatedText;
+        }
+    }
+}
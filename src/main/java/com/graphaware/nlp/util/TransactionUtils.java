@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2013-2017 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.nlp.util;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+public class TransactionUtils {
+
+    /**
+     * Registers a listener on the transaction bound to the current thread.
+     * It is notified with the committed transaction id, or with
+     * {@link KernelTransaction#ROLLBACK}, on every commit and rollback,
+     * unlike the transaction event handlers which are only called when a
+     * commit was attempted. It runs on the closing thread while the
+     * transaction still holds its locks, so it must not wait for other
+     * transactions.
+     */
+    public static void registerCloseListener(GraphDatabaseService database, KernelTransaction.CloseListener listener) {
+        ((GraphDatabaseAPI) database).getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class)
+                .getKernelTransactionBoundToThisThread(true)
+                .registerCloseListener(listener);
+    }
+
+    public static boolean isCommitted(long transactionId) {
+        return transactionId != KernelTransaction.ROLLBACK;
+    }
+}
@@ -6,12 +6,15 @@ import com.graphaware.nlp.NLPManager;
 import com.graphaware.nlp.dsl.request.PipelineSpecification;
 import com.graphaware.nlp.module.NLPConfiguration;
 import com.graphaware.nlp.module.NLPModule;
+import com.graphaware.nlp.persistence.constants.Labels;
+import com.graphaware.nlp.persistence.constants.Relationships;
 import com.graphaware.nlp.stub.StubTextProcessor;
 import com.graphaware.runtime.GraphAwareRuntime;
 import com.graphaware.runtime.GraphAwareRuntimeFactory;
 import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
 import org.junit.Before;
 import org.junit.Test;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Transaction;
 
 import java.lang.reflect.Field;
@@ -44,6 +47,26 @@ public class DynamicConfigurationTest extends EmbeddedDatabaseIntegrationTest {
         }
     }
 
+    @Test
+    public void testUpdatesPublishANewResolvedSnapshot() {
+        DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
+        ConfigurationSnapshot initial = configuration.getSnapshot();
+        configuration.update("LABEL_Tag", "Token");
+        configuration.update("RELATIONSHIP_HAS_TAG", "HAS_TOKEN");
+        configuration.update("PROPERTY_value", "text");
+
+        assertEquals("Token", configuration.getLabelFor(Labels.Tag).name());
+        assertEquals("Token", configuration.getLabelFor(Label.label("Tag")).name());
+        assertEquals("HAS_TOKEN", configuration.getRelationshipFor(Relationships.HAS_TAG).name());
+        assertEquals("text", configuration.getPropertyKeyFor("value"));
+        assertSame(configuration.getLabelFor(Labels.Tag), configuration.getLabelFor(Labels.Tag));
+        assertSame(Labels.Sentence, configuration.getLabelFor(Labels.Sentence));
+
+        assertNotSame(initial, configuration.getSnapshot());
+        assertSame(Labels.Tag, initial.getLabelFor(Labels.Tag));
+        assertEquals("value", initial.getPropertyKeyFor("value"));
+    }
+
     @Test
     public void testConfigurationCanLoadCustomPipelineAsObject() {
         DynamicConfiguration configuration = new DynamicConfiguration(getDatabase());
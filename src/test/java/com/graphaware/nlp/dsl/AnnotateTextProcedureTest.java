@@ -4,9 +4,12 @@ import com.graphaware.nlp.NLPIntegrationTest;
 import com.graphaware.nlp.util.TestNLPGraph;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -49,6 +52,49 @@ public class AnnotateTextProcedureTest extends NLPIntegrationTest {
         }));
     }
 
+    @Test
+    public void testBatchAnnotationViaProcedure() {
+        clearDb();
+        executeInTransaction("UNWIND {texts} AS text CREATE (n:Tweet) SET n.text = text", Collections.singletonMap("texts", SHORT_TEXTS), emptyConsumer());
+        executeInTransaction("MATCH (n:Tweet) WITH collect({id: id(n), text: n.text}) AS documents "
+                + "CALL ga.nlp.annotate.batch({documents: documents, checkLanguage: false, batchSize: 3, concurrency: 2}) YIELD result, failed RETURN result, failed", (result -> {
+            assertTrue(result.hasNext());
+            Map<String, Object> row = result.next();
+            assertEquals(10L, ((Number) row.get("result")).longValue());
+            assertEquals(0L, ((Number) row.get("failed")).longValue());
+        }));
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(10);
+    }
+
+    @Test
+    public void testBatchAnnotationReportsFailedDocuments() {
+        clearDb();
+        List<Map<String, Object>> documents = new ArrayList<>();
+        documents.add(document("en-1", SHORT_TEXTS.get(1)));
+        documents.add(document("fr-1", "Ceci est un texte écrit en français, une langue qui n'est pas prise en charge par le processeur."));
+        documents.add(document("en-2", SHORT_TEXTS.get(7)));
+        executeInTransaction("CALL ga.nlp.annotate.batch({documents: {documents}, batchSize: 3, concurrency: 2}) YIELD result, failed, failedIds RETURN result, failed, failedIds",
+                Collections.singletonMap("documents", documents), (result -> {
+                    assertTrue(result.hasNext());
+                    Map<String, Object> row = result.next();
+                    assertEquals(2L, ((Number) row.get("result")).longValue());
+                    assertEquals(1L, ((Number) row.get("failed")).longValue());
+                    assertEquals(Collections.singletonList("fr-1"), row.get("failedIds"));
+                }));
+
+        TestNLPGraph tester = new TestNLPGraph(getDatabase());
+        tester.assertAnnotatedTextNodesCount(2);
+    }
+
+    private Map<String, Object> document(String id, String text) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("id", id);
+        document.put("text", text);
+        return document;
+    }
+
     @Test
     public void testExceptionIsThrownWhenLanguageCannotBeDetected() {
         try {
@@ -0,0 +1,36 @@
+package com.graphaware.nlp.dsl;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SchemaProcedureTest extends NLPIntegrationTest {
+
+    @Test
+    public void testRequiredIndexesAreCreatedOnStartup() {
+        Map<String, Object> states = new HashMap<>();
+        executeInTransaction("CALL ga.nlp.schema.status() YIELD label, property, state RETURN label, property, state", (result -> {
+            while (result.hasNext()) {
+                Map<String, Object> record = result.next();
+                states.put(record.get("label") + "." + record.get("property"), record.get("state"));
+            }
+        }));
+        assertEquals(5, states.size());
+        assertTrue(states.containsKey("Tag.id"));
+        assertTrue(states.containsKey("Phrase.value"));
+        states.values().forEach(state -> assertNotEquals("MISSING", state));
+    }
+
+    @Test
+    public void testRelabelledIndexIsReportedAsMissing() {
+        executeInTransaction("CALL ga.nlp.config.set('LABEL_Tag', 'Term')", emptyConsumer());
+        executeInTransaction("CALL ga.nlp.schema.status() YIELD label, state WHERE label = 'Term' RETURN state", (result -> {
+            assertTrue(result.hasNext());
+            assertEquals("MISSING", result.next().get("state"));
+        }));
+    }
+}
@@ -0,0 +1,81 @@
+package com.graphaware.nlp.dsl;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.ml.similarity.QuantizedVectors;
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class VectorProcedureTest extends NLPIntegrationTest {
+
+    @Test
+    public void testVectorFunctions() {
+        executeInTransaction("CREATE (:Tag {value: 'a', word2vec: [1.0, 0.0, 0.0, 0.0, 1.0]}), (:Tag {value: 'b', word2vec: [1.0, 0.0, 0.0, 0.0, 0.0]})", emptyConsumer());
+        executeInTransaction("MATCH (a:Tag {value: 'a'}), (b:Tag {value: 'b'})\n"
+                + "RETURN ga.nlp.vector.cosine(a, b, 'word2vec') AS cosine, ga.nlp.vector.dot(a, b, 'word2vec') AS dot,\n"
+                + "ga.nlp.vector.euclidean(a, b, 'word2vec') AS euclidean, ga.nlp.vector.norm(a, 'word2vec') AS norm,\n"
+                + "ga.nlp.vector.cosine(a, b, 'missing') AS missing", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(1.0d / Math.sqrt(2.0d), (double) row.get("cosine"), 1e-9);
+            assertEquals(1.0d, (double) row.get("dot"), 1e-9);
+            assertEquals(1.0d, (double) row.get("euclidean"), 1e-9);
+            assertEquals(Math.sqrt(2.0d), (double) row.get("norm"), 1e-9);
+            assertNull(row.get("missing"));
+        }));
+    }
+
+    @Test
+    public void testTopKReturnsTheMostSimilarNodesFirst() {
+        executeInTransaction("CREATE (:Tag {value: 'query', word2vec: [1.0, 1.0]}), (:Tag {value: 'close', word2vec: [1.0, 0.9]}),\n"
+                + "(:Tag {value: 'far', word2vec: [1.0, -1.0]}), (:Tag {value: 'closer', word2vec: [1.0, 1.01]}), (:Tag {value: 'none'})", emptyConsumer());
+        List<String> values = new ArrayList<>();
+        executeInTransaction("MATCH (q:Tag {value: 'query'}) CALL ga.nlp.vector.topK(q, 'Tag', 'word2vec', 2) YIELD node, score RETURN node.value AS value", (result -> {
+            while (result.hasNext()) {
+                values.add((String) result.next().get("value"));
+            }
+        }));
+        assertEquals(Arrays.asList("closer", "close"), values);
+    }
+
+    @Test
+    public void testVectorFunctionsOnQuantizedProperties() {
+        double[] a = {0.3d, -0.2d, 0.05d, 0.9d};
+        double[] b = {0.25d, -0.1d, 0.0d, 0.7d};
+        try (Transaction tx = getDatabase().beginTx()) {
+            for (VectorEncoding encoding : VectorEncoding.values()) {
+                Node x = getDatabase().createNode(Label.label("Tag"));
+                x.setProperty("value", "a_" + encoding.getName());
+                QuantizedVectors.write(x, "word2vec", a, encoding);
+                Node y = getDatabase().createNode(Label.label("Tag"));
+                y.setProperty("value", "b_" + encoding.getName());
+                QuantizedVectors.write(y, "word2vec", b, encoding);
+            }
+            tx.success();
+        }
+        double dot = 0.0d, na = 0.0d, nb = 0.0d;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        double expectedCosine = dot / Math.sqrt(na * nb);
+        double expectedDot = dot;
+        for (VectorEncoding encoding : VectorEncoding.values()) {
+            executeInTransaction("MATCH (a:Tag {value: 'a_" + encoding.getName() + "'}), (b:Tag {value: 'b_" + encoding.getName() + "'})\n"
+                    + "RETURN ga.nlp.vector.cosine(a, b, 'word2vec') AS cosine, ga.nlp.vector.dot(a, b, 'word2vec') AS dot", (result -> {
+                Map<String, Object> row = result.next();
+                assertEquals(expectedCosine, (double) row.get("cosine"), 1e-2);
+                assertEquals(expectedDot, (double) row.get("dot"), 1e-2);
+            }));
+        }
+    }
+}
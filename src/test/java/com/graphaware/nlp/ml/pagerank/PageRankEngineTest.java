@@ -0,0 +1,171 @@
+package com.graphaware.nlp.ml.pagerank;
+
+import com.graphaware.nlp.ml.textrank.CoOccurrenceItem;
+import com.graphaware.nlp.ml.textrank.PageRank;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PageRankEngineTest {
+
+    private static final double DAMP = 0.85;
+    private static final double THRESHOLD = 0.00001;
+
+    @Test
+    public void testGraphIsCompactedInCSRFormat() {
+        WeightedGraph graph = new WeightedGraph.Builder()
+                .addEdge(30L, 10L, 2.0)
+                .addEdge(20L, 10L, 1.0)
+                .addEdge(10L, 30L, 1.0)
+                .addNode(40L)
+                .build();
+
+        assertEquals(4, graph.size());
+        assertEquals(3, graph.edgeCount());
+        assertEquals(0, graph.indexOf(10L));
+        assertEquals(3, graph.indexOf(40L));
+        assertTrue(graph.indexOf(50L) < 0);
+        assertEquals(2, graph.inDegreeEnd(0) - graph.inDegreeStart(0));
+        assertEquals(0, graph.inDegreeEnd(3) - graph.inDegreeStart(3));
+        assertEquals(2.0, graph.outWeightSum(graph.indexOf(30L)), 0.0);
+    }
+
+    @Test
+    public void testEngineMatchesReferenceImplementation() {
+        Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences = createCoOccurrences();
+        Map<Long, Double> expected = referencePageRank(coOccurrences, 100);
+        Map<Long, Double> actual = new PageRank(null).run(coOccurrences, 100, DAMP, THRESHOLD);
+
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((node, value) -> assertEquals(value, actual.get(node), 10 * THRESHOLD));
+    }
+
+    @Test
+    public void testWalkRestrictedToNodeWeightsKeepsTheOriginalOutWeightSums() {
+        Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences = createCoOccurrences();
+        Map<Long, Double> nodeWeights = new HashMap<>();
+        Arrays.asList(1L, 2L, 3L, 5L).forEach(node -> nodeWeights.put(node, 1.0));
+        PageRank pageRank = new PageRank(null);
+        pageRank.setNodeWeights(nodeWeights);
+        Map<Long, Double> expected = referencePageRank(coOccurrences, nodeWeights.keySet(), 100);
+        Map<Long, Double> actual = pageRank.run(coOccurrences, 100, DAMP, THRESHOLD);
+
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((node, value) -> assertEquals(value, actual.get(node), 10 * THRESHOLD));
+    }
+
+    @Test
+    public void testParallelEngineMatchesSequentialOne() {
+        Random random = new Random(42);
+        WeightedGraph.Builder builder = new WeightedGraph.Builder();
+        for (int i = 0; i < 50000; i++) {
+            builder.addEdge(random.nextInt(10000), random.nextInt(10000), 1 + random.nextInt(5));
+        }
+        WeightedGraph graph = builder.build();
+        double[] sequential = new PageRankEngine().run(graph, 30, DAMP, THRESHOLD);
+        double[] parallel = new PageRankEngine(4).run(graph, 30, DAMP, THRESHOLD);
+
+        assertEquals(sequential.length, parallel.length);
+        for (int i = 0; i < sequential.length; i++) {
+            assertEquals(sequential[i], parallel[i], THRESHOLD);
+        }
+    }
+
+    @Test
+    public void testPersonalizedPageRankRestartsToSeeds() {
+        WeightedGraph graph = new WeightedGraph.Builder()
+                .addEdge(1L, 2L, 1.0)
+                .addEdge(2L, 1L, 1.0)
+                .addEdge(3L, 4L, 1.0)
+                .addEdge(4L, 3L, 1.0)
+                .build();
+        Map<Long, Double> seeds = new HashMap<>();
+        seeds.put(1L, 3.0);
+        seeds.put(2L, 1.0);
+        seeds.put(42L, 1.0);
+        double[] teleport = PageRankEngine.teleportVector(graph, DAMP, seeds);
+        double[] pagerank = new PageRankEngine().run(graph, 100, DAMP, THRESHOLD, teleport, null);
+
+        assertEquals((1 - DAMP) * 0.75, teleport[graph.indexOf(1L)], 1e-12);
+        assertEquals(0.0, teleport[graph.indexOf(3L)], 0.0);
+        assertTrue(pagerank[graph.indexOf(1L)] > pagerank[graph.indexOf(2L)]);
+        assertEquals(0.0, pagerank[graph.indexOf(3L)], 0.0);
+        assertEquals(0.0, pagerank[graph.indexOf(4L)], 0.0);
+    }
+
+    @Test
+    public void testWarmStartConvergesFromPreviousScores() {
+        Random random = new Random(7);
+        WeightedGraph.Builder builder = new WeightedGraph.Builder();
+        for (int i = 0; i < 5000; i++) {
+            builder.addEdge(random.nextInt(1000), random.nextInt(1000), 1 + random.nextInt(5));
+        }
+        WeightedGraph graph = builder.build();
+        double[] teleport = PageRankEngine.teleportVector(graph, DAMP, null);
+        double[] cold = new PageRankEngine().run(graph, 100, DAMP, 1e-12, teleport, null);
+        double[] warm = new PageRankEngine().run(graph, 2, DAMP, 1e-12, teleport, cold);
+        double[] coldTwoIterations = new PageRankEngine().run(graph, 2, DAMP, 1e-12, teleport, null);
+
+        double warmDiff = 0.0;
+        double coldDiff = 0.0;
+        for (int i = 0; i < cold.length; i++) {
+            warmDiff = Math.max(warmDiff, Math.abs(warm[i] - cold[i]));
+            coldDiff = Math.max(coldDiff, Math.abs(coldTwoIterations[i] - cold[i]));
+        }
+        assertTrue(warmDiff < 1e-9);
+        assertTrue(coldDiff > warmDiff);
+    }
+
+    private Map<Long, Map<Long, CoOccurrenceItem>> createCoOccurrences() {
+        Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences = new HashMap<>();
+        long[][] edges = {{1, 2}, {1, 3}, {2, 3}, {3, 1}, {4, 3}, {5, 4}, {5, 1}, {6, 5}};
+        for (int i = 0; i < edges.length; i++) {
+            CoOccurrenceItem item = new CoOccurrenceItem(edges[i][0], edges[i][1]);
+            item.setCount(1 + i % 3);
+            coOccurrences.computeIfAbsent(edges[i][0], k -> new HashMap<>()).put(edges[i][1], item);
+        }
+        return coOccurrences;
+    }
+
+    private Map<Long, Double> referencePageRank(Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences, int iterations) {
+        Set<Long> nodes = new HashSet<>();
+        coOccurrences.values().forEach(items -> items.values().forEach(item -> {
+            nodes.add(item.getSource());
+            nodes.add(item.getDestination());
+        }));
+        return referencePageRank(coOccurrences, nodes, iterations);
+    }
+
+    /**
+     * The original implementation: the walk only visits the given nodes, but
+     * the out-weight sums include the edges leading to the other ones.
+     */
+    private Map<Long, Double> referencePageRank(Map<Long, Map<Long, CoOccurrenceItem>> coOccurrences, Collection<Long> nodes, int iterations) {
+        Map<Long, Double> pagerank = new HashMap<>();
+        int n = nodes.size();
+        nodes.forEach(node -> pagerank.put(node, (1 - DAMP) / n));
+        for (int i = 0; i < iterations; i++) {
+            Map<Long, Double> next = new HashMap<>();
+            pagerank.keySet().forEach(node -> {
+                double sum = 0.0;
+                for (Map.Entry<Long, Map<Long, CoOccurrenceItem>> source : coOccurrences.entrySet()) {
+                    if (pagerank.containsKey(source.getKey()) && source.getValue().containsKey(node)) {
+                        double total = source.getValue().values().stream().mapToDouble(CoOccurrenceItem::getCount).sum();
+                        sum += source.getValue().get(node).getCount() / total * pagerank.get(source.getKey());
+                    }
+                }
+                next.put(node, (1 - DAMP) / n + DAMP * sum);
+            });
+            pagerank.putAll(next);
+        }
+        return pagerank;
+    }
+}
@@ -0,0 +1,94 @@
+package com.graphaware.nlp.ml.queue;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimilarityQueueProcessorTest extends NLPIntegrationTest {
+
+    @Test
+    public void testWriterIsStartedWithTheModule() {
+        assertTrue(getNLPManager().getSimilarityQueueProcessor().isRunning());
+    }
+
+    @Test
+    public void testFlushWaitsForEntriesBeyondTheQueueCapacity() {
+        List<Long> nodes = createAnnotatedTexts(20);
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.SIMILARITY_WRITE_BATCH_SIZE, 3);
+        try {
+            SimilarityQueueProcessor processor = new SimilarityQueueProcessor(getDatabase(), getNLPManager().getConfiguration(), 2);
+            processor.start();
+            for (int i = 1; i < nodes.size(); i++) {
+                ArrayList<SimilarityItem> kNN = new ArrayList<>();
+                kNN.add(new SimilarityItem(nodes.get(i), nodes.get(0), 0.5f, "SIMILARITY_TEST"));
+                processor.offer(new SimilarityItemProcessEntry(nodes.get(i), kNN));
+            }
+            processor.flush();
+
+            assertEquals(0, processor.getQueueSize());
+            executeInTransaction("MATCH (:AnnotatedText)-[r:SIMILARITY_TEST]->() RETURN count(r) AS c", (result -> {
+                assertEquals(19L, result.next().get("c"));
+            }));
+            processor.shutdown();
+            assertFalse(processor.isRunning());
+        } finally {
+            getNLPManager().getConfiguration().removeSettingValue(SettingsConstants.SIMILARITY_WRITE_BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void testFlushFailsWhenTheCallerHoldsLocksOnTheRelatedNodes() {
+        List<Long> nodes = createAnnotatedTexts(2);
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.SIMILARITY_WRITE_TIMEOUT, 500);
+        SimilarityQueueProcessor processor = new SimilarityQueueProcessor(getDatabase(), getNLPManager().getConfiguration(), 10);
+        processor.start();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().getNodeById(nodes.get(0)).setProperty("locked", true);
+            ArrayList<SimilarityItem> kNN = new ArrayList<>();
+            kNN.add(new SimilarityItem(nodes.get(0), nodes.get(1), 0.5f, "SIMILARITY_TEST"));
+            processor.offer(new SimilarityItemProcessEntry(nodes.get(0), kNN));
+            try {
+                processor.flush();
+                fail("flush() should give up while the node is locked");
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains(SettingsConstants.SIMILARITY_WRITE_TIMEOUT));
+            }
+            tx.failure();
+        } finally {
+            getNLPManager().getConfiguration().removeSettingValue(SettingsConstants.SIMILARITY_WRITE_TIMEOUT);
+        }
+        processor.flush();
+        processor.shutdown();
+    }
+
+    @Test
+    public void testEntriesAreWrittenInlineWhenTheWriterIsNotRunning() {
+        List<Long> nodes = createAnnotatedTexts(2);
+        SimilarityQueueProcessor processor = new SimilarityQueueProcessor(getDatabase(), getNLPManager().getConfiguration(), 1);
+        ArrayList<SimilarityItem> kNN = new ArrayList<>();
+        kNN.add(new SimilarityItem(nodes.get(0), nodes.get(1), 0.5f, "SIMILARITY_TEST"));
+        processor.offer(new SimilarityItemProcessEntry(nodes.get(0), kNN));
+
+        executeInTransaction("MATCH (:AnnotatedText)-[r:SIMILARITY_TEST]->() RETURN count(r) AS c", (result -> {
+            assertEquals(1L, result.next().get("c"));
+        }));
+    }
+
+    private List<Long> createAnnotatedTexts(int count) {
+        List<Long> nodes = new ArrayList<>();
+        try (Transaction tx = getDatabase().beginTx()) {
+            for (int i = 0; i < count; i++) {
+                nodes.add(getDatabase().createNode(Label.label("AnnotatedText")).getId());
+            }
+            tx.success();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,74 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DenseVectorsTest {
+
+    @Test
+    public void testKernelsMatchTheNaiveComputation() {
+        Random random = new Random(19);
+        for (int length = 0; length < 11; length++) {
+            double[] x = random.doubles(length).toArray();
+            double[] y = random.doubles(length).toArray();
+            double dot = 0.0d, xx = 0.0d, yy = 0.0d, distance = 0.0d;
+            for (int i = 0; i < length; i++) {
+                dot += x[i] * y[i];
+                xx += x[i] * x[i];
+                yy += y[i] * y[i];
+                distance += (x[i] - y[i]) * (x[i] - y[i]);
+            }
+            assertEquals(dot, DenseVectors.dot(x, y), 1e-12);
+            assertEquals(Math.sqrt(xx), DenseVectors.norm(x), 1e-12);
+            assertEquals(Math.sqrt(distance), DenseVectors.euclidean(x, y), 1e-12);
+            double expectedCosine = length > 0 ? dot / (Math.sqrt(xx) * Math.sqrt(yy)) : 0.0d;
+            assertEquals(expectedCosine, DenseVectors.cosine(x, y), 1e-12);
+            assertEquals(expectedCosine, DenseVectors.cosine(x, DenseVectors.norm(x), y), 1e-12);
+        }
+    }
+
+    @Test
+    public void testVectorsOfDifferentDimensionsAreRejected() {
+        double[] x = {1.0d, 2.0d, 3.0d};
+        double[] y = {1.0d, 2.0d};
+        try {
+            DenseVectors.dot(x, y);
+            fail("dot() should reject vectors of different dimensions");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            DenseVectors.cosine(x, DenseVectors.norm(x), y);
+            fail("cosine() should reject vectors of different dimensions");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            DenseVectors.euclidean(y, x);
+            fail("euclidean() should reject vectors of different dimensions");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            QuantizedVectors.cosine(new byte[]{1, 2, 3}, new byte[]{1, 2});
+            fail("cosine() should reject quantized vectors of different dimensions");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPropertyValuesAreConverted() {
+        double[] doubles = {1.0d, 2.0d};
+        assertTrue(doubles == DenseVectors.toArray(doubles));
+        assertArrayEquals(doubles, DenseVectors.toArray(new float[]{1.0f, 2.0f}), 0.0d);
+        assertArrayEquals(doubles, DenseVectors.toArray(new long[]{1L, 2L}), 0.0d);
+        assertArrayEquals(doubles, DenseVectors.toArray(Arrays.asList(1, 2.0d)), 0.0d);
+        assertNull(DenseVectors.toArray("1, 2"));
+        assertNull(DenseVectors.toArray(null));
+    }
+}
@@ -0,0 +1,53 @@
+package com.graphaware.nlp.ml.similarity;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FeatureVectorStoreTest extends NLPIntegrationTest {
+
+    @Test
+    public void testVectorsArePersistedWithTheCorpusSize() {
+        executeInTransaction("CREATE (a:Tag {value: 'a'}), (b:Tag {value: 'b'})\n"
+                + "CREATE (:AnnotatedText {id: 'd1'})-[:CONTAINS_SENTENCE]->(s1:Sentence), (s1)-[:HAS_TAG {tf: 1}]->(a), (s1)-[:HAS_TAG {tf: 1}]->(b)\n"
+                + "CREATE (:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s2:Sentence), (s2)-[:HAS_TAG {tf: 1}]->(a)", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText) WITH collect(n) AS nodes CALL ga.nlp.ml.similarity.cosine(nodes, 0, null, null) YIELD result RETURN result", emptyConsumer());
+
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'd1'}) RETURN n.tfidfIndices AS indices, n.tfidfValues AS values, n.tfidfCorpusSize AS corpusSize", (result -> {
+            Map<String, Object> record = result.next();
+            assertEquals(2, ((long[]) record.get("indices")).length);
+            assertEquals(2, ((float[]) record.get("values")).length);
+            assertEquals(2L, record.get("corpusSize"));
+        }));
+    }
+
+    @Test
+    public void testVectorsAreAllPersistedWhenWrittenInSeveralBatches() {
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.SIMILARITY_WRITE_BATCH_SIZE, 1);
+        try {
+            executeInTransaction("CREATE (a:Tag {value: 'a'})\n"
+                    + "CREATE (:AnnotatedText {id: 'd1'})-[:CONTAINS_SENTENCE]->(s1:Sentence), (s1)-[:HAS_TAG {tf: 1}]->(a)\n"
+                    + "CREATE (:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s2:Sentence), (s2)-[:HAS_TAG {tf: 1}]->(a)\n"
+                    + "CREATE (:AnnotatedText {id: 'd3'})-[:CONTAINS_SENTENCE]->(s3:Sentence), (s3)-[:HAS_TAG {tf: 2}]->(a)", emptyConsumer());
+            executeInTransaction("MATCH (n:AnnotatedText) WITH collect(n) AS nodes CALL ga.nlp.ml.similarity.cosine(nodes, 0, null, null) YIELD result RETURN result", emptyConsumer());
+
+            executeInTransaction("MATCH (n:AnnotatedText) WHERE n.tfidfCorpusSize = 3 RETURN count(n) AS stored", (result -> {
+                assertEquals(3L, result.next().get("stored"));
+            }));
+        } finally {
+            getNLPManager().getConfiguration().removeSettingValue(SettingsConstants.SIMILARITY_WRITE_BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void testStalenessFollowsTheCorpusSizeDrift() {
+        assertFalse(FeatureVectorStore.isStale(1000, 1040, 0.05));
+        assertTrue(FeatureVectorStore.isStale(1000, 1060, 0.05));
+        assertTrue(FeatureVectorStore.isStale(1000, 900, 0.05));
+        assertTrue(FeatureVectorStore.isStale(0, 10, 0.05));
+    }
+}
@@ -0,0 +1,86 @@
+package com.graphaware.nlp.ml.similarity;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.configuration.SettingsConstants;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class IncrementalSimilarityTest extends NLPIntegrationTest {
+
+    @Test
+    public void testNewDocumentIsAddedToTheNeighbourKNNLists() {
+        executeInTransaction("CREATE (a:Tag {value: 'a'}), (b:Tag {value: 'b'}), (c:Tag {value: 'c'})\n"
+                + "CREATE (:AnnotatedText {id: 'd1'})-[:CONTAINS_SENTENCE]->(s1:Sentence), (s1)-[:HAS_TAG {tf: 1}]->(a), (s1)-[:HAS_TAG {tf: 1}]->(b)\n"
+                + "CREATE (:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s2:Sentence), (s2)-[:HAS_TAG {tf: 1}]->(a), (s2)-[:HAS_TAG {tf: 2}]->(b)\n"
+                + "CREATE (:AnnotatedText {id: 'd3'})-[:CONTAINS_SENTENCE]->(s3:Sentence), (s3)-[:HAS_TAG {tf: 1}]->(c)", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText) WITH collect(n) AS nodes CALL ga.nlp.ml.similarity.cosine(nodes, 0, null, null) YIELD result RETURN result", emptyConsumer());
+        assertEquals(0, countSimilarities("d3"));
+
+        executeInTransaction("MATCH (a:Tag {value: 'a'}), (c:Tag {value: 'c'})\n"
+                + "CREATE (:AnnotatedText {id: 'd4'})-[:CONTAINS_SENTENCE]->(s:Sentence), (s)-[:HAS_TAG {tf: 1}]->(a), (s)-[:HAS_TAG {tf: 1}]->(c)", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'd4'}) CALL ga.nlp.ml.similarity.cosine([n], 0, null, null, {incremental: true}) YIELD result RETURN result", emptyConsumer());
+
+        assertEquals(new HashSet<>(Arrays.asList("d1", "d2", "d3")), getNeighbours("d4"));
+        assertTrue(getNeighbours("d1").contains("d4"));
+        assertTrue(getNeighbours("d3").contains("d4"));
+        assertEquals(2, countSimilarities("d1"));
+    }
+
+    @Test
+    public void testReannotatedDocumentLosesItsStaleIncomingSimilarities() {
+        clearDb();
+        executeInTransaction("CREATE (a:Tag {value: 'a'}), (b:Tag {value: 'b'}), (c:Tag {value: 'c'})\n"
+                + "CREATE (:AnnotatedText {id: 'd1'})-[:CONTAINS_SENTENCE]->(s1:Sentence), (s1)-[:HAS_TAG {tf: 1}]->(a), (s1)-[:HAS_TAG {tf: 1}]->(b)\n"
+                + "CREATE (:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s2:Sentence), (s2)-[:HAS_TAG {tf: 1}]->(a), (s2)-[:HAS_TAG {tf: 2}]->(b)\n"
+                + "CREATE (:AnnotatedText {id: 'd3'})-[:CONTAINS_SENTENCE]->(s3:Sentence), (s3)-[:HAS_TAG {tf: 1}]->(c)", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText) WITH collect(n) AS nodes CALL ga.nlp.ml.similarity.cosine(nodes, 0, null, null) YIELD result RETURN result", emptyConsumer());
+        assertTrue(getNeighbours("d2").contains("d1"));
+
+        executeInTransaction("MATCH (d:AnnotatedText {id: 'd1'})-[:CONTAINS_SENTENCE]->(s:Sentence) DETACH DELETE s\n"
+                + "WITH DISTINCT d MATCH (c:Tag {value: 'c'})\n"
+                + "CREATE (d)-[:CONTAINS_SENTENCE]->(s:Sentence), (s)-[:HAS_TAG {tf: 1}]->(c)", emptyConsumer());
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'd1'}) CALL ga.nlp.ml.similarity.cosine([n], 0, null, null, {incremental: true}) YIELD result RETURN result", emptyConsumer());
+
+        assertFalse(getNeighbours("d2").contains("d1"));
+        assertEquals(Collections.singleton("d3"), getNeighbours("d1"));
+        assertTrue(getNeighbours("d3").contains("d1"));
+    }
+
+    @Test
+    public void testAnnotatedTextsAreAddedToTheKNNListsAfterTheirAnnotationWhenIncrementalIsEnabled() {
+        clearDb();
+        getNLPManager().getConfiguration().updateInternalSetting(SettingsConstants.SIMILARITY_INCREMENTAL, true);
+        try {
+            executeInTransaction("CALL ga.nlp.annotate({text: 'alpha beta', id: 'd1', checkLanguage: false})", emptyConsumer());
+            executeInTransaction("CALL ga.nlp.annotate({text: 'delta', id: 'd2', checkLanguage: false})", emptyConsumer());
+            executeInTransaction("CALL ga.nlp.annotate({text: 'alpha gamma', id: 'd3', checkLanguage: false})", emptyConsumer());
+            ((SimilarityProcessor) getNLPManager().getExtension(SimilarityProcessor.class)).awaitIncrementalUpdates();
+
+            assertEquals(Collections.singleton("d1"), getNeighbours("d3"));
+            assertEquals(Collections.singleton("d3"), getNeighbours("d1"));
+            assertTrue(getNeighbours("d2").isEmpty());
+        } finally {
+            getNLPManager().getConfiguration().removeSettingValue(SettingsConstants.SIMILARITY_INCREMENTAL);
+        }
+    }
+
+    private int countSimilarities(String id) {
+        return getNeighbours(id).size();
+    }
+
+    private Set<String> getNeighbours(String id) {
+        Set<String> neighbours = new HashSet<>();
+        executeInTransaction("MATCH (:AnnotatedText {id: {id}})-[:SIMILARITY_COSINE]->(other) RETURN other.id AS id", Collections.singletonMap("id", id), (result -> {
+            while (result.hasNext()) {
+                neighbours.add((String) result.next().get("id"));
+            }
+        }));
+        return neighbours;
+    }
+}
@@ -0,0 +1,87 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class InvertedIndexTest {
+
+    @Test
+    public void testOnlyDocumentsSharingATagAreCandidates() {
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        vectors.put(1L, vector(10L, 1.0f, 11L, 2.0f));
+        vectors.put(2L, vector(11L, 1.0f));
+        vectors.put(3L, vector(12L, 1.0f));
+        InvertedIndex index = InvertedIndex.build(vectors);
+        InvertedIndex.Accumulator accumulator = index.newAccumulator();
+
+        index.accumulate(vectors.get(2L), accumulator);
+        Set<Long> candidates = new HashSet<>();
+        for (int i = 0; i < accumulator.candidateCount(); i++) {
+            candidates.add(index.documentId(accumulator.candidate(i)));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), candidates);
+    }
+
+    @Test
+    public void testAccumulatedScoresMatchCosineSimilarity() {
+        Random random = new Random(11);
+        Map<Long, Map<Long, Float>> maps = new HashMap<>();
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        for (long document = 0; document < 200; document++) {
+            Map<Long, Float> map = new HashMap<>();
+            for (int i = 0; i < 10; i++) {
+                map.put((long) random.nextInt(300), 0.1f + random.nextFloat());
+            }
+            maps.put(document, map);
+            vectors.put(document, SparseVector.fromMap(map));
+        }
+        InvertedIndex index = InvertedIndex.build(vectors);
+        InvertedIndex.Accumulator accumulator = index.newAccumulator();
+
+        for (long document = 0; document < 20; document++) {
+            SparseVector vector = vectors.get(document);
+            index.accumulate(vector, accumulator);
+            Map<Long, Float> scores = new HashMap<>();
+            for (int i = 0; i < accumulator.candidateCount(); i++) {
+                int candidate = accumulator.candidate(i);
+                scores.put(index.documentId(candidate), accumulator.score(candidate) / (index.norm(candidate) * vector.norm()));
+            }
+            for (long other : maps.keySet()) {
+                float expected = (float) cosine(maps.get(document), maps.get(other));
+                assertEquals(expected, scores.getOrDefault(other, 0.0f), 1e-4);
+            }
+        }
+    }
+
+    private static double cosine(Map<Long, Float> x, Map<Long, Float> y) {
+        double dot = 0.0;
+        for (Map.Entry<Long, Float> entry : x.entrySet()) {
+            dot += entry.getValue() * y.getOrDefault(entry.getKey(), 0.0f);
+        }
+        return dot / (norm(x) * norm(y));
+    }
+
+    private static double norm(Map<Long, Float> vector) {
+        double sum = 0.0;
+        for (float value : vector.values()) {
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static SparseVector vector(Object... entries) {
+        Map<Long, Float> vector = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            vector.put((Long) entries[i], (Float) entries[i + 1]);
+        }
+        return SparseVector.fromMap(vector);
+    }
+}
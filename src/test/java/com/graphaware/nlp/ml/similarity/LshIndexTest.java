@@ -0,0 +1,93 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LshIndexTest {
+
+    @Test
+    public void testNearDuplicatesAreCandidates() {
+        Random random = new Random(14);
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        for (long document = 0; document < 500; document++) {
+            vectors.put(document, randomVector(random, 1000, 20));
+        }
+        Map<Long, Float> original = vectors.get(0L).toMap();
+        Map<Long, Float> duplicate = new HashMap<>(original);
+        duplicate.put(duplicate.keySet().iterator().next(), 0.01f);
+        vectors.put(1000L, SparseVector.fromMap(duplicate));
+        LshIndex index = LshIndex.build(vectors, 16, 8);
+        LshIndex.Candidates candidates = index.newCandidates();
+
+        index.candidates(vectors.get(0L), candidates);
+        Set<Long> found = candidateIds(index, candidates);
+        assertTrue(found.contains(0L));
+        assertTrue(found.contains(1000L));
+        assertTrue(found.size() < vectors.size() / 2);
+    }
+
+    @Test
+    public void testRecallOfSimilarPairs() {
+        Random random = new Random(7);
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        for (long document = 0; document < 200; document++) {
+            SparseVector base = randomVector(random, 5000, 30);
+            Map<Long, Float> similar = base.toMap();
+            similar.put(5000L + document, 0.5f);
+            vectors.put(document, base);
+            vectors.put(1000 + document, SparseVector.fromMap(similar));
+        }
+        LshIndex index = LshIndex.build(vectors, 16, 8);
+        LshIndex.Candidates candidates = index.newCandidates();
+
+        int found = 0;
+        for (long document = 0; document < 200; document++) {
+            index.candidates(vectors.get(document), candidates);
+            if (candidateIds(index, candidates).contains(1000 + document)) {
+                found++;
+            }
+        }
+        assertTrue("Recall too low: " + found, found >= 190);
+    }
+
+    @Test
+    public void testEmptyVectorsAreNotIndexed() {
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        vectors.put(1L, SparseVector.EMPTY);
+        vectors.put(2L, randomVector(new Random(1), 10, 3));
+        LshIndex index = LshIndex.build(vectors, 4, 4);
+        LshIndex.Candidates candidates = index.newCandidates();
+
+        assertEquals(1, index.size());
+        index.candidates(SparseVector.EMPTY, candidates);
+        assertEquals(0, candidates.candidateCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRowsAreLimitedToTheSignatureWord() {
+        LshIndex.build(new HashMap<>(), 1, LshIndex.MAX_ROWS + 1);
+    }
+
+    private static Set<Long> candidateIds(LshIndex index, LshIndex.Candidates candidates) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < candidates.candidateCount(); i++) {
+            ids.add(index.documentId(candidates.candidate(i)));
+        }
+        return ids;
+    }
+
+    private static SparseVector randomVector(Random random, int dimensions, int size) {
+        Map<Long, Float> vector = new HashMap<>();
+        while (vector.size() < size) {
+            vector.put((long) random.nextInt(dimensions), 0.1f + random.nextFloat());
+        }
+        return SparseVector.fromMap(vector);
+    }
+}
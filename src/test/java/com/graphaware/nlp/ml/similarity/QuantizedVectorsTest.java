@@ -0,0 +1,58 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantizedVectorsTest {
+
+    @Test
+    public void testHalfPrecisionRoundTrip() {
+        float[] values = {0.0f, 1.0f, -2.5f, 0.0129f, 65504.0f, 6.1035156E-5f, 5.9604645E-8f};
+        for (float value : values) {
+            assertEquals(value, QuantizedVectors.fromHalf(QuantizedVectors.toHalf(value)), Math.abs(value) * 1e-3f);
+        }
+        assertEquals(Float.POSITIVE_INFINITY, QuantizedVectors.fromHalf(QuantizedVectors.toHalf(1e6f)), 0.0f);
+        assertTrue(Float.isNaN(QuantizedVectors.fromHalf(QuantizedVectors.toHalf(Float.NaN))));
+        assertEquals(0.0f, QuantizedVectors.fromHalf(QuantizedVectors.toHalf(1e-10f)), 0.0f);
+    }
+
+    @Test
+    public void testEncodingTypes() {
+        double[] vector = {0.5d, -1.0d, 0.25d};
+        assertTrue(QuantizedVectors.encode(vector, VectorEncoding.DOUBLE) instanceof double[]);
+        assertTrue(QuantizedVectors.encode(vector, VectorEncoding.FLOAT32) instanceof float[]);
+        assertTrue(QuantizedVectors.encode(vector, VectorEncoding.FLOAT16) instanceof short[]);
+        byte[] int8 = (byte[]) QuantizedVectors.encode(vector, VectorEncoding.INT8);
+        assertEquals(-127, int8[1]);
+        double[] decoded = QuantizedVectors.decode(int8, QuantizedVectors.scale(vector));
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], 1.0d / 127);
+        }
+        assertEquals(VectorEncoding.INT8, VectorEncoding.fromName("INT8"));
+    }
+
+    @Test
+    public void testQuantizedCosineIsCloseToExactCosine() {
+        Random random = new Random(42);
+        for (int n = 0; n < 100; n++) {
+            double[] x = new double[300];
+            double[] y = new double[300];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = random.nextGaussian() * 0.1d;
+                y[i] = x[i] + random.nextGaussian() * 0.1d;
+            }
+            double exact = DenseVectors.cosine(x, y);
+            double xNorm = DenseVectors.norm(x);
+            for (VectorEncoding encoding : VectorEncoding.values()) {
+                Object xe = QuantizedVectors.encode(x, encoding);
+                Object ye = QuantizedVectors.encode(y, encoding);
+                assertEquals(exact, QuantizedVectors.cosine(xe, ye), 1e-2);
+                assertEquals(exact, QuantizedVectors.cosine(x, xNorm, ye), 1e-2);
+            }
+        }
+        assertTrue(Double.isNaN(QuantizedVectors.cosine((Object) null, new byte[]{1})));
+    }
+}
@@ -0,0 +1,70 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SimilarityMetricsTest {
+
+    @Test
+    public void testJaccardOnTagSets() {
+        JaccardSimilarity jaccard = new JaccardSimilarity();
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        vectors.put(1L, vector(new long[]{1, 2, 3, 4}, new float[]{0.5f, 2.0f, 1.0f, 3.0f}));
+        vectors.put(2L, vector(new long[]{3, 4, 5}, new float[]{1.0f, 0.1f, 7.0f}));
+        Map<Long, SparseVector> prepared = jaccard.prepare(vectors);
+        SparseVector x = prepared.get(1L);
+        SparseVector y = prepared.get(2L);
+
+        assertEquals(2.0f / 5.0f, jaccard.getSimilarity(x, y), 1e-6f);
+        assertEquals(2.0f / 5.0f, jaccard.getSimilarity(x, y, x.dot(y)), 1e-6f);
+        assertEquals(2.0f / 5.0f, jaccard.getSimilarity(vectors.get(1L), vectors.get(2L)), 1e-6f);
+        assertEquals(0.0f, jaccard.getSimilarity(SparseVector.EMPTY, SparseVector.EMPTY), 0.0f);
+    }
+
+    @Test
+    public void testCosineFastPathMatchesTheDirectComputation() {
+        CosineSimilarity cosine = new CosineSimilarity();
+        SparseVector x = vector(new long[]{1, 3}, new float[]{1.0f, 2.0f});
+        SparseVector y = vector(new long[]{1, 2, 3}, new float[]{3.0f, 1.0f, 0.5f});
+        assertEquals(cosine.getSimilarity(x, y), cosine.getSimilarity(x, y, x.dot(y)), 0.0f);
+    }
+
+    @Test
+    public void testBm25WeightsRareAndSaturatesFrequentTerms() {
+        Bm25Similarity bm25 = new Bm25Similarity();
+        Map<Long, SparseVector> vectors = new HashMap<>();
+        vectors.put(1L, vector(new long[]{1, 2}, new float[]{1.0f, 1.0f}));
+        vectors.put(2L, vector(new long[]{1, 3}, new float[]{1.0f, 10.0f}));
+        vectors.put(3L, vector(new long[]{1, 4}, new float[]{1.0f, 1.0f}));
+        Map<Long, SparseVector> prepared = bm25.prepare(vectors);
+
+        SparseVector first = prepared.get(1L);
+        assertTrue(first.value(1) > first.value(0));
+        SparseVector second = prepared.get(2L);
+        assertTrue(second.value(1) < 10.0f * first.value(1));
+        float similarity = bm25.getSimilarity(prepared.get(1L), prepared.get(3L));
+        assertTrue(similarity > 0 && similarity < 1);
+    }
+
+    @Test
+    public void testRegistryResolvesByName() {
+        SimilarityRegistry registry = new SimilarityRegistry();
+        registry.register(new CosineSimilarity());
+        registry.register(new JaccardSimilarity());
+        assertEquals(JaccardSimilarity.class, registry.resolve("jaccard").getClass());
+        try {
+            registry.resolve("unknown");
+            fail("Unknown metrics should not be resolved");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("unknown"));
+        }
+    }
+
+    private static SparseVector vector(long[] indices, float[] values) {
+        return SparseVector.of(indices, values);
+    }
+}
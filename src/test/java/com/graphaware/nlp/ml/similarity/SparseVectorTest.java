@@ -0,0 +1,58 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SparseVectorTest {
+
+    @Test
+    public void testVectorIsSortedAndNormIsPrecomputed() {
+        Map<Long, Float> map = new HashMap<>();
+        map.put(30L, 4.0f);
+        map.put(10L, 3.0f);
+        SparseVector vector = SparseVector.fromMap(map);
+
+        assertEquals(2, vector.size());
+        assertEquals(10L, vector.index(0));
+        assertEquals(3.0f, vector.value(0), 0.0f);
+        assertEquals(5.0f, vector.norm(), 0.0f);
+        assertEquals(map, vector.toMap());
+    }
+
+    @Test
+    public void testMergeJoinDotProductAndCosine() {
+        Map<Long, Float> x = new HashMap<>();
+        x.put(1L, 1.0f);
+        x.put(2L, 2.0f);
+        x.put(5L, 3.0f);
+        Map<Long, Float> y = new HashMap<>();
+        y.put(2L, 4.0f);
+        y.put(3L, 1.0f);
+        y.put(5L, 1.0f);
+
+        assertEquals(11.0f, SparseVector.fromMap(x).dot(SparseVector.fromMap(y)), 0.0f);
+        assertEquals(11.0 / (Math.sqrt(14) * Math.sqrt(18)), new CosineSimilarity().getSimilarity(x, y), 1e-6);
+        assertEquals(0.0f, new CosineSimilarity().getSimilarity(SparseVector.fromMap(x), SparseVector.EMPTY), 0.0f);
+    }
+
+    @Test
+    public void testPackedArraysRoundTrip() {
+        Map<Long, Float> map = new HashMap<>();
+        map.put(7L, 0.5f);
+        map.put(3L, 1.5f);
+        SparseVector vector = SparseVector.fromMap(map);
+        SparseVector copy = SparseVector.of(vector.indices(), vector.values());
+
+        assertEquals(map, copy.toMap());
+        assertEquals(vector.norm(), copy.norm(), 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedPackedArraysAreRejected() {
+        SparseVector.of(new long[]{3L, 1L}, new float[]{1.0f, 1.0f});
+    }
+}
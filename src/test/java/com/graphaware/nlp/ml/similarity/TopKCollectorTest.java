@@ -0,0 +1,56 @@
+package com.graphaware.nlp.ml.similarity;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TopKCollectorTest {
+
+    @Test
+    public void testKeepsTheHighestScoresSortedDescending() {
+        Random random = new Random(18);
+        float[] scores = new float[1000];
+        TopKCollector collector = new TopKCollector(10, 0.0f);
+        for (int id = 0; id < scores.length; id++) {
+            scores[id] = random.nextFloat();
+            collector.offer(id, scores[id]);
+        }
+        float[] expected = Arrays.copyOf(scores, scores.length);
+        Arrays.sort(expected);
+
+        collector.sort();
+        assertEquals(10, collector.size());
+        for (int i = 0; i < collector.size(); i++) {
+            assertEquals(expected[expected.length - 1 - i], collector.score(i), 0.0f);
+            assertEquals(scores[(int) collector.id(i)], collector.score(i), 0.0f);
+        }
+    }
+
+    @Test
+    public void testScoresNotAboveTheMinimumAreIgnored() {
+        TopKCollector collector = new TopKCollector(5, 0.5f);
+        assertFalse(collector.offer(1, 0.2f));
+        assertFalse(collector.offer(2, 0.5f));
+        assertTrue(collector.offer(3, 0.7f));
+        assertEquals(1, collector.size());
+        assertEquals(0.5f, collector.threshold(), 0.0f);
+    }
+
+    @Test
+    public void testThresholdIsTheWeakestKeptScoreWhenFull() {
+        TopKCollector collector = new TopKCollector(2, 0.0f);
+        collector.offer(1, 0.3f);
+        collector.offer(2, 0.9f);
+        assertEquals(0.3f, collector.threshold(), 0.0f);
+        assertFalse(collector.offer(3, 0.2f));
+        assertTrue(collector.offer(4, 0.5f));
+        assertEquals(0.5f, collector.threshold(), 0.0f);
+
+        collector.reset();
+        assertEquals(0, collector.size());
+        assertEquals(0.0f, collector.threshold(), 0.0f);
+    }
+}
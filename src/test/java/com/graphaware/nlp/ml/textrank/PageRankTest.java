@@ -1,6 +1,8 @@
 package com.graphaware.nlp.ml.textrank;
 
 import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.ml.pagerank.WeightedGraph;
+import com.graphaware.nlp.ml.pagerank.WeightedGraphLoader;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -66,6 +68,68 @@ public class PageRankTest extends NLPIntegrationTest {
         }
     }
 
+    @Test
+    public void testPageRankStreamReturnsTopKWithoutWriting() {
+        createGraph();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute(
+                    "call ga.nlp.ml.pageRank.stream({relationshipType: \"Related_to\", "
+                            + "nodeType: \"Test\", damp: " + damp + ", topK: 2}) yield node, score\n"
+                            + "return node.value as tag, node.pagerank as pr, score\n"
+            );
+            assertTrue(result.hasNext());
+            Map<String, Object> first = result.next();
+            assertEquals("B", first.get("tag"));
+            assertNull(first.get("pr"));
+            assertTrue(result.hasNext());
+            assertEquals("C", result.next().get("tag"));
+            assertFalse(result.hasNext());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testPageRankWritesToCustomProperty() {
+        createGraph();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().execute("call ga.nlp.ml.pageRank({relationshipType: \"Related_to\", "
+                    + "nodeType: \"Test\", writeProperty: \"rank\", batchSize: 3}) yield result return result").close();
+            tx.success();
+        }
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("match (t:Test) return count(t.rank) as ranked, count(t.pagerank) as unranked");
+            Map<String, Object> next = result.next();
+            assertEquals(11L, next.get("ranked"));
+            assertEquals(0L, next.get("unranked"));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void testGraphLoaderReadsDoubleWeights() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().execute("create (a:Weighted {value: \"A\"})-[:Related_to {weight: 0.5}]->(b:Weighted {value: \"B\"})\n"
+                    + "create (b)-[:Related_to {weight: 2}]->(c:Weighted {value: \"C\"})\n"
+                    + "create (c)-[:Related_to]->(a)\n"
+                    + "create (c)-[:Related_to {weight: 3.0}]->(:Other)");
+            tx.success();
+        }
+
+        WeightedGraph graph = new WeightedGraphLoader(getDatabase(), 2).load("Weighted", "Related_to", "weight", true);
+        assertEquals(3, graph.size());
+        assertEquals(3, graph.edgeCount());
+        double totalWeight = 0.0;
+        for (int i = 0; i < graph.size(); i++) {
+            totalWeight += graph.outWeightSum(i);
+        }
+        assertEquals(3.5, totalWeight, 0.0);
+
+        WeightedGraph undirected = new WeightedGraphLoader(getDatabase(), 1).load("Weighted", "Related_to", "weight", false);
+        assertEquals(6, undirected.edgeCount());
+    }
+
     private void createGraph() {
         try (Transaction tx = getDatabase().beginTx()) {
             getDatabase().execute(
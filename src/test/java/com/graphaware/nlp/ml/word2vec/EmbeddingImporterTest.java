@@ -0,0 +1,91 @@
+package com.graphaware.nlp.ml.word2vec;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class EmbeddingImporterTest {
+
+    @Test
+    public void testParseFloat() {
+        String[] values = {"0.0129", "-0.0129", "+1.5", "42", "3.", ".25", "1e-3", "-2.5E+2", "0.00000000000000000001234", "123456789012345678901234", "NaN", "-Infinity"};
+        for (String value : values) {
+            assertEquals(Float.parseFloat(value), EmbeddingImporter.parseFloat(value, 0, value.length()), 0.0f);
+        }
+        assertEquals(-0.0129f, EmbeddingImporter.parseFloat("x -0.0129 y", 2, 9), 0.0f);
+    }
+
+    @Test
+    public void testTextImportInParallelKeepsFileOrder() throws Exception {
+        File source = File.createTempFile("embeddings", ".vec");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(source), StandardCharsets.UTF_8)) {
+            writer.write("10000 3\n");
+            for (int i = 0; i < 10000; i++) {
+                writer.write("w" + (i % 7000) + " " + i + " -" + i + ".5 1e-2\n");
+            }
+        }
+        EmbeddingStore store = new EmbeddingImporter(4).importFile(source, tempDirectory());
+        assertEquals(7000, store.size());
+        assertEquals(3, store.getDimension());
+        for (int i = 0; i < 7000; i++) {
+            assertEquals(i, store.rowOf("w" + i));
+        }
+        double[] vector = store.getVector("w6999");
+        assertEquals(6999.0d, vector[0], 0.0d);
+        assertEquals(-6999.5d, vector[1], 0.0d);
+        assertEquals(0.01d, vector[2], 1e-6);
+    }
+
+    @Test
+    public void testBinaryImport() throws Exception {
+        File source = File.createTempFile("embeddings", ".bin");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(source))) {
+            out.write("2 3\n".getBytes(StandardCharsets.UTF_8));
+            writeBinary(out, "car", new float[]{0.1f, 0.2f, 0.3f});
+            writeBinary(out, "truck", new float[]{-1.0f, 0.0f, 2.5f});
+        }
+        EmbeddingStore store = new EmbeddingImporter().importFile(source, tempDirectory());
+        assertEquals(2, store.size());
+        assertEquals(0.2f, (float) store.getVector("car")[1], 0.0f);
+        assertEquals(2.5f, (float) store.getVector("truck")[2], 0.0f);
+    }
+
+    @Test
+    public void testFailedImportLeavesNoStore() throws Exception {
+        File source = File.createTempFile("embeddings", ".bin");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(source))) {
+            out.write("3 3\n".getBytes(StandardCharsets.UTF_8));
+            writeBinary(out, "car", new float[]{0.1f, 0.2f, 0.3f});
+            writeBinary(out, "truck", new float[]{-1.0f, 0.0f, 2.5f});
+        }
+        File directory = tempDirectory();
+        try {
+            new EmbeddingImporter().importFile(source, directory);
+            fail("The import of a truncated file should fail");
+        } catch (EOFException e) {
+            // expected
+        }
+        assertFalse(EmbeddingStore.exists(directory));
+        assertFalse(new File(directory, EmbeddingStore.INDEX_FILE).exists());
+        assertFalse(new File(directory, EmbeddingStore.VECTORS_FILE).exists());
+    }
+
+    private void writeBinary(OutputStream out, String word, float[] vector) throws IOException {
+        out.write((word + " ").getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : vector) {
+            buffer.putFloat(value);
+        }
+        out.write(buffer.array());
+        out.write('\n');
+    }
+
+    private File tempDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "embeddingImport_" + System.nanoTime());
+    }
+}
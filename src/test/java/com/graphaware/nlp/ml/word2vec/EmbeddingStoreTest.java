@@ -0,0 +1,99 @@
+package com.graphaware.nlp.ml.word2vec;
+
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class EmbeddingStoreTest {
+
+    @Test
+    public void testStoreIsCreatedFromTextFile() throws Exception {
+        EmbeddingStore store = createStore();
+        assertEquals(100, store.size());
+        assertEquals(300, store.getDimension());
+        double[] vector = store.getVector("agriculturist");
+        assertEquals(300, vector.length);
+        assertEquals(-0.0404d, vector[0], 1e-6);
+        assertEquals(-0.0129d, vector[2], 1e-6);
+        assertNull(store.getVector("not_in_the_model"));
+    }
+
+    @Test
+    public void testMultiWordLookup() throws Exception {
+        EmbeddingStore store = createStore();
+        int row = store.rowOf("agriculture secretary");
+        assertTrue(row >= 0);
+        assertEquals("agriculture_secretary", store.getWord(row));
+        assertEquals(0.2898d, store.get(row, 0), 1e-6);
+    }
+
+    @Test
+    public void testStoreIsReopened() throws Exception {
+        File directory = tempDirectory();
+        new EmbeddingImporter().importFile(sourceFile(), directory);
+        assertTrue(EmbeddingStore.exists(directory));
+        EmbeddingStore store = EmbeddingStore.open(directory);
+        for (int row = 0; row < store.size(); row++) {
+            assertEquals(row, store.rowOf(store.getWord(row)));
+        }
+    }
+
+    @Test
+    public void testFirstOccurrenceWinsAndDimensionIsChecked() throws Exception {
+        File directory = tempDirectory();
+        try (EmbeddingStore.Writer writer = new EmbeddingStore.Writer(directory)) {
+            assertTrue(writer.add("a", new float[]{1.0f, 2.0f}));
+            assertFalse(writer.add("a", new float[]{3.0f, 4.0f}));
+            assertFalse(writer.add("b", new float[]{1.0f}));
+            assertTrue(writer.add("b", new float[]{5.0f, 6.0f}));
+            writer.commit();
+        }
+        EmbeddingStore store = EmbeddingStore.open(directory);
+        assertEquals(2, store.size());
+        assertEquals(2.0d, store.getVector("a")[1], 0.0d);
+        assertEquals(5.0d, store.getVector("b")[0], 0.0d);
+    }
+
+    @Test
+    public void testQuantizedStoresKeepSimilarities() throws Exception {
+        EmbeddingStore reference = createStore();
+        double[] query = reference.getVector(0);
+        double queryNorm = reference.norm(0);
+        for (VectorEncoding encoding : VectorEncoding.values()) {
+            EmbeddingStore store = new EmbeddingImporter(2, encoding).importFile(sourceFile(), tempDirectory());
+            assertEquals(encoding, store.getEncoding());
+            assertEquals(reference.size(), store.size());
+            for (int row = 0; row < store.size(); row++) {
+                assertEquals(reference.getWord(row), store.getWord(row));
+                assertEquals(reference.cosine(0, row), store.cosine(0, row), 1e-2);
+                assertEquals(reference.cosine(query, queryNorm, row), store.cosine(query, queryNorm, row), 1e-2);
+                assertEquals(reference.get(row, 2), store.get(row, 2), 1e-2);
+            }
+        }
+    }
+
+    @Test
+    public void testInt8StoreIsAtLeastThreeTimesSmaller() throws Exception {
+        File float32 = tempDirectory();
+        new EmbeddingImporter(2, VectorEncoding.FLOAT32).importFile(sourceFile(), float32);
+        File int8 = tempDirectory();
+        new EmbeddingImporter(2, VectorEncoding.INT8).importFile(sourceFile(), int8);
+        assertTrue(new File(int8, EmbeddingStore.VECTORS_FILE).length() * 3 < new File(float32, EmbeddingStore.VECTORS_FILE).length());
+    }
+
+    private EmbeddingStore createStore() throws IOException {
+        return new EmbeddingImporter().importFile(sourceFile(), tempDirectory());
+    }
+
+    private File sourceFile() {
+        return new File(getClass().getResource("test_numberbatch-en-17.02.txt").getFile());
+    }
+
+    private File tempDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "embeddingStore_" + System.nanoTime());
+    }
+}
@@ -0,0 +1,132 @@
+package com.graphaware.nlp.ml.word2vec;
+
+import com.graphaware.nlp.ml.similarity.TopKCollector;
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HnswIndexTest {
+
+    @Test
+    public void testSearchHasHighRecall() throws Exception {
+        for (VectorEncoding encoding : new VectorEncoding[]{VectorEncoding.FLOAT32, VectorEncoding.INT8}) {
+            File directory = tempDirectory();
+            EmbeddingStore store = createRandomStore(directory, 3000, 32, encoding);
+            HnswIndex index = HnswIndex.build(store, directory, HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION, 4);
+            Random random = new Random(7);
+            int found = 0;
+            int expected = 0;
+            for (int q = 0; q < 50; q++) {
+                double[] query = store.getVector(random.nextInt(store.size()));
+                for (int i = 0; i < query.length; i++) {
+                    query[i] += random.nextGaussian() * 0.1d;
+                }
+                TopKCollector exact = HnswIndex.scan(store, query, 10);
+                TopKCollector approximate = index.search(query, 10, HnswIndex.DEFAULT_EF_SEARCH);
+                assertEquals(10, approximate.size());
+                for (int i = 1; i < approximate.size(); i++) {
+                    assertTrue(approximate.score(i - 1) >= approximate.score(i));
+                }
+                Set<Long> ids = new HashSet<>();
+                for (int i = 0; i < exact.size(); i++) {
+                    ids.add(exact.id(i));
+                }
+                for (int i = 0; i < approximate.size(); i++) {
+                    if (ids.contains(approximate.id(i))) {
+                        found++;
+                    }
+                }
+                expected += exact.size();
+            }
+            assertTrue("recall " + found + "/" + expected, found >= expected * 0.9);
+        }
+    }
+
+    @Test
+    public void testIndexIsReopened() throws Exception {
+        File directory = tempDirectory();
+        EmbeddingStore store = createRandomStore(directory, 500, 16, VectorEncoding.FLOAT32);
+        HnswIndex built = HnswIndex.build(store, directory, 8, 50, 2);
+        assertTrue(HnswIndex.exists(directory));
+        HnswIndex reopened = HnswIndex.open(store, directory);
+        double[] query = store.getVector(42);
+        TopKCollector first = built.search(query, 5, 32);
+        TopKCollector second = reopened.search(query, 5, 32);
+        assertEquals(42L, first.id(0));
+        assertEquals(1.0f, first.score(0), 1e-5f);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.id(i), second.id(i));
+        }
+    }
+
+    @Test
+    public void testVectorsOfAnotherDimensionAreRejected() throws Exception {
+        File directory = tempDirectory();
+        EmbeddingStore store = createRandomStore(directory, 100, 16, VectorEncoding.FLOAT32);
+        HnswIndex index = HnswIndex.build(store, directory, 8, 50, 1);
+        for (double[] vector : new double[][]{new double[8], new double[32]}) {
+            try {
+                index.search(vector, 5, 32);
+                fail("search() should reject a vector of " + vector.length + " dimensions");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("16"));
+            }
+            try {
+                HnswIndex.scan(store, vector, 5);
+                fail("scan() should reject a vector of " + vector.length + " dimensions");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("16"));
+            }
+        }
+    }
+
+    @Test
+    public void testNearestNeighboursOfModel() throws Exception {
+        File source = new File(getClass().getResource("test_numberbatch-en-17.02.txt").getFile());
+        File directory = tempDirectory();
+        Word2VecModel model = new Word2VecModel();
+        EmbeddingStore store = Word2VecModel.loadStore(source, directory, VectorEncoding.FLOAT32);
+        model.addModel("test", store);
+        Map<String, Double> scanned = model.getNearestNeighbours("agriculturist", 5, "test");
+        model.addIndex("test", HnswIndex.build(store, directory, 8, 50, 1));
+        Map<String, Double> indexed = model.getNearestNeighbours("agriculturist", 5, "test");
+        assertEquals(5, indexed.size());
+        assertFalse(indexed.containsKey("agriculturist"));
+        assertEquals(scanned.keySet().iterator().next(), indexed.keySet().iterator().next());
+        assertTrue(model.getNearestNeighbours("not_in_the_model", 5, "test").isEmpty());
+        assertEquals("agriculturist", model.getNearestNeighbours(store.getVector("agriculturist"), 1, "test").keySet().iterator().next());
+    }
+
+    private EmbeddingStore createRandomStore(File directory, int rows, int dimension, VectorEncoding encoding) throws Exception {
+        Random random = new Random(42);
+        float[][] centers = new float[20][dimension];
+        for (float[] center : centers) {
+            for (int i = 0; i < dimension; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+        }
+        try (EmbeddingStore.Writer writer = new EmbeddingStore.Writer(directory, encoding)) {
+            for (int row = 0; row < rows; row++) {
+                float[] center = centers[random.nextInt(centers.length)];
+                float[] vector = new float[dimension];
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = center[i] + (float) random.nextGaussian() * 0.5f;
+                }
+                writer.add("w" + row, vector);
+            }
+            writer.commit();
+        }
+        return EmbeddingStore.open(directory);
+    }
+
+    private File tempDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "hnsw_" + System.nanoTime());
+    }
+}
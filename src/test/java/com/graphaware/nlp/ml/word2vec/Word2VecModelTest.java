@@ -0,0 +1,46 @@
+package com.graphaware.nlp.ml.word2vec;
+
+import com.graphaware.nlp.ml.similarity.VectorEncoding;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class Word2VecModelTest {
+
+    @Test
+    public void testBatchLookupDeduplicatesAndSkipsMissingWords() throws Exception {
+        Word2VecModel model = createModel();
+        Map<String, double[]> vectors = model.getWordToVec(Arrays.asList("agriculturist", "not_in_the_model", "agriculturist", "agriculture secretary"), null);
+        assertEquals(2, vectors.size());
+        assertEquals(-0.0129d, vectors.get("agriculturist")[2], 1e-6);
+        assertEquals(0.2898d, vectors.get("agriculture secretary")[0], 1e-6);
+        assertEquals(3L, model.getStats(null).get("misses"));
+    }
+
+    @Test
+    public void testRepeatedLookupsHitTheCache() throws Exception {
+        Word2VecModel model = createModel();
+        model.getWordToVec(Arrays.asList("agriculturist", "not_in_the_model"), "test");
+        assertNotNull(model.getWordToVec("agriculturist", "test"));
+        assertNull(model.getWordToVec("not_in_the_model", "test"));
+        model.getWordToVec(Arrays.asList("agriculturist", "not_in_the_model"), "test");
+        Map<String, Object> stats = model.getStats("test");
+        assertEquals(2L, stats.get("size"));
+        assertEquals(4L, stats.get("hits"));
+        assertEquals(2L, stats.get("misses"));
+        assertNull(model.getWordToVec("agriculturist", "unknown"));
+        assertTrue(model.getWordToVec(Arrays.asList("agriculturist"), "unknown").isEmpty());
+    }
+
+    private Word2VecModel createModel() throws Exception {
+        File source = new File(getClass().getResource("test_numberbatch-en-17.02.txt").getFile());
+        File directory = new File(System.getProperty("java.io.tmpdir"), "word2VecModel_" + System.nanoTime());
+        Word2VecModel model = new Word2VecModel();
+        model.addModel("test", Word2VecModel.loadStore(source, directory, VectorEncoding.FLOAT32));
+        return model;
+    }
+}
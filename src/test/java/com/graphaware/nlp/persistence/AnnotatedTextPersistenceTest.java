@@ -4,6 +4,7 @@ import com.graphaware.nlp.NLPIntegrationTest;
 import com.graphaware.nlp.domain.AnnotatedText;
 import com.graphaware.nlp.domain.Sentence;
 import com.graphaware.nlp.domain.Tag;
+import com.graphaware.nlp.domain.TypedDependency;
 import com.graphaware.nlp.util.TestNLPGraph;
 import org.junit.Test;
 import org.neo4j.graphdb.Node;
@@ -11,6 +12,7 @@ import org.neo4j.graphdb.Transaction;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -124,6 +126,84 @@ public class AnnotatedTextPersistenceTest extends NLPIntegrationTest {
 
 
 
+    @Test
+    public void testDependenciesAreStoredBetweenTheirOwnTagOccurrences() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence("cool cool story", 0);
+        sentence.addTagOccurrence(0, 4, "cool", sentence.addTag(new Tag("cool", "en")), Collections.singletonList("1"));
+        sentence.addTagOccurrence(5, 9, "cool", sentence.addTag(new Tag("cool", "en")), Collections.singletonList("2"));
+        sentence.addTagOccurrence(10, 15, "story", sentence.addTag(new Tag("story", "en")), Collections.singletonList("3"));
+        sentence.addTypedDependency(new TypedDependency("3", "1", "amod", null));
+        sentence.addTypedDependency(new TypedDependency("3", "2", "amod", null));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "test", "1");
+            tx.success();
+        }
+        executeInTransaction("MATCH (:TagOccurrence {value: 'story'})-[:AMOD]->(o:TagOccurrence)-[:TAG_OCCURRENCE_TAG]->(t:Tag) "
+                + "RETURN count(DISTINCT o) AS occurrences, count(DISTINCT t) AS tags", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals(2L, row.get("occurrences"));
+            assertEquals(1L, row.get("tags"));
+        }));
+    }
+
+    @Test
+    public void testDependenciesOfTagOccurrencesSharingASpanAreStoredOnTheirOwnNodes() {
+        clearDb();
+        AnnotatedText annotatedText = new AnnotatedText();
+        Sentence sentence = new Sentence("New York city", 0);
+        sentence.addTagOccurrence(0, 8, "New York", sentence.addTag(new Tag("new york", "en")), Collections.singletonList("1"));
+        sentence.addTagOccurrence(0, 8, "New York", sentence.addTag(new Tag("ny", "en")), Collections.singletonList("2"));
+        sentence.addTagOccurrence(9, 13, "city", sentence.addTag(new Tag("city", "en")), Collections.singletonList("3"));
+        sentence.addTypedDependency(new TypedDependency("3", "1", "compound", null));
+        sentence.addTypedDependency(new TypedDependency("3", "2", "nmod", null));
+        annotatedText.addSentence(sentence);
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "test", "1");
+            tx.success();
+        }
+        executeInTransaction("MATCH (:Sentence)-[:SENTENCE_TAG_OCCURRENCE]->(o:TagOccurrence {startPosition: 0}) RETURN count(o) AS occurrences", (result -> {
+            assertEquals(2L, result.next().get("occurrences"));
+        }));
+        executeInTransaction("MATCH (city:TagOccurrence {value: 'city'})-[:COMPOUND]->(o1:TagOccurrence)-[:TAG_OCCURRENCE_TAG]->(t1:Tag), "
+                + "(city)-[:NMOD]->(o2:TagOccurrence)-[:TAG_OCCURRENCE_TAG]->(t2:Tag) "
+                + "RETURN t1.value AS compound, t2.value AS nmod, o1 = o2 AS same, size((o1)<--(:TagOccurrence)) AS incoming1, size((o2)<--(:TagOccurrence)) AS incoming2", (result -> {
+            Map<String, Object> row = result.next();
+            assertEquals("new york", row.get("compound"));
+            assertEquals("ny", row.get("nmod"));
+            assertEquals(false, row.get("same"));
+            assertEquals(1L, row.get("incoming1"));
+            assertEquals(1L, row.get("incoming2"));
+            assertFalse(result.hasNext());
+        }));
+    }
+
+    @Test
+    public void testTagNodeCacheIgnoresRolledBackTagsAndIsHitForExistingOnes() {
+        clearDb();
+        AnnotatedText annotatedText = createAnnotatedTextWithSameTagInSameTextWithDifferentPos();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "test", "1");
+            tx.failure();
+        }
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, "test", "2");
+            tx.success();
+        }
+        executeInTransaction("MATCH (n:Tag) WHERE n.value = 'cool' RETURN count(n) AS c", (result -> {
+            assertEquals(1L, result.next().get("c"));
+        }));
+
+        long hits = (long) getNLPManager().getTagNodeCache().getStats().get("hits");
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedTextWithSameTagInSameTextWithDifferentPos(), "test-2", "3");
+            tx.success();
+        }
+        assertTrue((long) getNLPManager().getTagNodeCache().getStats().get("hits") > hits);
+    }
+
     private AnnotatedText createAnnotatedTextWithSameTagInSameTextWithDifferentPos() {
         AnnotatedText annotatedText = new AnnotatedText();
         AtomicInteger inc = new AtomicInteger();
@@ -0,0 +1,139 @@
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.domain.Sentence;
+import com.graphaware.nlp.domain.Tag;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CorpusStatisticsTest extends NLPIntegrationTest {
+
+    @Test
+    public void testStatisticsAreUpdatedWhenDocumentsArePersistedAndDeleted() {
+        clearDb();
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+        statistics.rebuild();
+        assertEquals(0L, statistics.getDocumentCount());
+
+        persist(createAnnotatedText("hello world"), "d1");
+        persist(createAnnotatedText("hello graph"), "d2");
+        assertEquals(2L, statistics.getDocumentCount());
+        assertEquals(2L, statistics.getDocumentFrequency(getTagId("hello")));
+        assertEquals(1L, statistics.getDocumentFrequency(getTagId("world")));
+
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s:Sentence) DETACH DELETE n, s", emptyConsumer());
+        assertEquals(1L, statistics.getDocumentCount());
+        assertEquals(1L, statistics.getDocumentFrequency(getTagId("hello")));
+        assertEquals(0L, statistics.getDocumentFrequency(getTagId("graph")));
+    }
+
+    @Test
+    public void testRolledBackDocumentsAreNotCounted() {
+        clearDb();
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+        statistics.rebuild();
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(createAnnotatedText("hello world"), "d1", "1");
+            tx.failure();
+        }
+        assertEquals(0L, statistics.getDocumentCount());
+    }
+
+    @Test
+    public void testRebuildCountsDocumentsCreatedOutsideThePersister() {
+        clearDb();
+        executeInTransaction("CREATE (a:Tag {value: 'a'}), (b:Tag {value: 'b'})\n"
+                + "CREATE (:AnnotatedText {id: 'd1'})-[:CONTAINS_SENTENCE]->(s1:Sentence), (s1)-[:HAS_TAG {tf: 1}]->(a), (s1)-[:HAS_TAG {tf: 1}]->(b)\n"
+                + "CREATE (:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s2:Sentence), (s2)-[:HAS_TAG {tf: 2}]->(a)", emptyConsumer());
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+        statistics.rebuild();
+        assertEquals(2L, statistics.getDocumentCount());
+        assertEquals(2L, statistics.getDocumentFrequency(getTagId("a")));
+        assertEquals(1L, statistics.getDocumentFrequency(getTagId("b")));
+    }
+
+    @Test
+    public void testTagDeletedTogetherWithItsDocumentDoesNotFailTheCommit() {
+        clearDb();
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+        statistics.rebuild();
+        persist(createAnnotatedText("hello world"), "d1");
+        persist(createAnnotatedText("hello graph"), "d2");
+
+        executeInTransaction("MATCH (n:AnnotatedText {id: 'd2'})-[:CONTAINS_SENTENCE]->(s:Sentence), (t:Tag {value: 'graph'}) DETACH DELETE n, s, t", emptyConsumer());
+        assertEquals(1L, statistics.getDocumentCount());
+        assertEquals(1L, statistics.getDocumentFrequency(getTagId("hello")));
+    }
+
+    @Test
+    public void testReannotatedDocumentWithADeletedTagIsPersisted() {
+        clearDb();
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+        statistics.rebuild();
+        persist(createAnnotatedText("hello world"), "d1");
+        executeInTransaction("MATCH (t:Tag {value: 'world'}) DETACH DELETE t", emptyConsumer());
+
+        persist(createAnnotatedText("hello graph"), "d1");
+        assertEquals(1L, statistics.getDocumentCount());
+        assertEquals(1L, statistics.getDocumentFrequency(getTagId("graph")));
+    }
+
+    @Test
+    public void testConcurrentlyPersistedDocumentsAreAllCounted() throws Exception {
+        clearDb();
+        CorpusStatistics statistics = getNLPManager().getCorpusStatistics();
+        statistics.rebuild();
+        persist(createAnnotatedText("hello"), "d");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String id = "d" + i;
+                futures.add(executor.submit(() -> persist(createAnnotatedText("hello " + id), id)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(21L, statistics.getDocumentCount());
+        assertEquals(21L, statistics.getDocumentFrequency(getTagId("hello")));
+    }
+
+    private void persist(AnnotatedText annotatedText, String id) {
+        try (Transaction tx = getDatabase().beginTx()) {
+            getNLPManager().getPersister(AnnotatedText.class).persist(annotatedText, id, String.valueOf(System.currentTimeMillis()));
+            tx.success();
+        }
+    }
+
+    private long getTagId(String value) {
+        long[] id = new long[1];
+        executeInTransaction("MATCH (n:Tag {value: {value}}) RETURN id(n) AS id", Collections.singletonMap("value", value), (result -> {
+            id[0] = (long) result.next().get("id");
+        }));
+        return id[0];
+    }
+
+    private AnnotatedText createAnnotatedText(String text) {
+        AnnotatedText annotatedText = new AnnotatedText();
+        annotatedText.setText(text);
+        Sentence sentence = new Sentence(text, 0);
+        for (String token : text.split(" ")) {
+            sentence.addTagOccurrence(0, 20, token, sentence.addTag(new Tag(token, "en")));
+        }
+        annotatedText.addSentence(sentence);
+        return annotatedText;
+    }
+}
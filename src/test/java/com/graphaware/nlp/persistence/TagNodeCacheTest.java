@@ -0,0 +1,43 @@
+package com.graphaware.nlp.persistence;
+
+import com.graphaware.nlp.NLPIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+
+import static org.junit.Assert.*;
+
+public class TagNodeCacheTest extends NLPIntegrationTest {
+
+    @Test
+    public void testNodesOfATransactionRolledBackWithoutCommitAttemptAreDropped() {
+        TagNodeCache cache = new TagNodeCache(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            cache.putCreated("rolled-back_en", 42L);
+            assertEquals(Long.valueOf(42L), cache.get("rolled-back_en", (nodeId) -> nodeId));
+            tx.failure();
+        }
+        assertNull(cache.get("rolled-back_en", (nodeId) -> nodeId));
+        assertEquals(1L, cache.getStats().get("invalidations"));
+    }
+
+    @Test
+    public void testNodesOfACommittedTransactionArePublished() {
+        TagNodeCache cache = new TagNodeCache(getDatabase());
+        try (Transaction tx = getDatabase().beginTx()) {
+            cache.putCreated("committed_en", getDatabase().createNode().getId());
+            tx.success();
+        }
+        assertNotNull(cache.get("committed_en", (nodeId) -> nodeId));
+    }
+
+    @Test
+    public void testHitsAreCountedOnlyForResolvedNodes() {
+        TagNodeCache cache = new TagNodeCache(getDatabase());
+        cache.put("stale_en", 42L);
+        assertNull(cache.get("stale_en", (nodeId) -> null));
+        assertNull(cache.get("stale_en", (nodeId) -> nodeId));
+        assertEquals(0L, cache.getStats().get("hits"));
+        assertEquals(2L, cache.getStats().get("misses"));
+        assertEquals(1L, cache.getStats().get("invalidations"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.graphaware.nlp.processor;
+
+import com.graphaware.nlp.NLPEvents;
+import com.graphaware.nlp.NLPIntegrationTest;
+import com.graphaware.nlp.domain.AnnotatedText;
+import com.graphaware.nlp.dsl.result.BatchAnnotationResult;
+import com.graphaware.nlp.event.TextAnnotationEvent;
+import com.graphaware.nlp.stub.StubTextProcessor;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BatchAnnotatorTest extends NLPIntegrationTest {
+
+    @Test
+    public void testDocumentsOfAFailedBatchArePersistedAndNotifiedOnce() {
+        List<String> notified = Collections.synchronizedList(new ArrayList<>());
+        getNLPManager().getEventDispatcher().registerListener(NLPEvents.POST_TEXT_ANNOTATION, (event) -> {
+            notified.add(((TextAnnotationEvent) event).getId());
+        });
+        BatchAnnotator annotator = new BatchAnnotator(getNLPManager(), new UnpersistableTextProcessor(), "tokenizer", 3, 1);
+        List<Map<String, Object>> documents = new ArrayList<>();
+        documents.add(document("ok-1", "the first document"));
+        documents.add(document("fail", "a document that cannot be persisted"));
+        documents.add(document("ok-2", "the second document"));
+
+        BatchAnnotationResult result = annotator.annotateAndPersist(documents, false);
+
+        assertEquals(2L, result.result);
+        assertEquals(Collections.singletonList("fail"), result.failedIds);
+        List<String> sorted = new ArrayList<>(notified);
+        Collections.sort(sorted);
+        assertEquals(Arrays.asList("ok-1", "ok-2"), sorted);
+        executeInTransaction("MATCH (n:AnnotatedText) RETURN n.id AS id, count(*) AS c ORDER BY id", (rows -> {
+            assertEquals(1L, rows.next().get("c"));
+            assertEquals(1L, rows.next().get("c"));
+            assertFalse(rows.hasNext());
+        }));
+    }
+
+    private Map<String, Object> document(String id, String text) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("id", id);
+        document.put("text", text);
+        return document;
+    }
+
+    /**
+     * Annotates the texts that "cannot be persisted" with an AnnotatedText type
+     * that has no persister, so that persisting them always fails.
+     */
+    private static class UnpersistableTextProcessor extends StubTextProcessor {
+
+        @Override
+        public AnnotatedText annotateText(String text, String pipelineName, String lang, Map<String, String> extraParams) {
+            if (text.contains("cannot be persisted")) {
+                return new AnnotatedText() {
+                };
+            }
+            return super.annotateText(text, pipelineName, lang, extraParams);
+        }
+    }
+}